@@ -0,0 +1,99 @@
+package benchmark;
+
+import dto.LibroEncontrado;
+import modelo.Libro;
+import org.openjdk.jmh.annotations.*;
+import servicio.BibliotecaEmbebida;
+import servicio.BuscadorLibros;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Búsqueda mientras se escribe sobre un catálogo sintético en memoria (sin DB).
+// Los títulos combinan palabras de un vocabulario con frecuencias muy desiguales, como en un
+// catálogo real: unas pocas palabras aparecen en muchísimos títulos y la mayoría en muy pocos.
+// Las búsquedas mezclan palabras completas y a medio escribir, de una y dos palabras.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class BuscadorBenchmark {
+    private static final int PALABRAS = 50_000;
+    private static final int BUSQUEDAS = 1024;
+    private static final int RESULTADOS = 20;
+    private static final String[] SILABAS = {"ca", "sa", "la", "ma", "ri", "to", "ne", "lo", "gar", "cí", "már", "quez",
+            "sol", "e", "dad", "ño", "tri", "an", "gu", "lo", "ver", "de", "mon", "te", "pé", "rez", "ol", "vi", "do"};
+    private static final String[] NOMBRES = {"Gabriel", "Isabel", "Miguel", "Ana", "José", "María", "Jorge", "Elena", "Julio", "Carmen"};
+
+    @Param({"1000000"})
+    public int libros;
+
+    private BuscadorLibros buscador;
+    private String[] busquedas;
+    private int i;
+
+    @Setup
+    public void preparar() {
+        Random aleatorio = new Random(42);
+        String[] vocabulario = new String[PALABRAS];
+        for (int n = 0; n < PALABRAS; n++) {
+            StringBuilder palabra = new StringBuilder();
+            for (int s = 0, silabas = 2 + aleatorio.nextInt(3); s < silabas; s++)
+                palabra.append(SILABAS[aleatorio.nextInt(SILABAS.length)]);
+            vocabulario[n] = palabra.toString();
+        }
+
+        buscador = new BuscadorLibros();
+        List<Libro> bloque = new ArrayList<>(10_000);
+        List<String> titulos = new ArrayList<>();
+        for (int n = 0; n < libros; n++) {
+            StringBuilder titulo = new StringBuilder();
+            for (int p = 0, palabras = 2 + aleatorio.nextInt(5); p < palabras; p++) {
+                if (p > 0)
+                    titulo.append(' ');
+                titulo.append(vocabulario[frecuente(aleatorio, PALABRAS)]);
+            }
+            titulo.setCharAt(0, Character.toUpperCase(titulo.charAt(0)));
+            String autor = NOMBRES[aleatorio.nextInt(NOMBRES.length)] + " " + capitalizar(vocabulario[frecuente(aleatorio, PALABRAS)]);
+            bloque.add(new Libro(BibliotecaEmbebida.isbn13(n), titulo.toString(), autor));
+            if (n % (libros / BUSQUEDAS + 1) == 0)
+                titulos.add(titulo + " " + autor);
+            if (bloque.size() == 10_000) {
+                buscador.indexar(bloque);
+                bloque.clear();
+            }
+        }
+        buscador.indexar(bloque);
+
+        // Una o dos palabras de un título existente; la última, a veces, a medio escribir
+        busquedas = new String[BUSQUEDAS];
+        for (int n = 0; n < BUSQUEDAS; n++) {
+            String[] palabras = titulos.get(n % titulos.size()).split(" ");
+            StringBuilder busqueda = new StringBuilder(palabras[aleatorio.nextInt(palabras.length)]);
+            if (aleatorio.nextBoolean())
+                busqueda.append(' ').append(palabras[aleatorio.nextInt(palabras.length)]);
+            if (aleatorio.nextBoolean())
+                busqueda.setLength(Math.max(busqueda.length() - 2, 3));
+            busquedas[n] = busqueda.toString();
+        }
+    }
+
+    // Índice con distribución muy sesgada hacia los primeros (aproximadamente Zipf)
+    private static int frecuente(Random aleatorio, int tamano) {
+        double u = aleatorio.nextDouble();
+        return (int) (tamano * u * u * u);
+    }
+
+    private static String capitalizar(String palabra) {
+        return Character.toUpperCase(palabra.charAt(0)) + palabra.substring(1);
+    }
+
+    @Benchmark
+    public List<LibroEncontrado> buscar() {
+        return buscador.buscar(busquedas[i++ & (BUSQUEDAS - 1)], RESULTADOS);
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import dto.ResultadoDevolucion;
+import dto.TipoIdDevolucion;
+import org.openjdk.jmh.annotations.*;
+import servicio.BibliotecaEmbebida;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Devolución de un lote de préstamos de uno en uno frente a la devolución masiva en una transacción.
+// Antes de cada invocación se prestan los ejemplares 1..tamanoLote, uno a cada usuario.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+public class DevolucionBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int tamanoLote;
+
+    private BibliotecaEmbebida biblioteca;
+    private final List<Integer> prestamos = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        biblioteca = BibliotecaEmbebida.conCatalogo(1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        biblioteca.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void prestar() {
+        prestamos.clear();
+        for (int id = 1; id <= tamanoLote; id++)
+            prestamos.add(biblioteca.prestamoService.registrar(id, id).getId());
+    }
+
+    @Benchmark
+    public void devolverUnoAUno() {
+        for (int idPrestamo : prestamos)
+            biblioteca.prestamoService.devolver(idPrestamo);
+    }
+
+    @Benchmark
+    public List<ResultadoDevolucion> devolverVarios() {
+        return biblioteca.prestamoService.devolverVarios(prestamos, TipoIdDevolucion.PRESTAMO);
+    }
+}
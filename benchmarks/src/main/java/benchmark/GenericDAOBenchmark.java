@@ -0,0 +1,48 @@
+package benchmark;
+
+import modelo.Libro;
+import org.openjdk.jmh.annotations.*;
+import servicio.BibliotecaEmbebida;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Operaciones de GenericDAO contra la base de datos embebida
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GenericDAOBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int tamanoCatalogo;
+
+    private BibliotecaEmbebida biblioteca;
+    private AtomicLong siguienteIsbn;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        biblioteca = BibliotecaEmbebida.conCatalogo(tamanoCatalogo);
+        siguienteIsbn = new AtomicLong(tamanoCatalogo);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        biblioteca.close();
+    }
+
+    @Benchmark
+    public void create() {
+        long n = siguienteIsbn.getAndIncrement();
+        biblioteca.libroDAO.create(new Libro(BibliotecaEmbebida.isbn13(n), "Título " + n, "Autor " + n));
+    }
+
+    // Recorre la tabla de libros completa, crece con el tamaño del catálogo
+    @Benchmark
+    public List<Libro> readAll() {
+        return biblioteca.libroDAO.readAll();
+    }
+}
@@ -0,0 +1,63 @@
+package benchmark;
+
+import dto.ResultadoImportacion;
+import org.openjdk.jmh.annotations.*;
+import servicio.BibliotecaEmbebida;
+import servicio.ImportadorCatalogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// Importación completa de un fichero de catálogo sobre una base de datos vacía.
+// Objetivo: 100.000 filas en menos de un minuto.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ImportadorBenchmark {
+
+    @Param({"100000"})
+    public int filas;
+
+    // Ejemplares por fila
+    @Param({"2"})
+    public int ejemplares;
+
+    // IDs por secuencias (lotes JDBC de Hibernate) o IDENTITY (INSERT de varias filas)
+    @Param({"true", "false"})
+    public boolean idsSecuencia;
+
+    private String fichero;
+    private BibliotecaEmbebida biblioteca;
+    private ImportadorCatalogo importador;
+
+    @Setup(Level.Trial)
+    public void generarFichero() {
+        StringBuilder sb = new StringBuilder(filas * 48);
+        sb.append("isbn;titulo;autor;ejemplares\n");
+        for (int i = 0; i < filas; i++)
+            sb.append(BibliotecaEmbebida.isbn13(i)).append(";Título ").append(i)
+                    .append(";Autor ").append(i % 1000).append(';').append(ejemplares).append('\n');
+        fichero = sb.toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void preparar() {
+        biblioteca = BibliotecaEmbebida.vacia(idsSecuencia);
+        importador = new ImportadorCatalogo(biblioteca.libroDAO, biblioteca.libroService, biblioteca.contadorDisponibilidad);
+    }
+
+    @TearDown(Level.Iteration)
+    public void cerrar() {
+        biblioteca.close();
+    }
+
+    @Benchmark
+    public ResultadoImportacion importar() throws IOException {
+        return importador.importar(new BufferedReader(new StringReader(fichero)), fila -> { }, lineas -> { });
+    }
+}
@@ -0,0 +1,282 @@
+package benchmark;
+
+import dto.LibroStock;
+import dto.OrdenLibros;
+import dto.ResultadoRevision;
+import modelo.Prestamo;
+import repositorio.PoolStatistics;
+import servicio.BibliotecaEmbebida;
+import servicio.RevisionPrestamosVencidos;
+import util.EstadisticasOperacion;
+import util.Metricas;
+import util.Validator;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Prueba de carga del tráfico de circulación sobre una biblioteca sintética en H2 en memoria.
+// Varios puestos a la vez inician sesión, prestan, devuelven y consultan el catálogo con la mezcla
+// indicada, mientras un reloj simulado hace pasar los días: los préstamos que tardan en devolverse
+// vencen, la revisión diaria penaliza a sus usuarios y esos usuarios dejan de poder pedir préstamos.
+// Al terminar muestra por operación el rendimiento, la latencia y las tasas de rechazo y error.
+// Un rechazo es una regla de negocio (IllegalArgumentException: ejemplar prestado, límite, penalización),
+// un error es cualquier otra excepción.
+//
+//   java -cp benchmarks.jar benchmark.PruebaCarga libros=20000 usuarios=10000 anios=5 hilos=16 segundos=120
+//
+// Parámetros (clave=valor) y valores por defecto en PARAMETROS.
+public class PruebaCarga {
+    private static final Map<String, Integer> PARAMETROS = new LinkedHashMap<>();
+
+    static {
+        PARAMETROS.put("libros", 5_000);
+        PARAMETROS.put("ejemplaresPorLibro", 2);
+        PARAMETROS.put("usuarios", 2_000);
+        PARAMETROS.put("anios", 3);                 // Años de historial de préstamos ya devueltos
+        PARAMETROS.put("prestamosPorAnio", 12);     // Préstamos del historial por usuario y año
+        PARAMETROS.put("hilos", 8);                 // Puestos simultáneos
+        PARAMETROS.put("calentamiento", 10);        // Segundos sin medir al principio
+        PARAMETROS.put("segundos", 60);             // Segundos medidos
+        PARAMETROS.put("diasPorMinuto", 30);        // Días simulados por minuto real
+        // Mezcla de operaciones, en proporción
+        PARAMETROS.put("sesion", 30);
+        PARAMETROS.put("prestamo", 30);
+        PARAMETROS.put("devolucion", 25);
+        PARAMETROS.put("listado", 15);
+    }
+
+    private static final int TAMANO_PAGINA = 20;
+    // Cada cuánto (ms reales) se comprueba si ha cambiado el día simulado
+    private static final long ESPERA_REVISION_MS = 50;
+    // Cada préstamo se devuelve entre 1 y este número de días simulados después, algunos fuera de plazo
+    private static final int DIAS_PRESTAMO_MAXIMOS = Validator.PLAZO_DEVOLUCION_DIAS + 10;
+
+    private record PrestamoEnCurso(int id, LocalDate devolverEl) implements Comparable<PrestamoEnCurso> {
+        @Override
+        public int compareTo(PrestamoEnCurso otro) {
+            return devolverEl.compareTo(otro.devolverEl);
+        }
+    }
+
+    private enum Tipo {
+        SESION("iniciarSesion"),
+        PRESTAMO("registrar"),
+        DEVOLUCION("devolver"),
+        LISTADO("getLibrosConStock"),
+        REVISION("revision diaria");
+
+        private final Metricas.Operacion metrica;
+        private final LongAdder rechazos = new LongAdder();
+
+        Tipo(String nombre) {
+            this.metrica = Metricas.operacion("PruebaCarga." + nombre);
+        }
+    }
+
+    private final Map<String, Integer> parametros;
+    private final BibliotecaEmbebida.Catalogo catalogo;
+    private final RelojSimulado reloj;
+    private final Tipo[] mezcla;
+    // Préstamos hechos durante la prueba y aún sin devolver, por la fecha en que su usuario los devolverá
+    private final PriorityBlockingQueue<PrestamoEnCurso> prestamosActivos = new PriorityBlockingQueue<>();
+    private final Map<String, LongAdder> errores = new ConcurrentHashMap<>();
+    private final LongAdder usuariosPenalizados = new LongAdder();
+    private volatile boolean midiendo;
+    private volatile boolean terminada;
+
+    private PruebaCarga(Map<String, Integer> parametros) {
+        this.parametros = parametros;
+        this.catalogo = new BibliotecaEmbebida.Catalogo(parametros.get("libros"), parametros.get("ejemplaresPorLibro"),
+                parametros.get("usuarios"), parametros.get("anios"), parametros.get("prestamosPorAnio"));
+        this.reloj = new RelojSimulado(Instant.now(), ZoneId.systemDefault(), parametros.get("diasPorMinuto") * 24.0 * 60);
+        this.mezcla = mezcla(parametros);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new PruebaCarga(leerParametros(args)).ejecutar();
+    }
+
+    private static Map<String, Integer> leerParametros(String[] args) {
+        Map<String, Integer> parametros = new LinkedHashMap<>(PARAMETROS);
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual < 0 || !PARAMETROS.containsKey(arg.substring(0, igual)))
+                throw new IllegalArgumentException("Parámetro no válido: " + arg + ". Parámetros: " + PARAMETROS);
+            int valor = Integer.parseInt(arg.substring(igual + 1));
+            if (valor < 0)
+                throw new IllegalArgumentException("El parámetro " + arg + " no puede ser negativo");
+            parametros.put(arg.substring(0, igual), valor);
+        }
+        if (parametros.get("hilos") < 1 || parametros.get("segundos") < 1 || parametros.get("diasPorMinuto") < 1)
+            throw new IllegalArgumentException("hilos, segundos y diasPorMinuto deben ser mayores que 0");
+        return parametros;
+    }
+
+    // Tabla de 100 posiciones con cada tipo repetido según su proporción, para elegir con un solo aleatorio
+    private static Tipo[] mezcla(Map<String, Integer> parametros) {
+        Map<Tipo, Integer> pesos = Map.of(Tipo.SESION, parametros.get("sesion"), Tipo.PRESTAMO, parametros.get("prestamo"),
+                Tipo.DEVOLUCION, parametros.get("devolucion"), Tipo.LISTADO, parametros.get("listado"));
+        int total = pesos.values().stream().mapToInt(Integer::intValue).sum();
+        if (total == 0)
+            throw new IllegalArgumentException("La mezcla de operaciones está vacía");
+        List<Tipo> tabla = new ArrayList<>();
+        for (Tipo tipo : Tipo.values())
+            for (int i = 0; i < Math.round(pesos.getOrDefault(tipo, 0) * 100.0 / total); i++)
+                tabla.add(tipo);
+        return tabla.toArray(new Tipo[0]);
+    }
+
+    private void ejecutar() throws InterruptedException {
+        System.out.println("Parámetros: " + parametros);
+        long inicioCarga = System.nanoTime();
+        try (BibliotecaEmbebida biblioteca = BibliotecaEmbebida.sintetica(catalogo, reloj);
+             RevisionPrestamosVencidos revision = new RevisionPrestamosVencidos(biblioteca.prestamoDAO, biblioteca.usuarioDAO,
+                     biblioteca.usuarioService, reloj, RevisionPrestamosVencidos.TAMANO_TRAMO)) {
+            System.out.printf("Biblioteca sintética creada en %d s: %d libros, %d ejemplares, %d usuarios, %d préstamos de historial%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - inicioCarga), catalogo.libros(), catalogo.ejemplares(),
+                    catalogo.usuarios(), (long) catalogo.usuarios() * catalogo.aniosHistorial() * catalogo.prestamosPorAnio());
+
+            LocalDate primerDia = LocalDate.now(reloj);
+            reloj.arrancar();
+            Thread revisor = Thread.ofPlatform().daemon().name("prueba-carga-revision").start(() -> revisarCadaDia(revision));
+            List<Thread> puestos = new ArrayList<>();
+            for (int i = 0; i < parametros.get("hilos"); i++)
+                puestos.add(Thread.ofPlatform().name("prueba-carga-puesto-" + i).start(() -> atender(biblioteca)));
+
+            TimeUnit.SECONDS.sleep(parametros.get("calentamiento"));
+            LocalDate inicioMedida = LocalDate.now(reloj);
+            midiendo = true;
+            TimeUnit.SECONDS.sleep(parametros.get("segundos"));
+            midiendo = false;
+            terminada = true;
+            for (Thread puesto : puestos)
+                puesto.join();
+            revisor.join();
+
+            informar(primerDia, inicioMedida, biblioteca.emProvider.getPoolStatistics());
+        }
+    }
+
+    private void atender(BibliotecaEmbebida biblioteca) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        while (!terminada) {
+            Tipo tipo = mezcla[aleatorio.nextInt(mezcla.length)];
+            PrestamoEnCurso aDevolver = tipo == Tipo.DEVOLUCION ? siguienteADevolver() : null;
+            if (tipo == Tipo.DEVOLUCION && aDevolver == null)
+                tipo = Tipo.PRESTAMO; // Hoy nadie tiene que devolver nada
+
+            Tipo actual = tipo;
+            medir(actual, () -> {
+                switch (actual) {
+                    case SESION -> {
+                        int n = aleatorio.nextInt(catalogo.usuarios());
+                        biblioteca.usuarioService.iniciarSesion(BibliotecaEmbebida.email(n), BibliotecaEmbebida.password(n));
+                    }
+                    case PRESTAMO -> {
+                        Prestamo prestamo = biblioteca.prestamoService.registrar(
+                                aleatorio.nextInt(catalogo.usuarios()) + 1, aleatorio.nextInt(catalogo.ejemplares()) + 1);
+                        prestamosActivos.add(new PrestamoEnCurso(prestamo.getId(),
+                                prestamo.getFechaInicio().plusDays(1 + aleatorio.nextInt(DIAS_PRESTAMO_MAXIMOS))));
+                    }
+                    case DEVOLUCION -> biblioteca.prestamoService.devolver(aDevolver.id());
+                    case LISTADO -> biblioteca.libroService.getLibrosConStock(cursorLibro(aleatorio.nextInt(catalogo.libros())),
+                            OrdenLibros.values()[aleatorio.nextInt(OrdenLibros.values().length)], TAMANO_PAGINA);
+                    default -> throw new IllegalStateException(actual.name());
+                }
+            });
+        }
+    }
+
+    // Cursor del listado en el libro n del catálogo sintético, para pedir páginas de cualquier parte del catálogo
+    private LibroStock cursorLibro(int n) {
+        return new LibroStock(BibliotecaEmbebida.isbn13(n), "Título " + n, "Autor " + (n % 1000),
+                catalogo.ejemplaresPorLibro(), catalogo.ejemplaresPorLibro());
+    }
+
+    // Préstamo que toca devolver hoy o antes, null si no hay ninguno
+    private PrestamoEnCurso siguienteADevolver() {
+        PrestamoEnCurso siguiente = prestamosActivos.poll();
+        if (siguiente != null && siguiente.devolverEl().isAfter(LocalDate.now(reloj))) {
+            prestamosActivos.add(siguiente);
+            return null;
+        }
+        return siguiente;
+    }
+
+    // La revisión de préstamos vencidos se lanza cada vez que empieza un día simulado
+    private void revisarCadaDia(RevisionPrestamosVencidos revision) {
+        LocalDate ultimoDia = LocalDate.now(reloj);
+        while (!terminada) {
+            LocalDate hoy = LocalDate.now(reloj);
+            if (!hoy.equals(ultimoDia)) {
+                ultimoDia = hoy;
+                medir(Tipo.REVISION, () -> {
+                    ResultadoRevision resultado = revision.revisar();
+                    usuariosPenalizados.add(resultado.usuariosPenalizados());
+                });
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(ESPERA_REVISION_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void medir(Tipo tipo, Runnable operacion) {
+        long inicio = System.nanoTime();
+        boolean correcta = true;
+        boolean rechazada = false;
+        try {
+            operacion.run();
+        } catch (IllegalArgumentException e) {
+            rechazada = true;
+        } catch (RuntimeException e) {
+            correcta = false;
+            if (midiendo)
+                errores.computeIfAbsent(tipo.name() + ": " + e, clave -> new LongAdder()).increment();
+        }
+        if (midiendo) {
+            tipo.metrica.registrar(System.nanoTime() - inicio, correcta);
+            if (rechazada)
+                tipo.rechazos.increment();
+        }
+    }
+
+    private void informar(LocalDate primerDia, LocalDate inicioMedida, PoolStatistics pool) {
+        double segundos = parametros.get("segundos");
+        System.out.println();
+        System.out.printf("%d puestos, %.0f s medidos, días simulados %s .. %s (medidos desde %s), penalizaciones de la revisión diaria: %d%n",
+                parametros.get("hilos"), segundos, primerDia, LocalDate.now(reloj), inicioMedida, usuariosPenalizados.sum());
+        System.out.printf("%-18s %9s %9s %9s %9s %9s %9s %9s %9s%n",
+                "operación", "llamadas", "ops/s", "p50 µs", "p99 µs", "p99.9 µs", "máx µs", "rechazos", "errores");
+        long total = 0;
+        for (Tipo tipo : Tipo.values()) {
+            EstadisticasOperacion e = tipo.metrica.getEstadisticas();
+            total += e.llamadas();
+            System.out.printf("%-18s %9d %9.1f %9d %9d %9d %9d %8.2f%% %8.2f%%%n",
+                    e.nombre().substring("PruebaCarga.".length()), e.llamadas(), e.llamadas() / segundos,
+                    e.p50Micros(), e.p99Micros(), e.p999Micros(), e.maxMicros(),
+                    porcentaje(tipo.rechazos.sum(), e.llamadas()), porcentaje(e.errores(), e.llamadas()));
+        }
+        System.out.printf("%-18s %9d %9.1f%n", "total", total, total / segundos);
+        if (pool != null)
+            System.out.println(pool);
+        errores.forEach((error, veces) -> System.out.println("Error x" + veces.sum() + " " + error));
+    }
+
+    private static double porcentaje(long parte, long total) {
+        return total == 0 ? 0 : 100.0 * parte / total;
+    }
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+// Reloj que avanza "factor" veces más rápido que el real a partir de que se pone en marcha,
+// para que en una prueba de carga de minutos pasen meses de plazos y penalizaciones.
+// Parado devuelve siempre el instante inicial. Es seguro para varios hilos.
+public class RelojSimulado extends Clock {
+    private final Instant inicio;
+    private final ZoneId zona;
+    private final double factor;
+    // Compartido con los relojes de otras zonas obtenidos con withZone
+    private final Arranque arranque;
+
+    // Instante real (System.nanoTime) de la puesta en marcha; se lee sin bloqueos en cada instant()
+    private static final class Arranque {
+        volatile long nanos;
+        volatile boolean enMarcha; // Se escribe después de nanos
+    }
+
+    public RelojSimulado(Instant inicio, ZoneId zona, double factor) {
+        this(inicio, zona, factor, new Arranque());
+    }
+
+    private RelojSimulado(Instant inicio, ZoneId zona, double factor, Arranque arranque) {
+        if (factor <= 0)
+            throw new IllegalArgumentException("El factor del reloj debe ser mayor que 0");
+        this.inicio = inicio;
+        this.zona = zona;
+        this.factor = factor;
+        this.arranque = arranque;
+    }
+
+    public void arrancar() {
+        arranque.nanos = System.nanoTime();
+        arranque.enMarcha = true;
+    }
+
+    @Override
+    public Instant instant() {
+        if (!arranque.enMarcha)
+            return inicio;
+        return inicio.plusNanos((long) ((System.nanoTime() - arranque.nanos) * factor));
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zona;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zona) {
+        return new RelojSimulado(inicio, zona, factor, arranque);
+    }
+}
@@ -0,0 +1,61 @@
+package benchmark;
+
+import modelo.Prestamo;
+import modelo.Usuario;
+import org.openjdk.jmh.annotations.*;
+import servicio.BibliotecaEmbebida;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Operaciones de la capa de servicio sobre catálogos de distintos tamaños.
+// Cada servicio arranca con su caché vacía, por lo que las lecturas de claves
+// aleatorias mezclan aciertos en memoria y cargas desde la base de datos.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServicioBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int tamanoCatalogo;
+
+    private BibliotecaEmbebida biblioteca;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        biblioteca = BibliotecaEmbebida.conCatalogo(tamanoCatalogo);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        biblioteca.close();
+    }
+
+    private int aleatorio() {
+        return ThreadLocalRandom.current().nextInt(tamanoCatalogo);
+    }
+
+    @Benchmark
+    public Object libroRead() {
+        return biblioteca.libroService.read(BibliotecaEmbebida.isbn13(aleatorio()));
+    }
+
+    @Benchmark
+    public Usuario usuarioIniciarSesion() {
+        int n = aleatorio();
+        return biblioteca.usuarioService.iniciarSesion(BibliotecaEmbebida.email(n), BibliotecaEmbebida.password(n));
+    }
+
+    // Préstamo y devolución del mismo ejemplar, así el catálogo queda igual tras cada operación.
+    // Los IDs de usuarios y ejemplares empiezan en 1 (secuencias pooled-lo).
+    @Benchmark
+    @Threads(1)
+    public void prestamoRegistrarYDevolver() {
+        int id = aleatorio() + 1;
+        Prestamo prestamo = biblioteca.prestamoService.registrar(id, id);
+        biblioteca.prestamoService.devolver(prestamo.getId());
+    }
+}
@@ -0,0 +1,101 @@
+package benchmark;
+
+import controlador.ServidorHttp;
+import org.openjdk.jmh.annotations.*;
+import servicio.BibliotecaEmbebida;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Rendimiento (operaciones/ms) y latencia (percentiles de SampleTime) de la API HTTP con varios
+// clientes a la vez, cada hilo de JMH hace de un puesto de préstamo o quiosco.
+// Cada hilo se identifica siempre con el mismo usuario, como un puesto con su sesión abierta,
+// y presta para sí mismo (como en el quiosco) un ejemplar aleatorio que después devuelve,
+// así el catálogo queda igual tras cada operación.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(16)
+public class ServidorHttpBenchmark {
+
+    @Param({"10000"})
+    public int tamanoCatalogo;
+
+    private final AtomicInteger siguientePuesto = new AtomicInteger();
+    private BibliotecaEmbebida biblioteca;
+    private ServidorHttp servidor;
+    private HttpClient cliente;
+    private String base;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        biblioteca = BibliotecaEmbebida.conCatalogo(tamanoCatalogo);
+        servidor = new ServidorHttp(new InetSocketAddress("localhost", 0), biblioteca.usuarioService,
+                biblioteca.libroService, biblioteca.ejemplarService, biblioteca.prestamoService);
+        servidor.iniciar();
+        base = "http://localhost:" + servidor.getPuerto();
+        cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        cliente.close();
+        servidor.close();
+        biblioteca.close();
+    }
+
+    // Usuario con el que se identifica un hilo
+    @State(Scope.Thread)
+    public static class Puesto {
+        int usuario;
+        String credenciales;
+
+        @Setup(Level.Trial)
+        public void preparar(ServidorHttpBenchmark benchmark) {
+            usuario = benchmark.siguientePuesto.getAndIncrement();
+            String emailYPassword = BibliotecaEmbebida.email(usuario) + ":" + BibliotecaEmbebida.password(usuario);
+            credenciales = "Basic " + Base64.getEncoder().encodeToString(emailYPassword.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private HttpResponse<String> enviar(HttpRequest.Builder peticion, Puesto puesto) throws IOException, InterruptedException {
+        return cliente.send(peticion.header("Authorization", puesto.credenciales).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Benchmark
+    public int consultarLibro(Puesto puesto) throws IOException, InterruptedException {
+        int n = ThreadLocalRandom.current().nextInt(tamanoCatalogo);
+        HttpResponse<String> respuesta = enviar(HttpRequest.newBuilder(URI.create(base + "/libros/" + BibliotecaEmbebida.isbn13(n))), puesto);
+        if (respuesta.statusCode() != 200)
+            throw new IllegalStateException(respuesta.body());
+        return respuesta.body().length();
+    }
+
+    // Si dos hilos eligen a la vez el mismo ejemplar, uno de los préstamos se rechaza (400) y no se devuelve
+    @Benchmark
+    public int prestarYDevolver(Puesto puesto) throws IOException, InterruptedException {
+        int n = ThreadLocalRandom.current().nextInt(tamanoCatalogo);
+        // Los IDs de usuarios y ejemplares empiezan en 1 (secuencias pooled-lo)
+        String cuerpo = "{\"usuarioId\":" + (puesto.usuario + 1) + ",\"ejemplarId\":" + (n + 1) + "}";
+        HttpResponse<String> prestamo = enviar(HttpRequest.newBuilder(URI.create(base + "/prestamos"))
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo)), puesto);
+        if (prestamo.statusCode() != 201)
+            return prestamo.statusCode();
+
+        String id = prestamo.body().substring(6, prestamo.body().indexOf(','));
+        return enviar(HttpRequest.newBuilder(URI.create(base + "/prestamos/" + id + "/devolucion"))
+                .POST(HttpRequest.BodyPublishers.noBody()), puesto).statusCode();
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import servicio.BibliotecaEmbebida;
+import util.Validator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Validaciones de util.Validator sobre una mezcla de entradas válidas e inválidas
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+    private static final int MUESTRAS = 1024;
+
+    private String[] isbns;
+    private List<String> loteIsbns;
+    private String[] documentos;
+    private String[] emails;
+    private int i;
+
+    @Setup
+    public void preparar() {
+        isbns = new String[MUESTRAS];
+        documentos = new String[MUESTRAS];
+        emails = new String[MUESTRAS];
+        for (int n = 0; n < MUESTRAS; n++) {
+            boolean valido = n % 4 != 0;
+            isbns[n] = valido ? BibliotecaEmbebida.isbn13(n) : "97800000000" + (n % 10) + "X";
+            documentos[n] = valido ? BibliotecaEmbebida.dni(n) : String.format("%08dA", n);
+            emails[n] = valido ? BibliotecaEmbebida.email(n) : "usuario" + n + "@dominio.es";
+        }
+        loteIsbns = Arrays.asList(isbns);
+    }
+
+    private int siguiente() {
+        return i++ & (MUESTRAS - 1);
+    }
+
+    @Benchmark
+    public boolean isIsbn13Valid() {
+        return Validator.isIsbn13Valid(isbns[siguiente()]);
+    }
+
+    @Benchmark
+    public boolean isDocumentValid() {
+        return Validator.isDocumentValid(documentos[siguiente()]);
+    }
+
+    @Benchmark
+    public boolean isEmailValid() {
+        return Validator.isEmailValid(emails[siguiente()]);
+    }
+
+    // Validación masiva de un lote de MUESTRAS ISBNs
+    @Benchmark
+    public byte[] validateAllIsbn13() {
+        return Validator.validateAll(loteIsbns, Validator::checkIsbn13);
+    }
+
+    @Benchmark
+    public void todas(Blackhole bh) {
+        int n = siguiente();
+        bh.consume(Validator.isIsbn13Valid(isbns[n]));
+        bh.consume(Validator.isDocumentValid(documentos[n]));
+        bh.consume(Validator.isEmailValid(emails[n]));
+    }
+}
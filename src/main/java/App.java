@@ -1,16 +1,31 @@
 import controlador.ConsoleMenu;
+import controlador.ServidorHttp;
 import modelo.Usuario;
 
+import java.io.IOException;
 import java.util.Scanner;
 
 public class App {
-    public static void main(String[] args) {
+    private static final int PUERTO_HTTP = 8080;
+
+    // Sin argumentos se abre el menú de consola.
+    // Con --http [puerto] se arranca la API HTTP para los puestos de préstamo y el quiosco.
+    public static void main(String[] args) throws IOException {
         Scanner sc = new Scanner(System.in);
 
         // Admin email: admin@gmail.com
         // Admin password: admin
 
-        ConsoleMenu.initStartMenu(sc);
+        if (args.length > 0 && args[0].equals("--http")) {
+            int puerto = args.length > 1 ? Integer.parseInt(args[1]) : PUERTO_HTTP;
+            try (ServidorHttp servidor = ConsoleMenu.iniciarServidorHttp(puerto)) {
+                System.out.println("API HTTP escuchando en el puerto " + servidor.getPuerto() + ". Pulse Intro para detenerla.");
+                sc.nextLine();
+            }
+        } else {
+            ConsoleMenu.initStartMenu(sc);
+        }
+        ConsoleMenu.close(); // Cerrar la factoría de persistencia
         sc.close();  // Cerrar scanner para liberar recursos
     }
 }
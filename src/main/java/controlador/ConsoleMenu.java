@@ -1,29 +1,74 @@
 package controlador;
 
-import modelo.Ejemplar;
-import modelo.Libro;
-import modelo.Prestamo;
+import dto.FiltroPrestamos;
+import dto.FormatoExportacion;
+import dto.LibroEncontrado;
+import dto.OpcionesExportacion;
+import dto.OrdenLibros;
+import dto.OrdenPrestamos;
+import dto.ResultadoDevolucion;
+import dto.ResultadoImportacion;
+import dto.ResultadoRevision;
+import dto.TipoIdDevolucion;
+import modelo.TipoUsuario;
 import modelo.Usuario;
-import repositorio.GenericDAO;
+import repositorio.CacheStatistics;
+import repositorio.EjemplarDAO;
+import repositorio.EntityManagerProvider;
+import repositorio.LibroDAO;
+import repositorio.PoolStatistics;
+import repositorio.PrestamoDAO;
+import repositorio.ReplicaStatistics;
+import repositorio.UsuarioDAO;
+import servicio.ContadorDisponibilidad;
 import servicio.EjemplarService;
+import servicio.ExportadorPrestamos;
+import servicio.ImportadorCatalogo;
 import servicio.LibroService;
 import servicio.PrestamoService;
+import servicio.RevisionPrestamosVencidos;
 import servicio.UsuarioService;
-
+import util.EstadisticasOperacion;
+import util.Metricas;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
 public class ConsoleMenu {
 
-    private static final GenericDAO<Usuario> usuarioDAO = new GenericDAO<>(Usuario.class);
-    private static final GenericDAO<Libro> libroDAO = new GenericDAO<>(Libro.class);
-    private static final GenericDAO<Ejemplar> ejemplarDAO = new GenericDAO<>(Ejemplar.class);
-    private static final GenericDAO<Prestamo> prestamoDAO = new GenericDAO<>(Prestamo.class);
+    private static final int TAMANO_PAGINA = 100;
+    // Préstamos más recientes que se muestran al usuario al iniciar sesión
+    private static final int PRESTAMOS_USUARIO = 20;
+    private static final int RESULTADOS_BUSQUEDA = 20;
+    // Hora de la revisión diaria de préstamos vencidos
+    private static final LocalTime HORA_REVISION = LocalTime.of(3, 0);
+
+    // Una única factoría compartida por todos los DAOs
+    private static final EntityManagerProvider emProvider = new EntityManagerProvider("biblioteca");
+
+    private static final UsuarioDAO usuarioDAO = new UsuarioDAO(emProvider);
+    private static final LibroDAO libroDAO = new LibroDAO(emProvider);
+    private static final EjemplarDAO ejemplarDAO = new EjemplarDAO(emProvider);
+    private static final PrestamoDAO prestamoDAO = new PrestamoDAO(emProvider);
 
     private static final UsuarioService usuarioService = new UsuarioService(usuarioDAO);
-    private static final LibroService libroService = new LibroService(libroDAO);
-    private static final EjemplarService ejemplarService = new EjemplarService(ejemplarDAO, libroService);
+    private static final ContadorDisponibilidad contadorDisponibilidad = new ContadorDisponibilidad();
+    private static final LibroService libroService = new LibroService(libroDAO, contadorDisponibilidad);
+    private static final EjemplarService ejemplarService = new EjemplarService(ejemplarDAO, libroService, contadorDisponibilidad);
     private static final PrestamoService prestamoService = new PrestamoService(prestamoDAO, usuarioService, ejemplarService);
+    private static final ImportadorCatalogo importadorCatalogo = new ImportadorCatalogo(libroDAO, libroService, contadorDisponibilidad);
+    private static final ExportadorPrestamos exportadorPrestamos = new ExportadorPrestamos(prestamoDAO);
+    private static final RevisionPrestamosVencidos revisionPrestamosVencidos = new RevisionPrestamosVencidos(prestamoDAO, usuarioDAO, usuarioService);
+
+    static {
+        revisionPrestamosVencidos.programarDiariamente(HORA_REVISION);
+    }
 
     public static void initStartMenu(Scanner sc) {
         int option;
@@ -53,6 +98,19 @@ public class ConsoleMenu {
         } while (option != 0);
     }
 
+    // Arranca la API HTTP sobre los mismos servicios (y cachés) que el menú de consola
+    public static ServidorHttp iniciarServidorHttp(int puerto) throws IOException {
+        ServidorHttp servidor = new ServidorHttp(new InetSocketAddress(puerto), usuarioService, libroService, ejemplarService, prestamoService);
+        servidor.iniciar();
+        return servidor;
+    }
+
+    // Liberar la factoría de persistencia y sus conexiones
+    public static void close() {
+        revisionPrestamosVencidos.close();
+        emProvider.close();
+    }
+
     private static void initLogin(Scanner sc) {
         String email, password;
         System.out.println("--------------------------------");
@@ -111,7 +169,7 @@ public class ConsoleMenu {
         // Posibles implementacioneso:
         //      Operaciones de usuarios (admin/user) auditadas.
         //      Solicitud de préstamos desde el menú de usuario común
-        if (usuarioActivo.getTipo().equals("administrador"))
+        if (usuarioActivo.getTipo() == TipoUsuario.ADMINISTRADOR)
             initAdminMenu(sc, usuarioActivo);
         else 
             initUserMenu(sc, usuarioActivo);
@@ -127,6 +185,15 @@ public class ConsoleMenu {
             System.out.println("4 - Devolver prestamo");
             System.out.println("5 - Listar libros y stock");
             System.out.println("6 - Listar préstamos");
+            System.out.println("7 - Marcar ejemplar como dañado");
+            System.out.println("8 - Estadísticas del pool de conexiones");
+            System.out.println("9 - Estadísticas de la caché");
+            System.out.println("10 - Importar catálogo desde fichero");
+            System.out.println("11 - Exportar préstamos a fichero");
+            System.out.println("12 - Revisar préstamos vencidos");
+            System.out.println("13 - Devolución masiva");
+            System.out.println("14 - Métricas de operaciones");
+            System.out.println("15 - Buscar libros");
             System.out.println("0 - Salir");
             System.out.println("--------------------------------");
 
@@ -150,7 +217,34 @@ public class ConsoleMenu {
                     listarLibrosYStock();
                     break;
                 case 6:
-                    listarPrestamos();
+                    listarPrestamos(sc);
+                    break;
+                case 7:
+                    marcarEjemplarDanado(sc);
+                    break;
+                case 8:
+                    mostrarEstadisticasPool();
+                    break;
+                case 9:
+                    mostrarEstadisticasCache();
+                    break;
+                case 10:
+                    importarCatalogo(sc);
+                    break;
+                case 11:
+                    exportarPrestamos(sc);
+                    break;
+                case 12:
+                    revisarPrestamosVencidos();
+                    break;
+                case 13:
+                    devolverVarios(sc);
+                    break;
+                case 14:
+                    mostrarMetricas();
+                    break;
+                case 15:
+                    buscarLibros(sc);
                     break;
                 case 0:
                     System.out.println("Saliendo...");
@@ -161,24 +255,206 @@ public class ConsoleMenu {
         } while (option != 0);
     }
 
-    private static void listarPrestamos() {
-        List<Prestamo> prestamos = prestamoService.getPrestamos();
+    private static void importarCatalogo(Scanner sc) {
+        String ruta;
+        System.out.println("--------------------------------");
+        System.out.println("Importar Catálogo");
+        System.out.println("--------------------------------");
+
+        System.out.println("Ruta del fichero (isbn;titulo;autor;ejemplares): ");
+        ruta = sc.nextLine();
+
+        try {
+            // Importar el fichero por bloques, mostrando las filas rechazadas y el avance
+            ResultadoImportacion resultado = importadorCatalogo.importar(Path.of(ruta),
+                    System.out::println,
+                    lineas -> System.out.println("Procesadas " + lineas + " líneas..."));
+            System.out.println(resultado);
+        } catch (Exception e) {
+            System.out.println("Error al importar el fichero: " + e.getMessage());
+        }
+    }
+
+    private static void revisarPrestamosVencidos() {
+        System.out.println("--------------------------------");
+        System.out.println("Revisar Préstamos Vencidos");
+        System.out.println("--------------------------------");
+
+        ResultadoRevision ultimaRevision = revisionPrestamosVencidos.getUltimaRevision();
+        System.out.println("Última revisión programada: " + (ultimaRevision != null ? ultimaRevision : "ninguna"));
+        RuntimeException ultimoError = revisionPrestamosVencidos.getUltimoError();
+        if (ultimoError != null) {
+            System.out.println("La última revisión programada falló:");
+            ultimoError.printStackTrace(System.out);
+        }
+
+        try {
+            // Penalizar ahora a los usuarios con préstamos fuera de plazo, sin esperar a la revisión diaria
+            System.out.println(revisionPrestamosVencidos.revisar());
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static void exportarPrestamos(Scanner sc) {
+        String ruta, desdeId, desdeFecha;
+        System.out.println("--------------------------------");
+        System.out.println("Exportar Préstamos");
+        System.out.println("--------------------------------");
+
+        System.out.println("Ruta del fichero (.gz = comprimido): ");
+        ruta = sc.nextLine();
+
+        System.out.println("Formato (1 = CSV, 2 = JSON Lines): ");
+        FormatoExportacion formato = sc.nextLine().trim().equals("2") ? FormatoExportacion.JSONL : FormatoExportacion.CSV;
+
+        System.out.println("¿Incluir el título del libro? (s/n): ");
+        boolean conTitulo = sc.nextLine().trim().equalsIgnoreCase("s");
+
+        System.out.println("Exportar a partir del ID de préstamo (ENTER = todos): ");
+        desdeId = sc.nextLine().trim();
+
+        System.out.println("Exportar cambios desde la fecha AAAA-MM-DD (ENTER = todos): ");
+        desdeFecha = sc.nextLine().trim();
+
+        try {
+            OpcionesExportacion opciones = new OpcionesExportacion(formato, ruta.endsWith(".gz"), conTitulo,
+                    desdeId.isEmpty() ? null : Integer.valueOf(desdeId),
+                    desdeFecha.isEmpty() ? null : LocalDate.parse(desdeFecha));
+            long exportados = exportadorPrestamos.exportar(Path.of(ruta), opciones);
+            System.out.println(exportados + " préstamos exportados.");
+        } catch (Exception e) {
+            System.out.println("Error al exportar los préstamos: " + e.getMessage());
+        }
+    }
+
+    private static void marcarEjemplarDanado(Scanner sc) {
+        int idEjemplar;
+        System.out.println("--------------------------------");
+        System.out.println("Marcar Ejemplar como Dañado");
+        System.out.println("--------------------------------");
+
+        System.out.println("ID Ejemplar: ");
+        idEjemplar = sc.nextInt();
+        sc.nextLine(); // Limpiar buffer
+
+        try {
+            ejemplarService.marcarDanado(idEjemplar);
+            System.out.println("Ejemplar marcado como dañado.");
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static void mostrarEstadisticasPool() {
+        System.out.println("--------------------------------");
+        System.out.println("Estadísticas del pool de conexiones");
+        System.out.println("--------------------------------");
+
+        PoolStatistics poolStatistics = emProvider.getPoolStatistics();
+        System.out.println(poolStatistics != null ? poolStatistics : "No hay un pool de conexiones configurado.");
+        ReplicaStatistics replicaStatistics = emProvider.getReplicaStatistics();
+        if (replicaStatistics != null)
+            System.out.println(replicaStatistics);
+    }
+
+    private static void mostrarEstadisticasCache() {
+        System.out.println("--------------------------------");
+        System.out.println("Estadísticas de la caché de segundo nivel");
+        System.out.println("--------------------------------");
+
+        List<CacheStatistics> regiones = emProvider.getCacheStatistics();
+        if (regiones.isEmpty())
+            System.out.println("La caché de segundo nivel está desactivada.");
+        regiones.forEach(System.out::println);
+    }
+
+    private static void mostrarMetricas() {
+        System.out.println("--------------------------------");
+        System.out.println("Métricas de operaciones");
+        System.out.println("--------------------------------");
+
+        List<EstadisticasOperacion> operaciones = Metricas.getEstadisticas();
+        if (operaciones.isEmpty())
+            System.out.println("Todavía no se ha medido ninguna operación.");
+        operaciones.forEach(System.out::println);
+        System.out.println(emProvider.getHibernateStatistics());
+    }
+
+    private static void listarPrestamos(Scanner sc) {
         System.out.println("--------------------------------");
         System.out.println("Listado de Prestamos");
         System.out.println("--------------------------------");
 
-        prestamos.forEach(System.out::println);
+        System.out.println("Mostrar (1 = Todos, 2 = Activos, 3 = Devueltos): ");
+        int opcionFiltro = sc.nextInt();
+        sc.nextLine(); // Limpiar buffer
+
+        FiltroPrestamos filtro = switch (opcionFiltro) {
+            case 2 -> FiltroPrestamos.ACTIVOS;
+            case 3 -> FiltroPrestamos.DEVUELTOS;
+            default -> FiltroPrestamos.TODOS;
+        };
+
+        // Recorrer el historial por páginas (keyset) para no cargarlo entero en memoria
+        prestamoService.recorrerPrestamos(OrdenPrestamos.ID, filtro, TAMANO_PAGINA, System.out::println);
+    }
+
+    private static void buscarLibros(Scanner sc) {
+        System.out.println("--------------------------------");
+        System.out.println("Buscar Libros");
+        System.out.println("--------------------------------");
+
+        System.out.println("Título o autor (ENTER = volver): ");
+        String texto;
+        // Cada búsqueda se resuelve en memoria, se puede ir afinando el texto
+        while (!(texto = sc.nextLine()).isBlank()) {
+            List<LibroEncontrado> libros = libroService.buscar(texto, RESULTADOS_BUSQUEDA);
+            if (libros.isEmpty())
+                System.out.println("No hay libros que coincidan con la búsqueda.");
+            for (LibroEncontrado libro : libros)
+                System.out.println(libro + " - Stock: " + libroService.getStockIsbn(libro.isbn()));
+            System.out.println("Título o autor (ENTER = volver): ");
+        }
     }
 
     private static void listarLibrosYStock() {
-        List<Libro> libros = libroService.getLibros();
         System.out.println("--------------------------------");
         System.out.println("Listado de Libros y Stock");
         System.out.println("--------------------------------");
 
-        for (Libro libro : libros) {
-            int stock = libroService.getStockLibro(libro);
-            System.out.println(libro + " - Stock: " + stock);
+        // Recorrer el catálogo por páginas (keyset), cada una continúa por el índice de títulos
+        libroService.recorrerLibrosConStock(OrdenLibros.TITULO, TAMANO_PAGINA, System.out::println);
+    }
+
+    private static void devolverVarios(Scanner sc) {
+        System.out.println("--------------------------------");
+        System.out.println("Devolución Masiva");
+        System.out.println("--------------------------------");
+
+        System.out.println("Los IDs son de (1 = Préstamos, 2 = Ejemplares): ");
+        int opcionTipo = sc.nextInt();
+        sc.nextLine(); // Limpiar buffer
+        TipoIdDevolucion tipo = opcionTipo == 2 ? TipoIdDevolucion.EJEMPLAR : TipoIdDevolucion.PRESTAMO;
+
+        System.out.println("IDs separados por comas o espacios: ");
+        List<Integer> ids = new ArrayList<>();
+        for (String id : sc.nextLine().trim().split("[,\\s]+")) {
+            try {
+                ids.add(Integer.parseInt(id));
+            } catch (NumberFormatException e) {
+                System.out.println("ID no válido: " + id);
+                return;
+            }
+        }
+
+        try {
+            // Todos los préstamos se devuelven en una única transacción
+            List<ResultadoDevolucion> resultados = prestamoService.devolverVarios(ids, tipo);
+            resultados.forEach(System.out::println);
+            System.out.println("Préstamos devueltos: " + resultados.stream().filter(ResultadoDevolucion::devuelto).count() + " de " + resultados.size());
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
         }
     }
 
@@ -194,8 +470,10 @@ public class ConsoleMenu {
 
         try {
             // Devolver prestamo
-            prestamoService.devolver(idPrestamo);
-            System.out.println("Prestamo devuelto correctamente.");
+            if (prestamoService.devolver(idPrestamo).penalizado())
+                System.out.println("El préstamo no ha sido devuelto en plazo. Se ha penalizado al usuario");
+            else
+                System.out.println("Prestamo devuelto correctamente.");
         } catch (Exception e) {
             System.out.println(e.getMessage());
         }
@@ -291,9 +569,10 @@ public class ConsoleMenu {
 
     private static void showPrestamosUsuario(Scanner sc, Usuario usuarioActivo) {
         System.out.println("--------------------------------");
-        System.out.printf("Hola %s, tienes %d prestamos activos.\n", usuarioActivo.getNombre(), usuarioActivo.getNumeroPrestamosActivos());
+        System.out.printf("Hola %s, tienes %d prestamos activos.\n", usuarioActivo.getNombre(), prestamoService.getNumeroPrestamosActivos(usuarioActivo.getId()));
         System.out.println("--------------------------------");
-        usuarioActivo.getPrestamos().forEach(System.out::println);
+        // Una consulta con las columnas del listado, en lugar de recorrer la colección LAZY del usuario
+        prestamoService.listarPrestamosUsuario(usuarioActivo.getId(), PRESTAMOS_USUARIO).forEach(System.out::println);
     }
 
 }
@@ -0,0 +1,239 @@
+package controlador;
+
+import util.TextoJson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Lectura y escritura de JSON mínima para la API HTTP, sin dependencias.
+// Los objetos se leen como Map (en orden), los arrays como List y los números como Long o Double.
+final class Json {
+    // Objetos y arrays anidados como máximo: cada nivel es una llamada recursiva, y un texto como
+    // [[[[... agotaría la pila del hilo (StackOverflowError) en lugar de rechazarse como no válido
+    private static final int MAX_PROFUNDIDAD = 64;
+
+    private final String texto;
+    private int pos;
+    private int profundidad;
+
+    private Json(String texto) {
+        this.texto = texto;
+    }
+
+    // Objeto JSON del texto, lanza IllegalArgumentException si no es válido
+    static Map<String, Object> leerObjeto(String texto) {
+        Json json = new Json(texto);
+        json.saltarEspacios();
+        if (json.pos >= texto.length() || texto.charAt(json.pos) != '{')
+            throw new IllegalArgumentException("Se esperaba un objeto JSON");
+        Map<String, Object> objeto = json.leerMapa();
+        json.saltarEspacios();
+        if (json.pos != texto.length())
+            throw json.error("Contenido inesperado");
+        return objeto;
+    }
+
+    // Objeto JSON con las parejas clave, valor indicadas, en ese orden
+    static Map<String, Object> objeto(Object... clavesYValores) {
+        Map<String, Object> objeto = new LinkedHashMap<>();
+        for (int i = 0; i < clavesYValores.length; i += 2)
+            objeto.put((String) clavesYValores[i], clavesYValores[i + 1]);
+        return objeto;
+    }
+
+    // Texto JSON de un Map, Collection, String, Number, Boolean, LocalDate, enum o null
+    static String escribir(Object valor) {
+        StringBuilder sb = new StringBuilder();
+        escribir(sb, valor);
+        return sb.toString();
+    }
+
+    private static void escribir(StringBuilder sb, Object valor) {
+        if (valor == null) {
+            sb.append("null");
+        } else if (valor instanceof Number || valor instanceof Boolean) {
+            sb.append(valor);
+        } else if (valor instanceof Map<?, ?> mapa) {
+            sb.append('{');
+            boolean primero = true;
+            for (Map.Entry<?, ?> entrada : mapa.entrySet()) {
+                if (!primero)
+                    sb.append(',');
+                primero = false;
+                escribirTexto(sb, entrada.getKey().toString());
+                sb.append(':');
+                escribir(sb, entrada.getValue());
+            }
+            sb.append('}');
+        } else if (valor instanceof Collection<?> lista) {
+            sb.append('[');
+            boolean primero = true;
+            for (Object elemento : lista) {
+                if (!primero)
+                    sb.append(',');
+                primero = false;
+                escribir(sb, elemento);
+            }
+            sb.append(']');
+        } else {
+            // Textos, fechas (ISO-8601) y enums por su texto
+            escribirTexto(sb, valor.toString());
+        }
+    }
+
+    private static void escribirTexto(StringBuilder sb, String texto) {
+        try {
+            TextoJson.escribir(sb, texto);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Un StringBuilder no lanza IOException
+        }
+    }
+
+    private Object leerValor() {
+        saltarEspacios();
+        if (pos >= texto.length())
+            throw error("Fin inesperado");
+        char c = texto.charAt(pos);
+        return switch (c) {
+            case '{', '[' -> leerAnidado(c);
+            case '"' -> leerTexto();
+            case 't' -> leerLiteral("true", Boolean.TRUE);
+            case 'f' -> leerLiteral("false", Boolean.FALSE);
+            case 'n' -> leerLiteral("null", null);
+            default -> leerNumero();
+        };
+    }
+
+    private Object leerAnidado(char apertura) {
+        if (++profundidad > MAX_PROFUNDIDAD)
+            throw error("Más de " + MAX_PROFUNDIDAD + " niveles de anidamiento");
+        Object valor = apertura == '{' ? leerMapa() : leerLista();
+        profundidad--;
+        return valor;
+    }
+
+    private Map<String, Object> leerMapa() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        pos++; // '{'
+        saltarEspacios();
+        if (consumir('}'))
+            return mapa;
+        do {
+            saltarEspacios();
+            if (pos >= texto.length() || texto.charAt(pos) != '"')
+                throw error("Se esperaba el nombre de un campo");
+            String clave = leerTexto();
+            saltarEspacios();
+            if (!consumir(':'))
+                throw error("Se esperaba ':'");
+            mapa.put(clave, leerValor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir('}'))
+            throw error("Se esperaba '}'");
+        return mapa;
+    }
+
+    private List<Object> leerLista() {
+        List<Object> lista = new ArrayList<>();
+        pos++; // '['
+        saltarEspacios();
+        if (consumir(']'))
+            return lista;
+        do {
+            lista.add(leerValor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir(']'))
+            throw error("Se esperaba ']'");
+        return lista;
+    }
+
+    private String leerTexto() {
+        StringBuilder sb = new StringBuilder();
+        pos++; // '"'
+        while (pos < texto.length()) {
+            char c = texto.charAt(pos++);
+            if (c == '"')
+                return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= texto.length())
+                break;
+            char escapado = texto.charAt(pos++);
+            switch (escapado) {
+                case '"', '\\', '/' -> sb.append(escapado);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > texto.length())
+                        throw error("Secuencia \\u incompleta");
+                    try {
+                        sb.append((char) Integer.parseInt(texto, pos, pos + 4, 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Secuencia \\u no válida");
+                    }
+                    pos += 4;
+                }
+                default -> throw error("Secuencia de escape no válida");
+            }
+        }
+        throw error("Cadena sin cerrar");
+    }
+
+    private Object leerLiteral(String literal, Object valor) {
+        if (!texto.startsWith(literal, pos))
+            throw error("Valor no válido");
+        pos += literal.length();
+        return valor;
+    }
+
+    private Number leerNumero() {
+        int inicio = pos;
+        boolean decimal = false;
+        while (pos < texto.length()) {
+            char c = texto.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E')
+                decimal = true;
+            else if ((c < '0' || c > '9') && c != '-' && c != '+')
+                break;
+            pos++;
+        }
+        String numero = texto.substring(inicio, pos);
+        try {
+            // Sin el operador ternario, que convertiría también los enteros a double
+            if (decimal)
+                return Double.parseDouble(numero);
+            return Long.parseLong(numero);
+        } catch (NumberFormatException e) {
+            throw error("Valor no válido");
+        }
+    }
+
+    private boolean consumir(char c) {
+        if (pos < texto.length() && texto.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void saltarEspacios() {
+        while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos)))
+            pos++;
+    }
+
+    private IllegalArgumentException error(String motivo) {
+        return new IllegalArgumentException("JSON no válido en la posición " + pos + ": " + motivo);
+    }
+}
@@ -0,0 +1,529 @@
+package controlador;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dto.FiltroPrestamos;
+import dto.LibroEncontrado;
+import dto.LibroStock;
+import dto.OrdenLibros;
+import dto.OrdenPrestamos;
+import dto.PrestamoResumen;
+import dto.ResultadoDevolucion;
+import dto.TipoIdDevolucion;
+import modelo.Ejemplar;
+import modelo.Libro;
+import modelo.Prestamo;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.EjemplarService;
+import servicio.LibroService;
+import servicio.PrestamoService;
+import servicio.UsuarioService;
+import util.EstadisticasOperacion;
+import util.Metricas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// API HTTP/JSON sobre la capa de servicio, para varios puestos de préstamo y el quiosco de autoservicio.
+// Cada petición se atiende en su propio hilo virtual: una petición que espera a la DB no ocupa
+// un hilo del sistema, y la concurrencia real contra la DB la limita el pool de conexiones.
+//
+// Autenticación HTTP Basic con el email y la contraseña del usuario. Los administradores pueden
+// hacer todas las operaciones; un usuario común (quiosco) consulta el catálogo y presta y devuelve
+// solo sus propios préstamos. Solo el registro de usuarios es público.
+//
+//   POST /usuarios                       {dni, nombre, email, password}    (público, usuario común)
+//   GET  /sesion                         usuario autenticado
+//   GET  /usuarios/{id}
+//   POST /usuarios/{id}/penalizacion                                       (administrador)
+//   GET  /libros?orden=&despuesDe=&tamano=                               catálogo con stock; despuesDe = siguiente
+//   GET  /libros?q=&tamano=              búsqueda por título y autor, la más relevante primero
+//   GET  /libros/{isbn}
+//   POST /libros                         {isbn, titulo, autor}             (administrador)
+//   POST /ejemplares                     {isbn, estado}                    (administrador)
+//   GET  /ejemplares/{id}
+//   POST /ejemplares/{id}/danado                                           (administrador)
+//   GET  /prestamos?filtro=&despuesDe=&tamano=                             (administrador)
+//   POST /prestamos                      {usuarioId, ejemplarId}
+//   GET  /prestamos/{id}
+//   POST /prestamos/{id}/devolucion
+//   POST /devoluciones                   {tipo: prestamo|ejemplar, ids}    (administrador)
+//   GET  /metricas                       llamadas y latencia por operación (administrador)
+public class ServidorHttp implements AutoCloseable {
+    private static final int TAMANO_PAGINA = 100;
+    private static final int MAX_TAMANO_PAGINA = 1000;
+    // Tamaño máximo del cuerpo de una petición; el registro de usuarios lo lee sin autenticar
+    private static final int MAX_BYTES_CUERPO = 1 << 20;
+    // Segundos que se espera a que terminen las peticiones en curso al parar
+    private static final int SEGUNDOS_PARADA = 2;
+
+    static {
+        // Sin TCP_NODELAY la respuesta, que el servidor escribe en dos partes (cabeceras y cuerpo),
+        // espera al ACK retrasado del cliente: unos 40 ms por petición en lugar de microsegundos.
+        // Se lee al cargar el servidor HTTP del JDK, por eso se fija antes de crear ninguno.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final UsuarioService usuarioService;
+    private final LibroService libroService;
+    private final EjemplarService ejemplarService;
+    private final PrestamoService prestamoService;
+    private final HttpServer servidor;
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ServidorHttp(InetSocketAddress direccion, UsuarioService usuarioService, LibroService libroService,
+                        EjemplarService ejemplarService, PrestamoService prestamoService) throws IOException {
+        this.usuarioService = usuarioService;
+        this.libroService = libroService;
+        this.ejemplarService = ejemplarService;
+        this.prestamoService = prestamoService;
+        this.servidor = HttpServer.create(direccion, 0);
+        servidor.setExecutor(hilos);
+        servidor.createContext("/", this::atender);
+    }
+
+    public void iniciar() {
+        servidor.start();
+    }
+
+    // Puerto en el que escucha, útil si se ha creado con el puerto 0
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(SEGUNDOS_PARADA);
+        hilos.close();
+    }
+
+    // Error con su código de estado HTTP
+    private static class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int estado;
+
+        private ErrorHttp(int estado, String mensaje) {
+            super(mensaje);
+            this.estado = estado;
+        }
+    }
+
+    // Petición en curso: ruta separada en segmentos y parámetros de la consulta
+    private record Peticion(HttpExchange intercambio, String metodo, String[] ruta, Map<String, String> parametros) {
+        // Las altas (POST sobre una colección) responden 201, el resto de operaciones 200
+        boolean esAlta() {
+            return metodo.equals("POST") && ruta.length == 1 && !ruta[0].equals("devoluciones");
+        }
+    }
+
+    private void atender(HttpExchange intercambio) throws IOException {
+        int estado;
+        Object respuesta;
+        try {
+            Peticion peticion = new Peticion(intercambio, intercambio.getRequestMethod(),
+                    segmentos(intercambio.getRequestURI().getRawPath()), parametros(intercambio.getRequestURI().getRawQuery()));
+            respuesta = enrutar(peticion);
+            estado = peticion.esAlta() ? 201 : 200;
+        } catch (ErrorHttp e) {
+            estado = e.estado;
+            respuesta = Json.objeto("error", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            // Validaciones de la capa de servicio
+            estado = 400;
+            respuesta = Json.objeto("error", e.getMessage());
+        } catch (RuntimeException e) {
+            estado = 500;
+            respuesta = Json.objeto("error", "Error interno del servidor");
+            System.err.println("Error en " + intercambio.getRequestMethod() + " " + intercambio.getRequestURI() + ":");
+            e.printStackTrace();
+        } catch (Error e) {
+            // Sin respuesta, el cliente esperaría a su propio timeout con la conexión abierta
+            intercambio.close();
+            throw e;
+        }
+
+        byte[] cuerpo = Json.escribir(respuesta).getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (estado == 401)
+            intercambio.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"biblioteca\", charset=\"UTF-8\"");
+        intercambio.sendResponseHeaders(estado, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private Object enrutar(Peticion p) {
+        String[] ruta = p.ruta();
+        String recurso = ruta.length > 0 ? ruta[0] : "";
+
+        // Registro, la única operación sin autenticación
+        if (recurso.equals("usuarios") && ruta.length == 1) {
+            exigirMetodo(p, "POST");
+            return registrarUsuario(leerCuerpo(p));
+        }
+
+        Usuario usuario = autenticar(p.intercambio());
+        switch (recurso) {
+            case "sesion" -> {
+                exigirRuta(ruta.length == 1);
+                exigirMetodo(p, "GET");
+                return usuarioJson(usuario);
+            }
+            case "usuarios" -> {
+                int idUsuario = leerId(ruta[1]);
+                if (ruta.length == 2) {
+                    exigirMetodo(p, "GET");
+                    if (idUsuario != usuario.getId())
+                        exigirAdministrador(usuario);
+                    return usuarioJson(existente(usuarioService.read(idUsuario), "No hay un usuario registrado con este ID"));
+                }
+                exigirRuta(ruta.length == 3 && ruta[2].equals("penalizacion"));
+                exigirMetodo(p, "POST");
+                exigirAdministrador(usuario);
+                existente(usuarioService.read(idUsuario), "No hay un usuario registrado con este ID");
+                return usuarioJson(usuarioService.penalizarUsuario(idUsuario));
+            }
+            case "libros" -> {
+                if (ruta.length == 1 && p.metodo().equals("POST")) {
+                    exigirAdministrador(usuario);
+                    Map<String, Object> cuerpo = leerCuerpo(p);
+                    String isbn = texto(cuerpo, "isbn");
+                    libroService.registrar(isbn, texto(cuerpo, "titulo"), texto(cuerpo, "autor"));
+                    return libroJson(libroService.read(isbn));
+                }
+                exigirMetodo(p, "GET");
+                if (ruta.length == 1)
+                    return p.parametros().containsKey("q") ? buscarLibros(p) : listarLibros(p);
+                exigirRuta(ruta.length == 2);
+                return libroJson(existente(libroService.read(ruta[1]), "No hay un libro registrado con este ISBN13"));
+            }
+            case "ejemplares" -> {
+                if (ruta.length == 1) {
+                    exigirMetodo(p, "POST");
+                    exigirAdministrador(usuario);
+                    Map<String, Object> cuerpo = leerCuerpo(p);
+                    return ejemplarJson(ejemplarService.registrar(texto(cuerpo, "isbn"), texto(cuerpo, "estado")));
+                }
+                int idEjemplar = leerId(ruta[1]);
+                if (ruta.length == 2) {
+                    exigirMetodo(p, "GET");
+                    return ejemplarJson(existente(ejemplarService.read(idEjemplar), "No hay un ejemplar registrado con este ID"));
+                }
+                exigirRuta(ruta.length == 3 && ruta[2].equals("danado"));
+                exigirMetodo(p, "POST");
+                exigirAdministrador(usuario);
+                ejemplarService.marcarDanado(idEjemplar);
+                return ejemplarJson(ejemplarService.read(idEjemplar));
+            }
+            case "prestamos" -> {
+                if (ruta.length == 1) {
+                    if (p.metodo().equals("GET")) {
+                        exigirAdministrador(usuario);
+                        return listarPrestamos(p);
+                    }
+                    exigirMetodo(p, "POST");
+                    Map<String, Object> cuerpo = leerCuerpo(p);
+                    int idUsuario = entero(cuerpo, "usuarioId");
+                    if (idUsuario != usuario.getId())
+                        exigirAdministrador(usuario);
+                    return prestamoJson(prestamoService.registrar(idUsuario, entero(cuerpo, "ejemplarId")));
+                }
+                int idPrestamo = leerId(ruta[1]);
+                Prestamo prestamo = existente(prestamoService.readById(idPrestamo), "No hay un préstamo registrado con este ID");
+                if (prestamo.getUsuario().getId().intValue() != usuario.getId())
+                    exigirAdministrador(usuario);
+                if (ruta.length == 2) {
+                    exigirMetodo(p, "GET");
+                    return prestamoJson(prestamo);
+                }
+                exigirRuta(ruta.length == 3 && ruta[2].equals("devolucion"));
+                exigirMetodo(p, "POST");
+                return devolucionJson(prestamoService.devolver(idPrestamo));
+            }
+            case "devoluciones" -> {
+                exigirRuta(ruta.length == 1);
+                exigirMetodo(p, "POST");
+                exigirAdministrador(usuario);
+                return devolverVarios(leerCuerpo(p));
+            }
+            case "metricas" -> {
+                exigirRuta(ruta.length == 1);
+                exigirMetodo(p, "GET");
+                exigirAdministrador(usuario);
+                return metricas();
+            }
+            default -> throw new ErrorHttp(404, "Recurso no encontrado");
+        }
+    }
+
+    private Object registrarUsuario(Map<String, Object> cuerpo) {
+        // Desde la API solo se registran usuarios comunes, como en el menú de registro
+        return usuarioJson(usuarioService.registrar(texto(cuerpo, "dni"), texto(cuerpo, "nombre"),
+                texto(cuerpo, "email"), texto(cuerpo, "password"), null));
+    }
+
+    private Object listarLibros(Peticion p) {
+        OrdenLibros orden;
+        try {
+            orden = OrdenLibros.valueOf(p.parametros().getOrDefault("orden", "titulo").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(400, "Orden no válido");
+        }
+        int tamano = tamanoPagina(p);
+        List<LibroStock> pagina = libroService.getLibrosConStock(cursorLibros(p.parametros().get("despuesDe"), orden), orden, tamano);
+
+        List<Object> libros = new ArrayList<>(pagina.size());
+        for (LibroStock libro : pagina)
+            libros.add(Json.objeto("isbn", libro.isbn(), "titulo", libro.titulo(), "autor", libro.autor(),
+                    "ejemplares", libro.ejemplares(), "disponibles", libro.disponibles()));
+        String siguiente = pagina.size() == tamano ? siguienteLibros(pagina.get(pagina.size() - 1), orden) : null;
+        return Json.objeto("libros", libros, "siguiente", siguiente);
+    }
+
+    // El cursor del listado de libros es opaco: la ordenación, el ISBN del último libro de la página y
+    // su clave de ordenación tal como se envió. Los listados se leen de la réplica, así que la clave
+    // no se puede volver a calcular con el stock en memoria, que va por delante de ella.
+    private static String siguienteLibros(LibroStock ultimo, OrdenLibros orden) {
+        Object clave = orden.getValorClave(ultimo);
+        String cursor = orden.name() + "\n" + ultimo.isbn() + "\n" + (clave == null ? "" : clave);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LibroStock cursorLibros(String cursor, OrdenLibros orden) {
+        if (cursor == null)
+            return null;
+        try {
+            // La clave va al final: un título puede contener saltos de línea
+            String[] partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+            if (partes.length == 3 && partes[0].equals(orden.name()))
+                return orden.getCursor(partes[1], partes[2]);
+        } catch (IllegalArgumentException e) {
+            // Base64 o clave numérica no válidas
+        }
+        throw new ErrorHttp(400, "Cursor despuesDe no válido para esta ordenación");
+    }
+
+    private Object buscarLibros(Peticion p) {
+        List<Object> libros = new ArrayList<>();
+        for (LibroEncontrado libro : libroService.buscar(p.parametros().get("q"), tamanoPagina(p)))
+            libros.add(Json.objeto("isbn", libro.isbn(), "titulo", libro.titulo(), "autor", libro.autor(),
+                    "disponibles", libroService.getStockIsbn(libro.isbn())));
+        return libros;
+    }
+
+    // Página de préstamos por ID (keyset): la siguiente página se pide con despuesDe = siguiente
+    private Object listarPrestamos(Peticion p) {
+        FiltroPrestamos filtro;
+        try {
+            filtro = FiltroPrestamos.valueOf(p.parametros().getOrDefault("filtro", "todos").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(400, "Filtro no válido");
+        }
+        int despuesDe = parametroEntero(p, "despuesDe", 0);
+        int tamano = tamanoPagina(p);
+        PrestamoResumen ultimo = despuesDe > 0 ? new PrestamoResumen(despuesDe, 0, 0, null, null) : null;
+        List<PrestamoResumen> pagina = prestamoService.listarPrestamos(ultimo, OrdenPrestamos.ID, filtro, tamano);
+
+        List<Object> prestamos = new ArrayList<>(pagina.size());
+        for (PrestamoResumen prestamo : pagina)
+            prestamos.add(Json.objeto("id", prestamo.id(), "usuarioId", prestamo.usuarioId(), "ejemplarId", prestamo.ejemplarId(),
+                    "fechaInicio", prestamo.fechaInicio(), "fechaDevolucion", prestamo.fechaDevolucion()));
+        Integer siguiente = pagina.size() == tamano ? pagina.get(pagina.size() - 1).id() : null;
+        return Json.objeto("prestamos", prestamos, "siguiente", siguiente);
+    }
+
+    private Object devolverVarios(Map<String, Object> cuerpo) {
+        String textoTipo = texto(cuerpo, "tipo");
+        TipoIdDevolucion tipo;
+        try {
+            tipo = TipoIdDevolucion.valueOf(textoTipo == null ? "" : textoTipo.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(400, "El tipo debe ser prestamo o ejemplar");
+        }
+        if (!(cuerpo.get("ids") instanceof List<?> valores))
+            throw new ErrorHttp(400, "El campo ids debe ser una lista");
+        List<Integer> ids = new ArrayList<>(valores.size());
+        for (Object valor : valores)
+            ids.add(comoEntero(valor)); // Los que no lo son se informan como ID no válido
+
+        List<Object> resultados = new ArrayList<>(ids.size());
+        for (ResultadoDevolucion resultado : prestamoService.devolverVarios(ids, tipo))
+            resultados.add(devolucionJson(resultado));
+        return resultados;
+    }
+
+    private static Object metricas() {
+        List<Object> operaciones = new ArrayList<>();
+        for (EstadisticasOperacion e : Metricas.getEstadisticas())
+            operaciones.add(Json.objeto("nombre", e.nombre(), "llamadas", e.llamadas(), "errores", e.errores(),
+                    "mediaMicros", e.mediaMicros(), "p50Micros", e.p50Micros(), "p99Micros", e.p99Micros(),
+                    "p999Micros", e.p999Micros(), "maxMicros", e.maxMicros()));
+        return Json.objeto("operaciones", operaciones);
+    }
+
+    private static Map<String, Object> usuarioJson(Usuario usuario) {
+        // Nunca se devuelve la contraseña
+        return Json.objeto("id", usuario.getId(), "dni", usuario.getDni(), "nombre", usuario.getNombre(),
+                "email", usuario.getEmail(), "tipo", usuario.getTipo(), "penalizacionHasta", usuario.getPenalizacionHasta());
+    }
+
+    private Map<String, Object> libroJson(Libro libro) {
+        return Json.objeto("isbn", libro.getIsbn(), "titulo", libro.getTitulo(), "autor", libro.getAutor(),
+                "disponibles", libroService.getStockLibro(libro));
+    }
+
+    private static Map<String, Object> ejemplarJson(Ejemplar ejemplar) {
+        return Json.objeto("id", ejemplar.getId(), "isbn", ejemplar.getIsbn().getIsbn(), "estado", ejemplar.getEstado());
+    }
+
+    private static Map<String, Object> prestamoJson(Prestamo prestamo) {
+        return Json.objeto("id", prestamo.getId(), "usuarioId", prestamo.getUsuario().getId(), "ejemplarId", prestamo.getEjemplar().getId(),
+                "fechaInicio", prestamo.getFechaInicio(), "fechaDevolucion", prestamo.getFechaDevolucion());
+    }
+
+    private static Map<String, Object> devolucionJson(ResultadoDevolucion resultado) {
+        return Json.objeto("id", resultado.id(), "prestamoId", resultado.idPrestamo(), "devuelto", resultado.devuelto(),
+                "penalizado", resultado.penalizado(), "motivo", resultado.motivo());
+    }
+
+    // Usuario de las credenciales HTTP Basic (email:contraseña)
+    private Usuario autenticar(HttpExchange intercambio) {
+        String cabecera = intercambio.getRequestHeaders().getFirst("Authorization");
+        if (cabecera == null || !cabecera.regionMatches(true, 0, "Basic ", 0, 6))
+            throw new ErrorHttp(401, "Se requiere autenticación");
+        String credenciales;
+        try {
+            credenciales = new String(Base64.getDecoder().decode(cabecera.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(401, "Credenciales no válidas");
+        }
+        int separador = credenciales.indexOf(':');
+        if (separador < 0)
+            throw new ErrorHttp(401, "Credenciales no válidas");
+        try {
+            return usuarioService.iniciarSesion(credenciales.substring(0, separador), credenciales.substring(separador + 1));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(401, "Credenciales no válidas");
+        }
+    }
+
+    private static void exigirAdministrador(Usuario usuario) {
+        if (usuario.getTipo() != TipoUsuario.ADMINISTRADOR)
+            throw new ErrorHttp(403, "Operación reservada a administradores");
+    }
+
+    private static void exigirMetodo(Peticion p, String metodo) {
+        if (!p.metodo().equals(metodo))
+            throw new ErrorHttp(405, "Método no permitido");
+    }
+
+    private static void exigirRuta(boolean valida) {
+        if (!valida)
+            throw new ErrorHttp(404, "Recurso no encontrado");
+    }
+
+    private static <T> T existente(T valor, String mensaje) {
+        if (valor == null)
+            throw new ErrorHttp(404, mensaje);
+        return valor;
+    }
+
+    // Se lee como mucho un byte más del máximo, lo justo para saber que lo supera
+    private static Map<String, Object> leerCuerpo(Peticion p) {
+        try (InputStream entrada = p.intercambio().getRequestBody()) {
+            byte[] cuerpo = entrada.readNBytes(MAX_BYTES_CUERPO + 1);
+            if (cuerpo.length > MAX_BYTES_CUERPO)
+                throw new ErrorHttp(413, "El cuerpo de la petición supera el máximo de " + MAX_BYTES_CUERPO + " bytes");
+            return Json.leerObjeto(new String(cuerpo, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ErrorHttp(400, "No se ha podido leer la petición");
+        }
+    }
+
+    // Campo de texto del cuerpo, null si no está
+    private static String texto(Map<String, Object> cuerpo, String campo) {
+        Object valor = cuerpo.get(campo);
+        if (valor != null && !(valor instanceof String))
+            throw new ErrorHttp(400, "El campo " + campo + " debe ser un texto");
+        return (String) valor;
+    }
+
+    private static int entero(Map<String, Object> cuerpo, String campo) {
+        Integer numero = comoEntero(cuerpo.get(campo));
+        if (numero == null)
+            throw new ErrorHttp(400, "El campo " + campo + " debe ser un número entero");
+        return numero;
+    }
+
+    // Número entero JSON dentro del rango de int, null si no lo es
+    private static Integer comoEntero(Object valor) {
+        if (valor instanceof Long numero && numero >= Integer.MIN_VALUE && numero <= Integer.MAX_VALUE)
+            return numero.intValue();
+        return null;
+    }
+
+    private static int leerId(String segmento) {
+        try {
+            return Integer.parseInt(segmento);
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(404, "Recurso no encontrado");
+        }
+    }
+
+    private static int parametroEntero(Peticion p, String nombre, int porDefecto) {
+        String valor = p.parametros().get(nombre);
+        if (valor == null)
+            return porDefecto;
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero < 0)
+                throw new NumberFormatException();
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(400, "Parámetro " + nombre + " no válido");
+        }
+    }
+
+    private static int tamanoPagina(Peticion p) {
+        int tamano = parametroEntero(p, "tamano", TAMANO_PAGINA);
+        if (tamano < 1 || tamano > MAX_TAMANO_PAGINA)
+            throw new ErrorHttp(400, "El tamaño de página debe estar entre 1 y " + MAX_TAMANO_PAGINA);
+        return tamano;
+    }
+
+    private static String[] segmentos(String ruta) {
+        List<String> segmentos = new ArrayList<>();
+        for (String segmento : ruta.split("/"))
+            if (!segmento.isEmpty())
+                segmentos.add(URLDecoder.decode(segmento, StandardCharsets.UTF_8));
+        return segmentos.toArray(new String[0]);
+    }
+
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null)
+            return parametros;
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0)
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+}
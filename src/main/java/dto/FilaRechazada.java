@@ -0,0 +1,10 @@
+package dto;
+
+// Fila de un fichero de importación que no se ha podido cargar, con el motivo
+public record FilaRechazada(long linea, String contenido, String motivo) {
+
+    @Override
+    public String toString() {
+        return "Línea " + linea + ": " + motivo + " -> " + contenido;
+    }
+}
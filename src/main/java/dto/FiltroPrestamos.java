@@ -0,0 +1,19 @@
+package dto;
+
+// Filtro del listado de préstamos según estén o no devueltos
+public enum FiltroPrestamos {
+    TODOS(""),
+    ACTIVOS(" AND p.fechaDevolucion IS NULL"),
+    DEVUELTOS(" AND p.fechaDevolucion IS NOT NULL");
+
+    private final String condicion;
+
+    FiltroPrestamos(String condicion) {
+        this.condicion = condicion;
+    }
+
+    // Condición JPQL que se añade al WHERE
+    public String getCondicion() {
+        return condicion;
+    }
+}
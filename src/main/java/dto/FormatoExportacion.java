@@ -0,0 +1,17 @@
+package dto;
+
+// Formato del fichero de exportación
+public enum FormatoExportacion {
+    CSV(".csv"),
+    JSONL(".jsonl");
+
+    private final String extension;
+
+    FormatoExportacion(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
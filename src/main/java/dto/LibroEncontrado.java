@@ -0,0 +1,14 @@
+package dto;
+
+// Resultado de la búsqueda de libros por título y autor, con la puntuación con la que se ha ordenado
+public record LibroEncontrado(String isbn, String titulo, String autor, int puntuacion) {
+
+    @Override
+    public String toString() {
+        return "Libro{" +
+                "isbn='" + isbn + '\'' +
+                ", titulo='" + titulo + '\'' +
+                ", autor='" + autor + '\'' +
+                '}';
+    }
+}
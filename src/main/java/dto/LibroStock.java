@@ -0,0 +1,15 @@
+package dto;
+
+// Proyección de un libro con su número de ejemplares, sin cargar las entidades
+public record LibroStock(String isbn, String titulo, String autor, long ejemplares, long disponibles) {
+
+    @Override
+    public String toString() {
+        return "Libro{" +
+                "isbn='" + isbn + '\'' +
+                ", titulo='" + titulo + '\'' +
+                ", autor='" + autor + '\'' +
+                ", ejemplares=" + ejemplares +
+                "} - Stock: " + disponibles;
+    }
+}
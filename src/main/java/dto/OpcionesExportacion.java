@@ -0,0 +1,14 @@
+package dto;
+
+import java.time.LocalDate;
+
+// Qué préstamos se exportan y cómo. Para una exportación incremental se indica el último ID
+// ya exportado (desdeId) o la fecha desde la que hay cambios (desdeFecha), o ambos.
+public record OpcionesExportacion(FormatoExportacion formato, boolean gzip, boolean conTitulo,
+                                  Integer desdeId, LocalDate desdeFecha) {
+
+    // Exportación completa sin comprimir y sin título
+    public static OpcionesExportacion completa(FormatoExportacion formato) {
+        return new OpcionesExportacion(formato, false, false, null, null);
+    }
+}
@@ -0,0 +1,52 @@
+package dto;
+
+import java.util.function.Function;
+
+// Criterios de ordenación del listado de libros con stock, paginado por cursor (keyset):
+// cada página continúa después del último libro de la anterior, desempatando por ISBN, sin OFFSET.
+// ISBN, TITULO y AUTOR recorren un índice; DISPONIBLES se calcula por libro y recorre el catálogo entero.
+public enum OrdenLibros {
+    ISBN(null, false, null),
+    TITULO("l.titulo", false, LibroStock::titulo),
+    AUTOR("l.autor", false, LibroStock::autor),
+    DISPONIBLES("(SELECT COUNT(d) FROM Ejemplar d WHERE d.isbn = l AND d.estado = :disponible)", true, LibroStock::disponibles);
+
+    private final String clave;
+    private final boolean descendente;
+    private final Function<LibroStock, Object> valorClave;
+
+    OrdenLibros(String clave, boolean descendente, Function<LibroStock, Object> valorClave) {
+        this.clave = clave;
+        this.descendente = descendente;
+        this.valorClave = valorClave;
+    }
+
+    // Condición JPQL de los libros que van después del cursor (:ultimaClave, :ultimoIsbn).
+    // La primera comparación permite recorrer el índice (clave, isbn) como un rango.
+    public String getCondicionCursor() {
+        if (clave == null)
+            return "l.isbn > :ultimoIsbn";
+        String op = descendente ? "<" : ">";
+        return clave + " " + op + "= :ultimaClave AND (" + clave + " " + op + " :ultimaClave OR l.isbn > :ultimoIsbn)";
+    }
+
+    // Expresión JPQL del ORDER BY
+    public String getOrderBy() {
+        return clave == null ? "l.isbn" : clave + (descendente ? " DESC" : "") + ", l.isbn";
+    }
+
+    // Valor de la clave de ordenación del libro, para continuar después de él (null si se ordena por ISBN)
+    public Object getValorClave(LibroStock libro) {
+        return valorClave == null ? null : valorClave.apply(libro);
+    }
+
+    // Libro desde el que continuar con solo su ISBN y su clave de ordenación, en texto (la de getValorClave)
+    public LibroStock getCursor(String isbn, String clave) {
+        return switch (this) {
+            case ISBN -> new LibroStock(isbn, null, null, 0, 0);
+            case TITULO -> new LibroStock(isbn, clave, null, 0, 0);
+            case AUTOR -> new LibroStock(isbn, null, clave, 0, 0);
+            case DISPONIBLES -> new LibroStock(isbn, null, null, 0, Long.parseLong(clave));
+        };
+    }
+}
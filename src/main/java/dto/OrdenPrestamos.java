@@ -0,0 +1,25 @@
+package dto;
+
+// Clave de la paginación por cursor (keyset) del listado de préstamos.
+// Cada página continúa después del último préstamo de la anterior, sin OFFSET.
+public enum OrdenPrestamos {
+    ID("p.id > :ultimoId", "p.id"),
+    // La primera condición permite recorrer el índice (fechaInicio, id) como un rango
+    FECHA_INICIO("p.fechaInicio >= :ultimaFecha AND (p.fechaInicio > :ultimaFecha OR p.id > :ultimoId)", "p.fechaInicio, p.id");
+
+    private final String condicionCursor;
+    private final String orderBy;
+
+    OrdenPrestamos(String condicionCursor, String orderBy) {
+        this.condicionCursor = condicionCursor;
+        this.orderBy = orderBy;
+    }
+
+    public String getCondicionCursor() {
+        return condicionCursor;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+}
@@ -0,0 +1,12 @@
+package dto;
+
+import java.time.LocalDate;
+
+// Fila de la exportación de préstamos, el título del libro solo se rellena si se pide
+public record PrestamoExportado(int id, int usuarioId, int ejemplarId, LocalDate fechaInicio,
+                                LocalDate fechaDevolucion, String titulo) {
+
+    public PrestamoExportado(int id, int usuarioId, int ejemplarId, LocalDate fechaInicio, LocalDate fechaDevolucion) {
+        this(id, usuarioId, ejemplarId, fechaInicio, fechaDevolucion, null);
+    }
+}
@@ -0,0 +1,18 @@
+package dto;
+
+import java.time.LocalDate;
+
+// Proyección de un préstamo con las columnas del listado, sin cargar usuario ni ejemplar
+public record PrestamoResumen(int id, int usuarioId, int ejemplarId, LocalDate fechaInicio, LocalDate fechaDevolucion) {
+
+    @Override
+    public String toString() {
+        return "Prestamo{" +
+                "id=" + id +
+                ", id usuario=" + usuarioId +
+                ", id ejemplar=" + ejemplarId +
+                ", fechaInicio=" + fechaInicio +
+                ", fechaDevolucion=" + fechaDevolucion +
+                '}';
+    }
+}
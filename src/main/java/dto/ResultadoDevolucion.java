@@ -0,0 +1,20 @@
+package dto;
+
+// Resultado de cada ID de una devolución masiva. Si no se ha devuelto, motivo indica por qué.
+public record ResultadoDevolucion(int id, Integer idPrestamo, boolean devuelto, boolean penalizado, String motivo) {
+
+    public static ResultadoDevolucion devuelto(int id, int idPrestamo, boolean penalizado) {
+        return new ResultadoDevolucion(id, idPrestamo, true, penalizado, null);
+    }
+
+    public static ResultadoDevolucion rechazado(int id, String motivo) {
+        return new ResultadoDevolucion(id, null, false, false, motivo);
+    }
+
+    @Override
+    public String toString() {
+        if (!devuelto)
+            return id + ": " + motivo;
+        return id + ": préstamo " + idPrestamo + " devuelto" + (penalizado ? " fuera de plazo, se ha penalizado al usuario" : "");
+    }
+}
@@ -0,0 +1,15 @@
+package dto;
+
+// Resumen de una importación del catálogo
+public record ResultadoImportacion(long filasLeidas, int librosCreados, int librosExistentes,
+                                   int ejemplaresCreados, long filasRechazadas) {
+
+    @Override
+    public String toString() {
+        return "Filas leídas: " + filasLeidas +
+                ", libros creados: " + librosCreados +
+                ", libros ya existentes: " + librosExistentes +
+                ", ejemplares creados: " + ejemplaresCreados +
+                ", filas rechazadas: " + filasRechazadas;
+    }
+}
@@ -0,0 +1,14 @@
+package dto;
+
+import java.time.LocalDate;
+
+// Resumen de una revisión de préstamos vencidos
+public record ResultadoRevision(LocalDate fecha, long prestamosVencidos, int usuariosPenalizados) {
+
+    @Override
+    public String toString() {
+        return "Revisión del " + fecha +
+                ": préstamos vencidos sin devolver: " + prestamosVencidos +
+                ", usuarios penalizados: " + usuariosPenalizados;
+    }
+}
@@ -0,0 +1,7 @@
+package dto;
+
+// Qué identifican los IDs de una devolución masiva
+public enum TipoIdDevolucion {
+    PRESTAMO,
+    EJEMPLAR
+}
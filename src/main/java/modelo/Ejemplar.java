@@ -1,6 +1,8 @@
 package modelo;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
@@ -9,26 +11,34 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "idx_ejemplar_isbn_estado", columnList = "isbn, estado")) // Ejemplares disponibles de un ISBN
 public class Ejemplar {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id", nullable = false)
     private Integer id;
 
+    // Control de concurrencia optimista: evita prestar dos veces el mismo ejemplar
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "isbn", nullable = false)
     private modelo.Libro isbn;
 
-    @ColumnDefault("'Disponible'")
-    @Lob
-    @Column(name = "estado")
-    private String estado;
+    @ColumnDefault("'D'")
+    @Column(name = "estado", nullable = false, length = 1)
+    private EstadoEjemplar estado;
 
     @OneToMany(mappedBy = "ejemplar")
     private Set<modelo.Prestamo> prestamos = new LinkedHashSet<>();
 
-    public Ejemplar(Libro libro, String estado) {
+    public Ejemplar(Libro libro, EstadoEjemplar estado) {
         this.isbn = libro;
         this.estado = estado;
     }
@@ -45,6 +55,14 @@ public class Ejemplar {
         this.id = id;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public modelo.Libro getIsbn() {
         return isbn;
     }
@@ -53,11 +71,11 @@ public class Ejemplar {
         this.isbn = isbn;
     }
 
-    public String getEstado() {
+    public EstadoEjemplar getEstado() {
         return estado;
     }
 
-    public void setEstado(String estado) {
+    public void setEstado(EstadoEjemplar estado) {
         this.estado = estado;
     }
 
@@ -73,7 +91,7 @@ public class Ejemplar {
     public String toString() {
         return "Ejemplar{" +
                 "id=" + id +
-                ", isbn=" + isbn +
+                ", isbn=" + isbn.getIsbn() + // Solo el ISBN: el libro puede no estar cargado
                 ", estado='" + estado + '\'' +
                 '}';
     }
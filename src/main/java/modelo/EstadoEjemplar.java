@@ -0,0 +1,40 @@
+package modelo;
+
+// Estado de un ejemplar, se guarda en la DB como un código de un carácter
+public enum EstadoEjemplar {
+    DISPONIBLE('D', "Disponible"),
+    PRESTADO('P', "Prestado"),
+    DANADO('X', "Dañado");
+
+    private final char codigo;
+    private final String texto;
+
+    EstadoEjemplar(char codigo, String texto) {
+        this.codigo = codigo;
+        this.texto = texto;
+    }
+
+    public char getCodigo() {
+        return codigo;
+    }
+
+    public static EstadoEjemplar deCodigo(char codigo) {
+        for (EstadoEjemplar estado : values())
+            if (estado.codigo == codigo)
+                return estado;
+        throw new IllegalArgumentException("Código de estado no válido: " + codigo);
+    }
+
+    // Estado a partir del texto introducido (sin distinguir mayúsculas), null si no es válido
+    public static EstadoEjemplar deTexto(String texto) {
+        for (EstadoEjemplar estado : values())
+            if (estado.texto.equalsIgnoreCase(texto))
+                return estado;
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+}
@@ -0,0 +1,18 @@
+package modelo;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter(autoApply = true)
+public class EstadoEjemplarConverter implements AttributeConverter<EstadoEjemplar, Character> {
+
+    @Override
+    public Character convertToDatabaseColumn(EstadoEjemplar estado) {
+        return estado == null ? null : estado.getCodigo();
+    }
+
+    @Override
+    public EstadoEjemplar convertToEntityAttribute(Character codigo) {
+        return codigo == null ? null : EstadoEjemplar.deCodigo(codigo);
+    }
+}
@@ -1,14 +1,25 @@
 package modelo;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = {
+        @Index(name = "idx_libro_titulo", columnList = "titulo, isbn"), // Listado de libros por título
+        @Index(name = "idx_libro_autor", columnList = "autor, isbn") // Listado de libros por autor
+})
 public class Libro {
     @Id
     @Column(name = "isbn", nullable = false, length = 20)
@@ -21,6 +32,7 @@ public class Libro {
     private String autor;
 
     @OneToMany(mappedBy = "isbn")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<Ejemplar> ejemplares = new LinkedHashSet<>();
 
     public Set<Ejemplar> getEjemplares() {
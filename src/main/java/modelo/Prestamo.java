@@ -1,12 +1,19 @@
 package modelo;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
 import java.time.LocalDate;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_prestamo_devolucion_inicio", columnList = "fechaDevolucion, fechaInicio, usuario_id"), // Usuarios con préstamos activos vencidos
+        @Index(name = "idx_prestamo_usuario_devolucion", columnList = "usuario_id, fechaDevolucion"), // Préstamos activos de un usuario
+        @Index(name = "idx_prestamo_ejemplar", columnList = "ejemplar_id"), // Préstamo activo de un ejemplar
+        @Index(name = "idx_prestamo_inicio", columnList = "fechaInicio, id") // Listado de préstamos por fecha de inicio
+})
 public class Prestamo {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -29,6 +36,11 @@ public class Prestamo {
     @Column(name = "fechaDevolucion")
     private LocalDate fechaDevolucion;
 
+    // La revisión de préstamos vencidos ya ha penalizado al usuario por este préstamo sin devolver
+    @ColumnDefault("false")
+    @Column(name = "penalizadoEnRevision", nullable = false)
+    private boolean penalizadoEnRevision;
+
     public Prestamo(Usuario usuario, Ejemplar ejemplar, LocalDate fechaInicio, LocalDate fechaDevolucion) {
         this.usuario = usuario;
         this.ejemplar = ejemplar;
@@ -80,6 +92,14 @@ public class Prestamo {
         this.fechaDevolucion = fechaDevolucion;
     }
 
+    public boolean isPenalizadoEnRevision() {
+        return penalizadoEnRevision;
+    }
+
+    public void setPenalizadoEnRevision(boolean penalizadoEnRevision) {
+        this.penalizadoEnRevision = penalizadoEnRevision;
+    }
+
     @Override
     public String toString() {
         return "Prestamo{" +
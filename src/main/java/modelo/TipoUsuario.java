@@ -0,0 +1,39 @@
+package modelo;
+
+// Tipo de usuario, se guarda en la DB como un código de un carácter
+public enum TipoUsuario {
+    NORMAL('N', "normal"),
+    ADMINISTRADOR('A', "administrador");
+
+    private final char codigo;
+    private final String texto;
+
+    TipoUsuario(char codigo, String texto) {
+        this.codigo = codigo;
+        this.texto = texto;
+    }
+
+    public char getCodigo() {
+        return codigo;
+    }
+
+    public static TipoUsuario deCodigo(char codigo) {
+        for (TipoUsuario tipo : values())
+            if (tipo.codigo == codigo)
+                return tipo;
+        throw new IllegalArgumentException("Código de tipo de usuario no válido: " + codigo);
+    }
+
+    // Tipo a partir del texto introducido (sin distinguir mayúsculas), null si no es válido
+    public static TipoUsuario deTexto(String texto) {
+        for (TipoUsuario tipo : values())
+            if (tipo.texto.equalsIgnoreCase(texto))
+                return tipo;
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+}
@@ -0,0 +1,18 @@
+package modelo;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter(autoApply = true)
+public class TipoUsuarioConverter implements AttributeConverter<TipoUsuario, Character> {
+
+    @Override
+    public Character convertToDatabaseColumn(TipoUsuario tipo) {
+        return tipo == null ? null : tipo.getCodigo();
+    }
+
+    @Override
+    public TipoUsuario convertToEntityAttribute(Character codigo) {
+        return codigo == null ? null : TipoUsuario.deCodigo(codigo);
+    }
+}
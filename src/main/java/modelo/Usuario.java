@@ -1,18 +1,33 @@
 package modelo;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 @Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = Usuario.UK_DNI, columnNames = "dni"),
+        @UniqueConstraint(name = Usuario.UK_EMAIL, columnNames = "email")
+})
 public class Usuario {
+    // Nombres de las restricciones únicas (migración V1), para saber cuál incumple un registro
+    public static final String UK_DNI = "uk_usuario_dni";
+    public static final String UK_EMAIL = "uk_usuario_email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id", nullable = false)
     private Integer id;
 
+    // Control de concurrencia optimista: el préstamo la incrementa para respetar el límite de préstamos activos
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
     @Column(name = "dni", nullable = false, length = 15)
     private String dni;
 
@@ -25,9 +40,8 @@ public class Usuario {
     @Column(name = "password", nullable = false)
     private String password;
 
-    @Lob
-    @Column(name = "tipo", nullable = false)
-    private String tipo;
+    @Column(name = "tipo", nullable = false, length = 1)
+    private TipoUsuario tipo;
 
     @Column(name = "penalizacionHasta")
     private LocalDate penalizacionHasta;
@@ -35,7 +49,7 @@ public class Usuario {
     @OneToMany(mappedBy = "usuario")
     private Set<Prestamo> prestamos = new LinkedHashSet<>();
 
-    public Usuario(String dni, String nombre, String email, String password, String tipo) {
+    public Usuario(String dni, String nombre, String email, String password, TipoUsuario tipo) {
         this.dni = dni;
         this.nombre = nombre;
         this.email = email;
@@ -56,6 +70,14 @@ public class Usuario {
         this.id = id;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public String getDni() {
         return dni;
     }
@@ -88,11 +110,11 @@ public class Usuario {
         this.password = password;
     }
 
-    public String getTipo() {
+    public TipoUsuario getTipo() {
         return tipo;
     }
 
-    public void setTipo(String tipo) {
+    public void setTipo(TipoUsuario tipo) {
         this.tipo = tipo;
     }
 
@@ -112,13 +134,6 @@ public class Usuario {
         this.prestamos = prestamos;
     }
 
-    // Método para obtener el número de préstamos activos del usuario
-    public int getNumeroPrestamosActivos() {
-        return (int) this.getPrestamos().stream() // Obtiene préstamos del usuario
-                .filter(prestamo -> prestamo.getFechaDevolucion() == null) // Filtra los que no han sido devueltos
-                .count(); // los cuenta
-    }
-
     @Override
     public String toString() {
         return "Usuario{" +
@@ -126,10 +141,8 @@ public class Usuario {
                 ", dni='" + dni + '\'' +
                 ", nombre='" + nombre + '\'' +
                 ", email='" + email + '\'' +
-                ", password='" + password + '\'' +
                 ", tipo='" + tipo + '\'' +
                 ", penalizacionHasta=" + penalizacionHasta +
-                ", prestamos=" + prestamos +
-                '}';
+                '}'; // Sin la contraseña ni los préstamos, que se cargarían con una consulta más
     }
 }
\ No newline at end of file
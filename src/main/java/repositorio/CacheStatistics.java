@@ -0,0 +1,16 @@
+package repositorio;
+
+// Aciertos, fallos y escrituras de una región de la caché de segundo nivel
+public record CacheStatistics(String region, long aciertos, long fallos, long escrituras) {
+
+    public double getTasaAciertos() {
+        long lecturas = aciertos + fallos;
+        return lecturas == 0 ? 0 : (double) aciertos / lecturas;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: aciertos=%d, fallos=%d (%.1f%% aciertos), escrituras=%d",
+                region, aciertos, fallos, getTasaAciertos() * 100, escrituras);
+    }
+}
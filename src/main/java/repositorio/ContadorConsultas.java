@@ -0,0 +1,115 @@
+package repositorio;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Cuenta las sentencias SQL que ejecuta una operación, para detectar consultas N+1 (por ejemplo,
+// recorrer una asociación LAZY de cada entidad de una lista) antes de que lleguen a producción.
+// Hibernate pasa cada sentencia por el inspector al prepararla; solo se anotan las del hilo que
+// está contando, así que fuera de una medición el coste es una lectura de un ThreadLocal.
+// Un lote JDBC cuenta como una sentencia, y los aciertos de la caché de segundo nivel no cuentan.
+//
+//   List<Sentencia> sentencias = ContadorConsultas.registrar(() -> prestamoService.devolver(id));
+//   ContadorConsultas.conPresupuesto("PrestamoService.devolver", 4, () -> prestamoService.devolver(id));
+public final class ContadorConsultas implements StatementInspector {
+    private static final long serialVersionUID = 1L;
+
+    // Frames de la aplicación que se guardan como lugar de cada sentencia
+    private static final int MAX_FRAMES = 4;
+    private static final List<String> PAQUETES_AJENOS = List.of("java.", "javax.", "jdk.", "sun.", "jakarta.",
+            "org.hibernate.", "com.zaxxer.", "org.h2.", "org.mariadb.", "net.bytebuddy.",
+            "repositorio.ContadorConsultas", "util.Metricas");
+    // Envoltorios de GenericDAO que solo abren el EntityManager o la transacción
+    private static final Set<String> ENVOLTORIOS = Set.of("withEntityManager", "withTransaction", "withTransactionRetry", "inTransaction");
+
+    private static final ThreadLocal<Registro> registroActual = new ThreadLocal<>();
+
+    // Sentencia ejecutada y cadena de llamadas de la aplicación que la lanzó (la más interna primero)
+    public record Sentencia(String sql, String lugar) {
+
+        @Override
+        public String toString() {
+            return sql + "\n      en " + lugar;
+        }
+    }
+
+    // Las mediciones pueden anidarse: las sentencias cuentan también para las que la contienen
+    private record Registro(Registro exterior, List<Sentencia> sentencias) {
+    }
+
+    // Lo instancia Hibernate a partir de hibernate.session_factory.statement_inspector
+    public ContadorConsultas() {
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Registro registro = registroActual.get();
+        if (registro != null) {
+            Sentencia sentencia = new Sentencia(sql, lugar());
+            for (Registro r = registro; r != null; r = r.exterior())
+                r.sentencias().add(sentencia);
+        }
+        return sql;
+    }
+
+    // Sentencias que ejecuta la operación en este hilo, en orden
+    public static List<Sentencia> registrar(Runnable operacion) {
+        Registro registro = new Registro(registroActual.get(), new ArrayList<>());
+        registroActual.set(registro);
+        try {
+            operacion.run();
+        } finally {
+            if (registro.exterior() == null)
+                registroActual.remove();
+            else
+                registroActual.set(registro.exterior());
+        }
+        return registro.sentencias();
+    }
+
+    // Ejecuta la operación y lanza AssertionError, con las sentencias y sus lugares, si ejecuta
+    // más de maxSentencias. Pensado para fijar en las pruebas el presupuesto de cada operación.
+    public static <T> T conPresupuesto(String operacion, int maxSentencias, Supplier<T> trabajo) {
+        List<Object> resultado = new ArrayList<>(1);
+        List<Sentencia> sentencias = registrar(() -> resultado.add(trabajo.get()));
+        if (sentencias.size() > maxSentencias)
+            throw new AssertionError(operacion + " ejecutó " + sentencias.size() + " sentencias, el presupuesto es " +
+                    maxSentencias + ":\n" + sentencias.stream().map(s -> "  " + s).collect(Collectors.joining("\n")));
+        @SuppressWarnings("unchecked")
+        T valor = (T) resultado.get(0);
+        return valor;
+    }
+
+    public static void conPresupuesto(String operacion, int maxSentencias, Runnable trabajo) {
+        conPresupuesto(operacion, maxSentencias, () -> {
+            trabajo.run();
+            return null;
+        });
+    }
+
+    // Primeros frames de la pila que pertenecen a la aplicación, p. ej. "PrestamoDAO.read:70 <- PrestamoService.readById:212"
+    private static String lugar() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> PAQUETES_AJENOS.stream().noneMatch(frame.getClassName()::startsWith))
+                .filter(frame -> !esEnvoltorio(frame))
+                .limit(MAX_FRAMES)
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) +
+                        "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .collect(Collectors.joining(" <- ")));
+    }
+
+    // Las lambdas se llaman lambda$<método que la contiene>$<n>
+    private static boolean esEnvoltorio(StackWalker.StackFrame frame) {
+        if (!frame.getClassName().equals(GenericDAO.class.getName()))
+            return false;
+        String metodo = frame.getMethodName();
+        if (metodo.startsWith("lambda$"))
+            metodo = metodo.substring("lambda$".length(), metodo.lastIndexOf('$'));
+        return ENVOLTORIOS.contains(metodo);
+    }
+}
@@ -0,0 +1,49 @@
+package repositorio;
+
+import modelo.Ejemplar;
+import modelo.EstadoEjemplar;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class EjemplarDAO extends GenericDAO<Ejemplar> {
+
+    // Ejemplar tras un cambio de estado y el estado que tenía en la DB antes del cambio
+    public record CambioEstado(Ejemplar ejemplar, EstadoEjemplar estadoAnterior) {
+    }
+
+    public EjemplarDAO(EntityManagerProvider emProvider) {
+        super(Ejemplar.class, emProvider);
+    }
+
+    // Cambia el estado del ejemplar en una transacción. El ejemplar se lee de la DB (no de la caché)
+    // y la comprobación decide sobre ese estado: lanza una excepción si el cambio no se puede hacer.
+    // Si un préstamo o una devolución lo modifica a la vez, la versión ya no coincide y se repite.
+    public CambioEstado cambiarEstado(int idEjemplar, EstadoEjemplar estado, Consumer<Ejemplar> comprobacion) {
+        return withTransactionRetry(em -> {
+            Ejemplar ejemplar = em.find(Ejemplar.class, idEjemplar, SIN_CACHE);
+            comprobacion.accept(ejemplar);
+
+            EstadoEjemplar estadoAnterior = ejemplar.getEstado();
+            ejemplar.setEstado(estado);
+            em.flush(); // Incrementa la versión
+            return new CambioEstado(ejemplar, estadoAnterior);
+        });
+    }
+
+    // Número de ejemplares disponibles de cada libro, calculado en la DB
+    public Map<String, Long> countDisponiblesPorIsbn() {
+        List<Object[]> filas = withEntityManager(em -> em.createQuery(
+                        "SELECT e.isbn.isbn, COUNT(e) FROM Ejemplar e WHERE e.estado = :estado GROUP BY e.isbn.isbn",
+                        Object[].class)
+                .setParameter("estado", EstadoEjemplar.DISPONIBLE)
+                .getResultList());
+
+        Map<String, Long> disponibles = new HashMap<>();
+        for (Object[] fila : filas)
+            disponibles.put((String) fila[0], (Long) fila[1]);
+        return disponibles;
+    }
+}
@@ -0,0 +1,304 @@
+package repositorio;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Ciclo de vida compartido de la unidad de persistencia.
+// Se crea una única EntityManagerFactory (costosa y thread-safe) por aplicación
+// y cada DAO obtiene de ella EntityManagers de corta duración (uno por operación).
+public class EntityManagerProvider implements AutoCloseable {
+    // Propiedades opcionales que cambian los IDs IDENTITY por secuencias asignadas por bloques,
+    // necesario para que Hibernate agrupe los INSERT en lotes JDBC (las secuencias las crea la migración V6
+    // y en MariaDB se sitúan tras el mayor ID existente en cada arranque, ver mariadb/afterMigrate.sql)
+    public static final Map<String, Object> SEQUENCE_ID_PROPERTIES = Map.of(
+            "hibernate.orm_xml_files", List.of("META-INF/orm-ids-secuencia.xml"),
+            "hibernate.id.optimizer.pooled.preferred", "pooled-lo"
+    );
+
+    // Migraciones del esquema: las comunes y las propias de cada base de datos, en la carpeta con
+    // el nombre del subprotocolo de la URL JDBC (jdbc:mariadb:... en mariadb, jdbc:h2:... en h2)
+    private static final String MIGRACIONES = "classpath:db/migration/";
+    // Versión que se asigna a una base de datos que ya tiene tablas pero no historial de migraciones.
+    // Sin esta propiedad se deduce de las tablas (ver versionEsquemaExistente).
+    public static final String FLYWAY_BASELINE_VERSION = "biblioteca.flyway.baselineVersion";
+    // Con false no se aplican las migraciones al arrancar
+    public static final String FLYWAY_MIGRATE = "biblioteca.flyway.migrate";
+
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    // Consultas que se muestran en las estadísticas, las de mayor tiempo máximo
+    private static final int CONSULTAS_MAS_LENTAS = 10;
+
+    private final EntityManagerFactory emf;
+    // Nombre con el que se publican las estadísticas en JMX, null si no se han publicado
+    private final ObjectName nombreJmx;
+
+    public EntityManagerProvider(String persistenceUnit) {
+        this(persistenceUnit, Map.of());
+    }
+
+    // Permite sobrescribir propiedades del persistence.xml (URL, credenciales...)
+    public EntityManagerProvider(String persistenceUnit, Map<String, ?> properties) {
+        this.emf = Persistence.createEntityManagerFactory(persistenceUnit, properties);
+        try {
+            migrar();
+        } catch (RuntimeException e) {
+            emf.close();
+            throw e;
+        }
+        this.nombreJmx = publicarEstadisticas(persistenceUnit);
+    }
+
+    // Lleva el esquema a la última versión de db/migration con Flyway, usando el pool de la unidad
+    // si lo hay. Hibernate no crea ni modifica tablas (hibernate.hbm2ddl.auto no se configura).
+    private void migrar() {
+        Map<String, Object> propiedades = emf.getProperties();
+        if ("false".equals(String.valueOf(propiedades.get(FLYWAY_MIGRATE))))
+            return;
+
+        String url = (String) propiedades.get("hibernate.connection.url");
+        FluentConfiguration configuracion = Flyway.configure()
+                .locations(MIGRACIONES + "comun", MIGRACIONES + url.split(":")[1])
+                .baselineOnMigrate(true);
+        ConnectionProvider connectionProvider = getConnectionProvider();
+        if (connectionProvider != null && connectionProvider.isUnwrappableAs(HikariDataSource.class))
+            configuracion.dataSource(connectionProvider.unwrap(HikariDataSource.class));
+        else
+            configuracion.dataSource(url,
+                    (String) propiedades.get("hibernate.connection.username"),
+                    (String) propiedades.get("hibernate.connection.password"));
+        Object baselineVersion = propiedades.get(FLYWAY_BASELINE_VERSION);
+        configuracion.baselineVersion(baselineVersion != null ? baselineVersion.toString() : versionEsquemaExistente(configuracion.getDataSource()));
+        configuracion.load().migrate();
+    }
+
+    // Versión de db/migration en la que está un esquema creado antes de usar Flyway. Según su época,
+    // database/bd_biblioteca.sql lo dejaba como la V1 (estado y tipo como ENUM de texto), la V2 (códigos
+    // de un carácter e índice de Ejemplar), la V3 (columnas version) o la V4 (índice de préstamos vencidos).
+    // Flyway solo la usa si hay tablas y no hay historial; en una base de datos vacía aplica todas.
+    private static String versionEsquemaExistente(DataSource dataSource) {
+        try (Connection conexion = dataSource.getConnection()) {
+            DatabaseMetaData metaData = conexion.getMetaData();
+            if (tieneIndice(conexion, metaData, "Prestamo", "idx_prestamo_devolucion_inicio"))
+                return "4";
+            if (tieneColumna(conexion, metaData, "Usuario", "version"))
+                return "3";
+            if (tieneIndice(conexion, metaData, "Ejemplar", "idx_ejemplar_isbn_estado"))
+                return "2";
+            return "1";
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se ha podido leer el esquema de la base de datos", e);
+        }
+    }
+
+    private static boolean tieneIndice(Connection conexion, DatabaseMetaData metaData, String tabla, String indice) throws SQLException {
+        try (ResultSet indices = metaData.getIndexInfo(conexion.getCatalog(), conexion.getSchema(), identificador(metaData, tabla), false, true)) {
+            while (indices.next())
+                if (indice.equalsIgnoreCase(indices.getString("INDEX_NAME")))
+                    return true;
+        }
+        return false;
+    }
+
+    private static boolean tieneColumna(Connection conexion, DatabaseMetaData metaData, String tabla, String columna) throws SQLException {
+        try (ResultSet columnas = metaData.getColumns(conexion.getCatalog(), conexion.getSchema(), identificador(metaData, tabla), identificador(metaData, columna))) {
+            return columnas.next();
+        }
+    }
+
+    // Nombre tal como lo guarda la base de datos (H2 pasa a mayúsculas los identificadores sin comillas)
+    private static String identificador(DatabaseMetaData metaData, String nombre) throws SQLException {
+        return metaData.storesUpperCaseIdentifiers() ? nombre.toUpperCase() : nombre;
+    }
+
+    // Nuevo EntityManager para una unidad de trabajo, debe cerrarse al terminar
+    public EntityManager createEntityManager() {
+        return emf.createEntityManager();
+    }
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return emf;
+    }
+
+    // Tamaño de lote JDBC configurado en la unidad (hibernate.jdbc.batch_size)
+    public int getJdbcBatchSize() {
+        Object batchSize = emf.getProperties().get("hibernate.jdbc.batch_size");
+        return batchSize == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize.toString());
+    }
+
+    private ConnectionProvider getConnectionProvider() {
+        return emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(ConnectionProvider.class);
+    }
+
+    // Estadísticas del pool de conexiones (del primario si hay réplica), null si la unidad no usa HikariCP
+    public PoolStatistics getPoolStatistics() {
+        ConnectionProvider connectionProvider = getConnectionProvider();
+        if (connectionProvider == null || !connectionProvider.isUnwrappableAs(HikariDataSource.class))
+            return null;
+        return getPoolStatistics(connectionProvider.unwrap(HikariDataSource.class));
+    }
+
+    // Estadísticas de la réplica de lectura, null si no hay réplica configurada
+    public ReplicaStatistics getReplicaStatistics() {
+        ConnectionProvider connectionProvider = getConnectionProvider();
+        if (connectionProvider == null || !connectionProvider.isUnwrappableAs(ReplicaConnectionProvider.class))
+            return null;
+
+        ReplicaConnectionProvider replica = connectionProvider.unwrap(ReplicaConnectionProvider.class);
+        if (!replica.hasReplica())
+            return null;
+        return new ReplicaStatistics(getPoolStatistics(replica.getReplicaDataSource()),
+                replica.isReplicaDisponible(),
+                replica.getConexionesReplica(),
+                replica.getConexionesDesviadas());
+    }
+
+    private static PoolStatistics getPoolStatistics(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        String poolName = dataSource.getPoolName();
+        return new PoolStatistics(poolName,
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(),
+                PoolMetricsTracker.getTimeouts(poolName),
+                PoolMetricsTracker.getTramos(poolName));
+    }
+
+    // Estadísticas de cada región de la caché de segundo nivel (vacío si está desactivada)
+    public List<CacheStatistics> getCacheStatistics() {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        if (!sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled())
+            return List.of();
+
+        Statistics statistics = sessionFactory.getStatistics();
+        List<CacheStatistics> regiones = new ArrayList<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+            regiones.add(new CacheStatistics(region,
+                    regionStatistics.getHitCount(),
+                    regionStatistics.getMissCount(),
+                    regionStatistics.getPutCount()));
+        }
+        return regiones;
+    }
+
+    // Estadísticas de Hibernate (hibernate.generate_statistics), vacías si están desactivadas
+    public HibernateStatistics getHibernateStatistics() {
+        Statistics statistics = emf.unwrap(SessionFactoryImplementor.class).getStatistics();
+        List<HibernateStatistics.ConsultaLenta> consultas = new ArrayList<>();
+        for (String consulta : statistics.getQueries()) {
+            QueryStatistics queryStatistics = statistics.getQueryStatistics(consulta);
+            if (queryStatistics.getExecutionCount() == 0)
+                continue; // Solo preparada (p. ej. consultas con nombre), nunca ejecutada
+            consultas.add(new HibernateStatistics.ConsultaLenta(consulta,
+                    queryStatistics.getExecutionCount(),
+                    queryStatistics.getExecutionRowCount(),
+                    queryStatistics.getExecutionAvgTimeAsDouble(),
+                    queryStatistics.getExecutionMaxTime()));
+        }
+        consultas.sort(Comparator.comparingLong(HibernateStatistics.ConsultaLenta::maxMs).reversed());
+
+        return new HibernateStatistics(statistics.getQueryExecutionCount(),
+                statistics.getPrepareStatementCount(),
+                statistics.getEntityLoadCount(),
+                statistics.getEntityFetchCount(),
+                statistics.getCollectionLoadCount(),
+                statistics.getFlushCount(),
+                statistics.getTransactionCount(),
+                List.copyOf(consultas.subList(0, Math.min(CONSULTAS_MAS_LENTAS, consultas.size()))));
+    }
+
+    // Publica las estadísticas de Hibernate en JMX con el nombre del pool (único por base de datos)
+    // o, si no hay, el de la unidad. Si ya hay otra unidad publicada con ese nombre no se publica.
+    private ObjectName publicarEstadisticas(String persistenceUnit) {
+        Object poolName = emf.getProperties().get("hibernate.hikari.poolName");
+        try {
+            ObjectName nombre = new ObjectName("biblioteca:type=Hibernate,name=" + ObjectName.quote(poolName != null ? poolName.toString() : persistenceUnit));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new HibernateStatisticsMXBean() {
+                @Override
+                public long getConsultas() {
+                    return getHibernateStatistics().consultas();
+                }
+
+                @Override
+                public long getSentencias() {
+                    return getHibernateStatistics().sentencias();
+                }
+
+                @Override
+                public long getEntidadesCargadas() {
+                    return getHibernateStatistics().entidadesCargadas();
+                }
+
+                @Override
+                public long getEntidadesObtenidas() {
+                    return getHibernateStatistics().entidadesObtenidas();
+                }
+
+                @Override
+                public long getColeccionesCargadas() {
+                    return getHibernateStatistics().coleccionesCargadas();
+                }
+
+                @Override
+                public long getFlushes() {
+                    return getHibernateStatistics().flushes();
+                }
+
+                @Override
+                public long getTransacciones() {
+                    return getHibernateStatistics().transacciones();
+                }
+
+                @Override
+                public String[] getConsultasMasLentas() {
+                    return getHibernateStatistics().consultasMasLentas().stream().map(Object::toString).toArray(String[]::new);
+                }
+            }, nombre);
+            return nombre;
+        } catch (InstanceAlreadyExistsException e) {
+            return null;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (nombreJmx != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(nombreJmx);
+            } catch (JMException e) {
+                // Ya no estaba publicado
+            }
+        }
+        if (emf.isOpen())
+            emf.close();
+    }
+}
@@ -1,47 +1,310 @@
 package repositorio;
 
 
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityTransaction;
-import jakarta.persistence.Persistence;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.SpecHints;
 
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+// Cada operación abre su propio EntityManager y lo cierra al terminar,
+// por lo que un mismo DAO puede usarse desde varios hilos a la vez.
+// Las escrituras y lecturas van al primario; solo los listados que toleran datos con unos
+// segundos de retraso se leen de la réplica, si la hay (ver ReplicaConnectionProvider).
 public class GenericDAO<T> {
-    private Class<T> classType;
-    private EntityManagerFactory emf = Persistence.createEntityManagerFactory("biblioteca");
-    private EntityManager em = emf.createEntityManager();
-    private EntityTransaction et = em.getTransaction();
+    // Intentos de una transacción con reintento ante conflictos de versión
+    private static final int MAX_INTENTOS = 5;
+    // Clave duplicada: SQLState estándar (H2) y código de error de MariaDB, que usa el genérico 23000
+    private static final String SQLSTATE_CLAVE_DUPLICADA = "23505";
+    private static final int MARIADB_CLAVE_DUPLICADA = 1062;
+    // Máximo de parámetros por cláusula IN
+    protected static final int TAMANO_IN = 1000;
+    // Las lecturas que deciden una escritura van a la DB, no a la caché de segundo nivel
+    protected static final Map<String, Object> SIN_CACHE = Map.of(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
 
-    public GenericDAO(Class<T> classType) {
+    private final Class<T> classType;
+    private final EntityManagerProvider emProvider;
+    // Campo @Version de la entidad, null si no tiene control de concurrencia optimista
+    private final Field versionField;
+
+    public GenericDAO(Class<T> classType, EntityManagerProvider emProvider) {
         this.classType = classType;
+        this.emProvider = emProvider;
+        this.versionField = findVersionField();
     }
 
     public void create(T entity) {
-        et.begin();
-        em.persist(entity);
-        et.commit();
+        inTransaction(em -> em.persist(entity));
+    }
+
+    // Inserta todas las entidades en una sola transacción, en lotes JDBC del tamaño configurado
+    public void createAll(Collection<T> entities) {
+        createAll(entities, emProvider.getJdbcBatchSize());
     }
 
-    public T read (Integer id) {
-        return em.find(classType, id);
+    public void createAll(Collection<T> entities, int batchSize) {
+        inBatches(entities, batchSize, (em, batch) -> batch.forEach(em::persist));
+    }
+
+    public T read (Object id) {
+        return withEntityManager(em -> em.find(classType, id));
     }
 
     public List<T> readAll() {
-        return em.createQuery("SELECT e FROM " + classType.getSimpleName() + " e", classType).getResultList();
+        return withReplicaEntityManager(em -> em.createQuery("SELECT e FROM " + classType.getSimpleName() + " e", classType).getResultList());
+    }
+
+    // Entidades con los IDs indicados, leídas por lotes en lugar de una consulta por ID.
+    // Los IDs que no existen se omiten.
+    public List<T> readAll(Collection<?> ids) {
+        return withEntityManager(em -> {
+            List<T> entities = new ArrayList<>(ids.size());
+            for (T entity : em.unwrap(Session.class).byMultipleIds(classType).withBatchSize(TAMANO_IN).multiLoad(new ArrayList<>(ids)))
+                if (entity != null)
+                    entities.add(entity);
+            return entities;
+        });
     }
 
+    // Primera entidad cuyo atributo es igual al valor, null si no hay ninguna
+    public T findBy(String attribute, Object value) {
+        return withEntityManager(em -> em.createQuery("SELECT e FROM " + classType.getSimpleName() + " e WHERE e." + attribute + " = :value", classType)
+                .setParameter("value", value)
+                .setMaxResults(1)
+                .getResultStream()
+                .findFirst()
+                .orElse(null));
+    }
+
+    // Página de entidades ordenadas por su ID (la primera página es la 0)
+    public List<T> readPage(int page, int pageSize) {
+        return withReplicaEntityManager(em -> em.createQuery("SELECT e FROM " + classType.getSimpleName() + " e ORDER BY id(e)", classType)
+                .setFirstResult(page * pageSize)
+                .setMaxResults(pageSize)
+                .getResultList());
+    }
+
+    // Si la entidad tiene @Version y otra transacción la ha modificado desde que se leyó,
+    // lanza OptimisticLockException en lugar de sobrescribir los cambios.
+    // Al terminar, la entidad recibida queda con la nueva versión.
     public void update (T entity) {
-        et.begin();
-        em.merge(entity);
-        et.commit();
+        T merged = withTransaction(em -> {
+            T managed = em.merge(entity);
+            em.flush(); // Incrementa la versión
+            return managed;
+        });
+        copyVersion(merged, entity);
+    }
+
+    // Actualiza todas las entidades en una sola transacción, en lotes JDBC del tamaño configurado
+    public void updateAll(Collection<T> entities) {
+        updateAll(entities, emProvider.getJdbcBatchSize());
+    }
+
+    public void updateAll(Collection<T> entities, int batchSize) {
+        // Versiones nuevas en el orden de la colección, se aplican solo si la transacción confirma
+        List<T> merged = new ArrayList<>(entities.size());
+        inBatches(entities, batchSize, (em, batch) -> merged.addAll(mergeBatch(em, batch)));
+        int i = 0;
+        for (T entity : entities)
+            copyVersion(merged.get(i++), entity);
     }
 
     public void delete (T entity) {
-        et.begin();
-        em.remove(entity);
-        et.commit();
+        // La entidad llega desacoplada, hay que asociarla al contexto antes de borrarla
+        inTransaction(em -> em.remove(em.contains(entity) ? entity : em.merge(entity)));
+    }
+
+    // Aplica la operación a cada entidad, volcando y vaciando el contexto cada batchSize
+    // entidades para que la memoria no crezca con el tamaño de la colección
+    private void inBatches(Collection<T> entities, int batchSize, BiConsumer<EntityManager, List<T>> operation) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor que 0");
+
+        inTransaction(em -> {
+            em.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            List<T> batch = new ArrayList<>(batchSize);
+            for (T entity : entities) {
+                batch.add(entity);
+                if (batch.size() == batchSize) {
+                    flushBatch(em, batch, operation);
+                }
+            }
+            if (!batch.isEmpty())
+                flushBatch(em, batch, operation);
+        });
+    }
+
+    private void flushBatch(EntityManager em, List<T> batch, BiConsumer<EntityManager, List<T>> operation) {
+        operation.accept(em, batch);
+        em.flush();
+        em.clear();
+        batch.clear();
+    }
+
+    // Carga el lote con una sola consulta antes de fusionarlo,
+    // así merge no lanza un SELECT por cada entidad desacoplada
+    private List<T> mergeBatch(EntityManager em, List<T> batch) {
+        PersistenceUnitUtil unitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        List<Object> ids = new ArrayList<>(batch.size());
+        for (T entity : batch) {
+            Object id = unitUtil.getIdentifier(entity);
+            if (id != null)
+                ids.add(id);
+        }
+        em.unwrap(Session.class).byMultipleIds(classType).multiLoad(ids);
+        List<T> merged = new ArrayList<>(batch.size());
+        for (T entity : batch)
+            merged.add(em.merge(entity));
+        return merged;
+    }
+
+    private Field findVersionField() {
+        for (SingularAttribute<? super T, ?> attribute : emProvider.getEntityManagerFactory().getMetamodel().entity(classType).getSingularAttributes()) {
+            if (attribute.isVersion() && attribute.getJavaMember() instanceof Field field) {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+        return null;
+    }
+
+    // Copia la versión de la entidad guardada a la instancia desacoplada que se sigue usando en memoria
+    private void copyVersion(T from, T to) {
+        if (versionField == null || from == to)
+            return;
+        try {
+            versionField.set(to, versionField.get(from));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
 
+    protected Class<T> getClassType() {
+        return classType;
+    }
+
+    protected int getJdbcBatchSize() {
+        return emProvider.getJdbcBatchSize();
+    }
+
+    // Ejecuta una lectura con un EntityManager de corta duración en el primario.
+    // Es la opción para las lecturas que deciden una escritura o deben ver lo recién escrito.
+    protected <R> R withEntityManager(Function<EntityManager, R> work) {
+        return ReplicaConnectionProvider.enPrimario(() -> usingEntityManager(work));
+    }
+
+    // Como withEntityManager, pero en la réplica de lectura si está configurada y responde.
+    // Si la réplica falla a mitad, el trabajo se repite en el primario: debe poder repetirse.
+    // Lo leído no se guarda en la caché de segundo nivel, que así solo recibe datos del primario.
+    protected <R> R withReplicaEntityManager(Function<EntityManager, R> work) {
+        return ReplicaConnectionProvider.enReplica(() -> usingEntityManager(em -> {
+            em.setProperty("jakarta.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+            return work.apply(em);
+        }));
+    }
+
+    private <R> R usingEntityManager(Function<EntityManager, R> work) {
+        EntityManager em = emProvider.createEntityManager();
+        try {
+            return work.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Ejecuta una escritura en su propia transacción, deshaciéndola si falla
+    protected void inTransaction(Consumer<EntityManager> work) {
+        withTransaction(em -> {
+            work.accept(em);
+            return null;
+        });
+    }
+
+    // Como inTransaction, devolviendo el resultado del trabajo. Los conflictos de versión,
+    // se detecten al volcar o al confirmar, se lanzan siempre como OptimisticLockException,
+    // y las claves duplicadas como RestriccionUnicaException.
+    protected <R> R withTransaction(Function<EntityManager, R> work) {
+        return ReplicaConnectionProvider.enPrimario(() -> runTransaction(work));
+    }
+
+    private <R> R runTransaction(Function<EntityManager, R> work) {
+        EntityManager em = emProvider.createEntityManager();
+        EntityTransaction et = em.getTransaction();
+        try {
+            et.begin();
+            R result = work.apply(em);
+            et.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (et.isActive())
+                et.rollback();
+            throw asUniqueViolation(asVersionConflict(e));
+        } finally {
+            em.close();
+        }
+    }
+
+    // Repite la transacción completa si falla por un conflicto de versión, hasta MAX_INTENTOS veces.
+    // El trabajo debe leer en la transacción todo lo que comprueba, para decidir sobre datos actuales.
+    protected <R> R withTransactionRetry(Function<EntityManager, R> work) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return withTransaction(work);
+            } catch (OptimisticLockException e) {
+                if (intento == MAX_INTENTOS)
+                    throw e;
+                esperarAntesDeReintentar(intento);
+            }
+        }
+    }
+
+    // Espera aleatoria y creciente para que las transacciones en conflicto no vuelvan a coincidir
+    private static void esperarAntesDeReintentar(int intento) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * intento + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se reintentaba la transacción", e);
+        }
+    }
+
+    private static RuntimeException asVersionConflict(RuntimeException e) {
+        if (e instanceof OptimisticLockException)
+            return e;
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException)
+                return new OptimisticLockException(cause.getMessage(), e);
+        }
+        return e;
+    }
+
+    private static RuntimeException asUniqueViolation(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && isDuplicateKey(violation.getSQLException()))
+                return new RestriccionUnicaException(violation.getConstraintName(), e);
+        }
+        return e;
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        return e != null && (SQLSTATE_CLAVE_DUPLICADA.equals(e.getSQLState()) || e.getErrorCode() == MARIADB_CLAVE_DUPLICADA);
+    }
+}
@@ -0,0 +1,35 @@
+package repositorio;
+
+import java.util.List;
+
+// Instantánea de las estadísticas de Hibernate desde que arrancó la unidad de persistencia
+public record HibernateStatistics(long consultas, long sentencias, long entidadesCargadas, long entidadesObtenidas,
+                                  long coleccionesCargadas, long flushes, long transacciones,
+                                  List<ConsultaLenta> consultasMasLentas) {
+
+    // Consulta JPQL con sus ejecuciones y tiempos en milisegundos
+    public record ConsultaLenta(String consulta, long ejecuciones, long filas, double mediaMs, long maxMs) {
+
+        @Override
+        public String toString() {
+            return String.format("%d ms máx, %.1f ms media, %d ejecuciones, %d filas: %s",
+                    maxMs, mediaMs, ejecuciones, filas, consulta);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Hibernate: consultas=").append(consultas)
+                .append(", sentencias JDBC=").append(sentencias)
+                .append(", entidades cargadas=").append(entidadesCargadas)
+                .append(", entidades obtenidas por carga diferida=").append(entidadesObtenidas)
+                .append(", colecciones cargadas=").append(coleccionesCargadas)
+                .append(", flushes=").append(flushes)
+                .append(", transacciones=").append(transacciones)
+                .append("\nConsultas más lentas:");
+        for (ConsultaLenta consulta : consultasMasLentas)
+            sb.append("\n  ").append(consulta);
+        return sb.toString();
+    }
+}
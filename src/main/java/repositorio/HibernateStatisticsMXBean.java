@@ -0,0 +1,21 @@
+package repositorio;
+
+// Estadísticas de Hibernate publicadas en JMX como biblioteca:type=Hibernate,name=<pool>
+public interface HibernateStatisticsMXBean {
+    long getConsultas();
+
+    long getSentencias();
+
+    long getEntidadesCargadas();
+
+    long getEntidadesObtenidas();
+
+    long getColeccionesCargadas();
+
+    long getFlushes();
+
+    long getTransacciones();
+
+    // Una línea por consulta, de la más lenta a la más rápida
+    String[] getConsultasMasLentas();
+}
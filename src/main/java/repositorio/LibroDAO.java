@@ -0,0 +1,160 @@
+package repositorio;
+
+import dto.LibroStock;
+import dto.OrdenLibros;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import modelo.Ejemplar;
+import modelo.EstadoEjemplar;
+import modelo.Libro;
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class LibroDAO extends GenericDAO<Libro> {
+    // Filas de cada INSERT de ejemplares al importar con IDs IDENTITY
+    private static final int FILAS_POR_INSERT = 500;
+    private static final String COLECCION_EJEMPLARES = Libro.class.getName() + ".ejemplares";
+
+    // Con IDs IDENTITY (la estrategia por defecto) Hibernate necesita el ID de cada ejemplar nada más
+    // insertarlo, así que no agrupa sus INSERT en lotes JDBC: uno por ejemplar
+    private final boolean ejemplaresIdentity;
+    private final Cache cache;
+
+    public LibroDAO(EntityManagerProvider emProvider) {
+        super(Libro.class, emProvider);
+        SessionFactoryImplementor sessionFactory = emProvider.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        this.ejemplaresIdentity = sessionFactory.getMappingMetamodel().getEntityDescriptor(Ejemplar.class).getGenerator().generatedOnExecution();
+        this.cache = sessionFactory.getCache();
+    }
+
+    // Siguiente página del listado de libros con su total de ejemplares y los disponibles, a partir del
+    // último libro de la página anterior (null para la primera). La página se lee recorriendo el índice
+    // de la ordenación y solo se cuentan los ejemplares de sus libros, sin agrupar el catálogo entero.
+    public List<LibroStock> listarConStock(LibroStock ultimo, OrdenLibros orden, int limite) {
+        String jpql = "SELECT new dto.LibroStock(l.isbn, l.titulo, l.autor, " +
+                "(SELECT COUNT(e) FROM Ejemplar e WHERE e.isbn = l), " +
+                "(SELECT COUNT(e) FROM Ejemplar e WHERE e.isbn = l AND e.estado = :disponible)) " +
+                "FROM Libro l" + (ultimo == null ? "" : " WHERE " + orden.getCondicionCursor()) +
+                " ORDER BY " + orden.getOrderBy();
+
+        return withReplicaEntityManager(em -> {
+            TypedQuery<LibroStock> query = em.createQuery(jpql, LibroStock.class)
+                    .setParameter("disponible", EstadoEjemplar.DISPONIBLE)
+                    .setMaxResults(limite);
+            if (ultimo != null) {
+                query.setParameter("ultimoIsbn", ultimo.isbn());
+                if (orden != OrdenLibros.ISBN)
+                    query.setParameter("ultimaClave", orden.getValorClave(ultimo));
+            }
+            return query.getResultList();
+        });
+    }
+
+    // Recorre el catálogo entero (ISBN, título y autor) en bloques ordenados por ISBN, cada uno en
+    // su propia consulta que continúa desde el último ISBN del anterior, sin OFFSET
+    public void recorrerCatalogo(int tamanoBloque, Consumer<List<Libro>> bloques) {
+        String ultimoIsbn = "";
+        List<Libro> bloque;
+        do {
+            String desde = ultimoIsbn;
+            bloque = withEntityManager(em -> em.createQuery("SELECT new modelo.Libro(l.isbn, l.titulo, l.autor) FROM Libro l " +
+                            "WHERE l.isbn > :desde ORDER BY l.isbn", Libro.class)
+                    .setParameter("desde", desde)
+                    .setMaxResults(tamanoBloque)
+                    .getResultList());
+            if (!bloque.isEmpty()) {
+                bloques.accept(bloque);
+                ultimoIsbn = bloque.get(bloque.size() - 1).getIsbn();
+            }
+        } while (bloque.size() == tamanoBloque);
+    }
+
+    // ISBNs de la colección que ya están en el catálogo, consultados en bloques de TAMANO_IN
+    public Set<String> findIsbnsExistentes(Collection<String> isbns) {
+        List<String> pendientes = new ArrayList<>(isbns);
+        Set<String> existentes = new HashSet<>();
+        withEntityManager(em -> {
+            for (int desde = 0; desde < pendientes.size(); desde += TAMANO_IN) {
+                existentes.addAll(em.createQuery("SELECT l.isbn FROM Libro l WHERE l.isbn IN :isbns", String.class)
+                        .setParameter("isbns", pendientes.subList(desde, Math.min(desde + TAMANO_IN, pendientes.size())))
+                        .getResultList());
+            }
+            return null;
+        });
+        return existentes;
+    }
+
+    // Inserta los libros nuevos y los ejemplares disponibles indicados por ISBN en una sola
+    // transacción, en lotes JDBC. Los ejemplares apuntan al libro con una referencia,
+    // sin consultarlo, de modo que sirve tanto para libros nuevos como para los ya existentes.
+    // Con IDs IDENTITY los ejemplares se insertan con INSERT de varias filas en lugar de uno a uno.
+    public void importar(Collection<Libro> libros, Map<String, Integer> ejemplaresPorIsbn) {
+        int tamanoLote = getJdbcBatchSize();
+        inTransaction(em -> {
+            em.unwrap(Session.class).setJdbcBatchSize(tamanoLote);
+            int pendientes = 0;
+            for (Libro libro : libros) {
+                em.persist(libro);
+                pendientes = volcarSiLleno(em, pendientes + 1, tamanoLote);
+            }
+            if (ejemplaresIdentity) {
+                // Los libros nuevos tienen que estar en la base de datos antes que sus ejemplares
+                em.flush();
+                em.unwrap(Session.class).doWork(conexion -> insertarEjemplares(conexion, ejemplaresPorIsbn));
+                return;
+            }
+            for (Map.Entry<String, Integer> ejemplares : ejemplaresPorIsbn.entrySet()) {
+                for (int i = 0; i < ejemplares.getValue(); i++) {
+                    em.persist(new Ejemplar(em.getReference(Libro.class, ejemplares.getKey()), EstadoEjemplar.DISPONIBLE));
+                    pendientes = volcarSiLleno(em, pendientes + 1, tamanoLote);
+                }
+            }
+        });
+        // Hibernate no sabe de los ejemplares insertados por JDBC: las colecciones en caché ya no están completas
+        if (ejemplaresIdentity)
+            for (String isbn : ejemplaresPorIsbn.keySet())
+                cache.evictCollectionData(COLECCION_EJEMPLARES, isbn);
+    }
+
+    // Ejemplares disponibles en INSERT de hasta FILAS_POR_INSERT filas, con el ID de AUTO_INCREMENT
+    // y los valores por defecto de la versión. No se usa con secuencias: sus IDs los asigna Hibernate.
+    private static void insertarEjemplares(Connection conexion, Map<String, Integer> ejemplaresPorIsbn) throws SQLException {
+        List<String> isbns = new ArrayList<>();
+        ejemplaresPorIsbn.forEach((isbn, ejemplares) -> isbns.addAll(Collections.nCopies(ejemplares, isbn)));
+        String estado = String.valueOf(EstadoEjemplar.DISPONIBLE.getCodigo());
+        for (int desde = 0; desde < isbns.size(); desde += FILAS_POR_INSERT) {
+            List<String> filas = isbns.subList(desde, Math.min(desde + FILAS_POR_INSERT, isbns.size()));
+            String sql = "INSERT INTO Ejemplar (isbn, estado, version) VALUES " + String.join(", ", Collections.nCopies(filas.size(), "(?, ?, 0)"));
+            try (PreparedStatement insert = conexion.prepareStatement(sql)) {
+                int parametro = 1;
+                for (String isbn : filas) {
+                    insert.setString(parametro++, isbn);
+                    insert.setString(parametro++, estado);
+                }
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    // Vuelca y vacía el contexto al completar un lote, devuelve las entidades pendientes
+    private static int volcarSiLleno(EntityManager em, int pendientes, int tamanoLote) {
+        if (pendientes < tamanoLote)
+            return pendientes;
+        em.flush();
+        em.clear();
+        return 0;
+    }
+}
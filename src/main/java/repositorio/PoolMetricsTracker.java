@@ -0,0 +1,69 @@
+package repositorio;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Registra los tiempos de obtención de conexión de cada pool de HikariCP en un histograma.
+// Hikari instancia esta clase por su nombre (propiedad hibernate.hikari.metricsTrackerFactory),
+// por eso los histogramas se guardan en un registro estático indexado por nombre de pool.
+public class PoolMetricsTracker implements MetricsTrackerFactory {
+    // Límites superiores (en milisegundos) de cada tramo del histograma, el último tramo no tiene límite
+    public static final long[] LIMITES_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000};
+
+    private static final Map<String, Histograma> histogramas = new ConcurrentHashMap<>();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        Histograma histograma = histogramas.computeIfAbsent(poolName, nombre -> new Histograma());
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                histograma.registrar(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                histograma.timeouts.increment();
+            }
+        };
+    }
+
+    // Copia del histograma de un pool (vacío si el pool no existe)
+    static long[] getTramos(String poolName) {
+        Histograma histograma = histogramas.get(poolName);
+        long[] tramos = new long[LIMITES_MS.length + 1];
+        if (histograma != null)
+            for (int i = 0; i < tramos.length; i++)
+                tramos[i] = histograma.tramos[i].sum();
+        return tramos;
+    }
+
+    static long getTimeouts(String poolName) {
+        Histograma histograma = histogramas.get(poolName);
+        return histograma == null ? 0 : histograma.timeouts.sum();
+    }
+
+    private static class Histograma {
+        private final LongAdder[] tramos = new LongAdder[LIMITES_MS.length + 1];
+        private final LongAdder timeouts = new LongAdder();
+
+        private Histograma() {
+            for (int i = 0; i < tramos.length; i++)
+                tramos[i] = new LongAdder();
+        }
+
+        private void registrar(long nanos) {
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int i = 0;
+            while (i < LIMITES_MS.length && ms >= LIMITES_MS[i])
+                i++;
+            tramos[i].increment();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package repositorio;
+
+// Instantánea del estado del pool de conexiones
+// tramosObtencion[i] cuenta las conexiones obtenidas en menos de PoolMetricsTracker.LIMITES_MS[i] ms,
+// el último tramo las que tardaron más que el último límite
+public record PoolStatistics(String poolName, int activas, int inactivas, int total, int enEspera,
+                             long timeouts, long[] tramosObtencion) {
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Pool ").append(poolName)
+                .append(": activas=").append(activas)
+                .append(", inactivas=").append(inactivas)
+                .append(", total=").append(total)
+                .append(", en espera=").append(enEspera)
+                .append(", timeouts=").append(timeouts)
+                .append("\nTiempo de obtención de conexión:");
+        long[] limites = PoolMetricsTracker.LIMITES_MS;
+        for (int i = 0; i < tramosObtencion.length; i++) {
+            String tramo = i < limites.length ? "< " + limites[i] + " ms" : ">= " + limites[limites.length - 1] + " ms";
+            sb.append("\n  ").append(tramo).append(": ").append(tramosObtencion[i]);
+        }
+        return sb.toString();
+    }
+}
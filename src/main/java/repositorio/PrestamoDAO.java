@@ -0,0 +1,220 @@
+package repositorio;
+
+import dto.FiltroPrestamos;
+import dto.OpcionesExportacion;
+import dto.OrdenPrestamos;
+import dto.PrestamoExportado;
+import dto.PrestamoResumen;
+import dto.TipoIdDevolucion;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.TypedQuery;
+import modelo.Ejemplar;
+import modelo.EstadoEjemplar;
+import modelo.Prestamo;
+import modelo.Usuario;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+public class PrestamoDAO extends GenericDAO<Prestamo> {
+    // Filas que el driver trae de la DB en cada viaje al recorrer un resultado completo
+    private static final int FETCH_SIZE_RECORRIDO = 1000;
+
+    // Reglas de negocio que se comprueban con los datos leídos dentro de la transacción,
+    // lanzan una excepción si el préstamo no se puede registrar
+    @FunctionalInterface
+    public interface ComprobacionPrestamo {
+        void comprobar(Usuario usuario, Ejemplar ejemplar, int prestamosActivos);
+    }
+
+    // Resultado de cada ID de una devolución masiva: el préstamo leído (null si no hay)
+    // y el motivo por el que no se ha devuelto, null si se ha devuelto
+    public record Devolucion(int id, Prestamo prestamo, String motivo) {
+    }
+
+    public PrestamoDAO(EntityManagerProvider emProvider) {
+        super(Prestamo.class, emProvider);
+    }
+
+    // Crea el préstamo y marca el ejemplar como prestado en una sola transacción, sin bloquear filas.
+    // Usuario, ejemplar y préstamos activos se leen dentro de la transacción y:
+    // - si otro puesto presta el mismo ejemplar a la vez, su versión ya no coincide y una de las dos falla
+    // - la versión del usuario sube con cada préstamo (OPTIMISTIC_FORCE_INCREMENT), así dos préstamos
+    //   simultáneos del mismo usuario no pueden superar juntos el límite de préstamos activos
+    // Ante un conflicto la transacción se repite y la comprobación decide sobre los datos actuales.
+    public Prestamo registrarPrestamo(int idUsuario, int idEjemplar, LocalDate fechaInicio, ComprobacionPrestamo comprobacion) {
+        return withTransactionRetry(em -> {
+            Usuario usuario = em.find(Usuario.class, idUsuario, SIN_CACHE);
+            Ejemplar ejemplar = em.find(Ejemplar.class, idEjemplar, SIN_CACHE);
+            comprobacion.comprobar(usuario, ejemplar, usuario == null ? 0 : contarActivos(em, idUsuario));
+
+            em.lock(usuario, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            ejemplar.setEstado(EstadoEjemplar.PRESTADO);
+            Prestamo prestamo = new Prestamo(usuario, ejemplar, fechaInicio, null);
+            em.persist(prestamo);
+            return prestamo;
+        });
+    }
+
+    // Marca el préstamo como devuelto y el ejemplar como disponible en una sola transacción.
+    // La comprobación recibe el préstamo leído de la DB (null si no existe) y alDevolver
+    // se ejecuta dentro de la transacción ya con la fecha de devolución, para que los cambios
+    // que haga sobre el usuario se guarden con el resto. Se repite ante conflictos de versión.
+    public Prestamo devolverPrestamo(int idPrestamo, LocalDate fechaDevolucion, Consumer<Prestamo> comprobacion, Consumer<Prestamo> alDevolver) {
+        return withTransactionRetry(em -> {
+            Prestamo prestamo = em.createQuery("SELECT p FROM Prestamo p JOIN FETCH p.usuario JOIN FETCH p.ejemplar WHERE p.id = :id", Prestamo.class)
+                    .setParameter("id", idPrestamo)
+                    .getResultStream()
+                    .findFirst()
+                    .orElse(null);
+            comprobacion.accept(prestamo);
+
+            prestamo.setFechaDevolucion(fechaDevolucion);
+            prestamo.getEjemplar().setEstado(EstadoEjemplar.DISPONIBLE);
+            alDevolver.accept(prestamo);
+            return prestamo;
+        });
+    }
+
+    // Recorre con un cursor de solo avance el usuario de cada préstamo sin devolver iniciado hasta
+    // la fecha indicada. Se resuelve solo con el índice idx_prestamo_devolucion_inicio, que incluye
+    // usuario_id, leyendo una vez cada préstamo vencido.
+    public void recorrerUsuariosConActivosIniciadosHasta(LocalDate iniciadosHasta, Consumer<Integer> destino) {
+        withEntityManager(em -> {
+            try (Stream<Integer> usuarios = em.createQuery("SELECT p.usuario.id FROM Prestamo p " +
+                            "WHERE p.fechaDevolucion IS NULL AND p.fechaInicio <= :iniciadosHasta", Integer.class)
+                    .setParameter("iniciadosHasta", iniciadosHasta)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE_RECORRIDO)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream()) {
+                usuarios.forEach(destino);
+            }
+            return null;
+        });
+    }
+
+    // Marca como penalizados en la revisión los préstamos sin devolver iniciados hasta la fecha indicada
+    // que no lo estuvieran, con un único UPDATE sobre el índice idx_prestamo_devolucion_inicio.
+    // Devuelve los marcados.
+    public int marcarPenalizadosEnRevision(LocalDate iniciadosHasta) {
+        return withTransaction(em -> em.createQuery("UPDATE Prestamo p SET p.penalizadoEnRevision = true " +
+                        "WHERE p.fechaDevolucion IS NULL AND p.fechaInicio <= :iniciadosHasta AND p.penalizadoEnRevision = false")
+                .setParameter("iniciadosHasta", iniciadosHasta)
+                .executeUpdate());
+    }
+
+    // Devuelve varios préstamos en una sola transacción, identificados por su ID o por el de su ejemplar
+    // (el préstamo activo del ejemplar). Se leen con una consulta por cada TAMANO_IN IDs y los cambios
+    // de préstamos, ejemplares y usuarios se envían en lotes JDBC. Para cada ID, la comprobación recibe
+    // el préstamo leído (null si no hay) y devuelve el motivo por el que no se puede devolver, o null;
+    // un ID rechazado no impide devolver el resto. Se repite entera ante conflictos de versión.
+    public List<Devolucion> devolverVarios(List<Integer> ids, TipoIdDevolucion tipo, LocalDate fechaDevolucion,
+                                           Function<Prestamo, String> comprobacion, Consumer<Prestamo> alDevolver) {
+        String jpql = "SELECT p FROM Prestamo p JOIN FETCH p.usuario JOIN FETCH p.ejemplar WHERE " +
+                (tipo == TipoIdDevolucion.EJEMPLAR ? "p.ejemplar.id IN :ids AND p.fechaDevolucion IS NULL" : "p.id IN :ids");
+        return withTransactionRetry(em -> {
+            em.unwrap(Session.class).setJdbcBatchSize(getJdbcBatchSize());
+            List<Devolucion> devoluciones = new ArrayList<>(ids.size());
+            for (int desde = 0; desde < ids.size(); desde += TAMANO_IN) {
+                List<Integer> tramo = ids.subList(desde, Math.min(desde + TAMANO_IN, ids.size()));
+                Map<Integer, Prestamo> prestamos = new HashMap<>();
+                for (Prestamo prestamo : em.createQuery(jpql, Prestamo.class).setParameter("ids", tramo).getResultList())
+                    prestamos.put(tipo == TipoIdDevolucion.EJEMPLAR ? prestamo.getEjemplar().getId() : prestamo.getId(), prestamo);
+
+                for (Integer id : tramo) {
+                    Prestamo prestamo = prestamos.get(id);
+                    String motivo = comprobacion.apply(prestamo);
+                    if (motivo == null) {
+                        prestamo.setFechaDevolucion(fechaDevolucion);
+                        prestamo.getEjemplar().setEstado(EstadoEjemplar.DISPONIBLE);
+                        alDevolver.accept(prestamo);
+                    }
+                    devoluciones.add(new Devolucion(id, prestamo, motivo));
+                }
+                // La memoria no crece con el número de IDs
+                em.flush();
+                em.clear();
+            }
+            return devoluciones;
+        });
+    }
+
+    // Préstamos sin devolver del usuario. Con el índice (usuario_id, fechaDevolucion) solo se
+    // recorren sus préstamos activos, no todo su historial
+    public int contarActivos(int idUsuario) {
+        return withEntityManager(em -> contarActivos(em, idUsuario));
+    }
+
+    private static int contarActivos(EntityManager em, int idUsuario) {
+        return em.createQuery("SELECT COUNT(p) FROM Prestamo p WHERE p.usuario.id = :idUsuario AND p.fechaDevolucion IS NULL", Long.class)
+                .setParameter("idUsuario", idUsuario)
+                .getSingleResult()
+                .intValue();
+    }
+
+    // Siguiente página del listado a partir del último préstamo de la página anterior
+    // (null para la primera). Solo se leen las columnas del listado.
+    public List<PrestamoResumen> listarDesde(PrestamoResumen ultimo, OrdenPrestamos orden, FiltroPrestamos filtro, int limite) {
+        String jpql = "SELECT new dto.PrestamoResumen(p.id, p.usuario.id, p.ejemplar.id, p.fechaInicio, p.fechaDevolucion) " +
+                "FROM Prestamo p WHERE " + (ultimo == null ? "1 = 1" : orden.getCondicionCursor()) +
+                filtro.getCondicion() +
+                " ORDER BY " + orden.getOrderBy();
+
+        return withReplicaEntityManager(em -> {
+            TypedQuery<PrestamoResumen> query = em.createQuery(jpql, PrestamoResumen.class)
+                    .setMaxResults(limite);
+            if (ultimo != null) {
+                query.setParameter("ultimoId", ultimo.id());
+                if (orden == OrdenPrestamos.FECHA_INICIO)
+                    query.setParameter("ultimaFecha", ultimo.fechaInicio());
+            }
+            return query.getResultList();
+        });
+    }
+
+    // Últimos préstamos del usuario, del más reciente al más antiguo, en una sola consulta
+    public List<PrestamoResumen> listarUltimosDeUsuario(int idUsuario, int limite) {
+        return withEntityManager(em -> em.createQuery("SELECT new dto.PrestamoResumen(p.id, p.usuario.id, p.ejemplar.id, p.fechaInicio, p.fechaDevolucion) " +
+                        "FROM Prestamo p WHERE p.usuario.id = :idUsuario ORDER BY p.id DESC", PrestamoResumen.class)
+                .setParameter("idUsuario", idUsuario)
+                .setMaxResults(limite)
+                .getResultList());
+    }
+
+    // Recorre los préstamos por orden de ID con un cursor de solo avance, entregando cada fila
+    // al consumidor sin acumularlas: las proyecciones no quedan en el contexto de persistencia
+    // y con fetch size el driver de MariaDB va leyendo el resultado por tramos.
+    // Con desdeFecha se incluyen los préstamos iniciados o devueltos a partir de esa fecha.
+    public void exportar(OpcionesExportacion opciones, Consumer<PrestamoExportado> destino) {
+        String jpql = "SELECT new dto.PrestamoExportado(p.id, p.usuario.id, p.ejemplar.id, p.fechaInicio, p.fechaDevolucion" +
+                (opciones.conTitulo() ? ", l.titulo) FROM Prestamo p JOIN p.ejemplar e JOIN e.isbn l" : ") FROM Prestamo p") +
+                " WHERE 1 = 1" +
+                (opciones.desdeId() != null ? " AND p.id > :desdeId" : "") +
+                (opciones.desdeFecha() != null ? " AND (p.fechaInicio >= :desdeFecha OR p.fechaDevolucion >= :desdeFecha)" : "") +
+                " ORDER BY p.id";
+
+        withEntityManager(em -> {
+            TypedQuery<PrestamoExportado> query = em.createQuery(jpql, PrestamoExportado.class)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE_RECORRIDO)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true);
+            if (opciones.desdeId() != null)
+                query.setParameter("desdeId", opciones.desdeId());
+            if (opciones.desdeFecha() != null)
+                query.setParameter("desdeFecha", opciones.desdeFecha());
+
+            try (Stream<PrestamoExportado> filas = query.getResultStream()) {
+                filas.forEach(destino);
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,220 @@
+package repositorio;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Pools HikariCP del primario y, si se configura biblioteca.replica.url, de una réplica de solo lectura.
+// Las conexiones que se obtienen dentro de enReplica van a la réplica y todas las demás al primario,
+// de modo que por defecto (escrituras, transacciones y cualquier lectura no marcada) se usa el primario.
+// Si la réplica no da una conexión a tiempo, o la pierde a mitad de la lectura, se lee del primario,
+// y durante PAUSA_TRAS_FALLO_MS ni siquiera se intenta para no esperar el timeout en cada lectura.
+public class ReplicaConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+    private static final long serialVersionUID = 1L;
+
+    // Conexión a la réplica; usuario y contraseña, si no se indican, son los del primario
+    public static final String REPLICA_URL = "biblioteca.replica.url";
+    public static final String REPLICA_USERNAME = "biblioteca.replica.username";
+    public static final String REPLICA_PASSWORD = "biblioteca.replica.password";
+    // Espera máxima (ms) por una conexión de la réplica antes de leer del primario
+    public static final String REPLICA_CONNECTION_TIMEOUT = "biblioteca.replica.connectionTimeout";
+    private static final String DEFAULT_REPLICA_CONNECTION_TIMEOUT = "1000";
+    private static final long PAUSA_TRAS_FALLO_MS = 30_000;
+    private static final String[] URL = {"hibernate.connection.url", "jakarta.persistence.jdbc.url", "javax.persistence.jdbc.url"};
+    private static final String[] USERNAME = {"hibernate.connection.username", "jakarta.persistence.jdbc.user", "javax.persistence.jdbc.user"};
+    private static final String[] PASSWORD = {"hibernate.connection.password", "jakarta.persistence.jdbc.password", "javax.persistence.jdbc.password"};
+
+    // Base de datos de las conexiones que se obtengan en el hilo actual
+    private static final ThreadLocal<Boolean> EN_REPLICA = ThreadLocal.withInitial(() -> false);
+    // Proveedor que ha dado una conexión de réplica a la lectura en curso del hilo, null si ninguno
+    private static final ThreadLocal<ReplicaConnectionProvider> REPLICA_USADA = new ThreadLocal<>();
+
+    private final HikariCPConnectionProvider primario = new HikariCPConnectionProvider();
+    // null si no hay réplica configurada
+    private HikariCPConnectionProvider replica;
+    // System.nanoTime() a partir del cual se vuelve a intentar la réplica tras un fallo
+    private volatile long reintentarReplicaDesde;
+    private volatile boolean replicaCaida;
+    private final LongAdder conexionesReplica = new LongAdder();
+    private final LongAdder conexionesDesviadas = new LongAdder();
+
+    // Ejecuta la lectura con conexiones de la réplica (del primario si no hay o no responde).
+    // Si la réplica falla con la conexión ya obtenida, la lectura se repite entera en el primario,
+    // así que no debe tener efectos fuera de la base de datos hasta que termine.
+    public static <R> R enReplica(Supplier<R> lectura) {
+        ReplicaConnectionProvider usadaAntes = REPLICA_USADA.get();
+        REPLICA_USADA.remove();
+        try {
+            return en(true, lectura);
+        } catch (RuntimeException e) {
+            ReplicaConnectionProvider usada = REPLICA_USADA.get();
+            if (usada == null || !isFalloConexion(e))
+                throw e;
+            usada.marcarCaida();
+            return en(false, lectura);
+        } finally {
+            REPLICA_USADA.set(usadaAntes);
+        }
+    }
+
+    // Ejecuta el trabajo con conexiones del primario, aunque se llame desde dentro de enReplica
+    public static <R> R enPrimario(Supplier<R> trabajo) {
+        return en(false, trabajo);
+    }
+
+    private static <R> R en(boolean replica, Supplier<R> trabajo) {
+        boolean anterior = EN_REPLICA.get();
+        EN_REPLICA.set(replica);
+        try {
+            return trabajo.get();
+        } finally {
+            EN_REPLICA.set(anterior);
+        }
+    }
+
+    // Conexión perdida o rechazada: SQLState de la clase 08 o las excepciones JDBC de conexión
+    // (H2 usa sus propios códigos de estado)
+    private static boolean isFalloConexion(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLNonTransientConnectionException || causa instanceof SQLTransientConnectionException)
+                return true;
+            if (causa instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && sqlException.getSQLState().startsWith("08"))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void configure(Map<String, Object> propiedades) {
+        primario.configure(propiedades);
+        Object url = propiedades.get(REPLICA_URL);
+        if (url == null || url.toString().isBlank())
+            return;
+
+        // Misma configuración del pool que el primario, con otra URL y en solo lectura
+        Map<String, Object> propiedadesReplica = new HashMap<>(propiedades);
+        sustituir(propiedadesReplica, url, URL);
+        sustituir(propiedadesReplica, propiedades.get(REPLICA_USERNAME), USERNAME);
+        sustituir(propiedadesReplica, propiedades.get(REPLICA_PASSWORD), PASSWORD);
+        Object poolName = propiedades.get("hibernate.hikari.poolName");
+        propiedadesReplica.put("hibernate.hikari.poolName", (poolName != null ? poolName + "-" : "") + "replica");
+        propiedadesReplica.put("hibernate.hikari.readOnly", "true");
+        propiedadesReplica.put("hibernate.hikari.connectionTimeout",
+                String.valueOf(propiedades.getOrDefault(REPLICA_CONNECTION_TIMEOUT, DEFAULT_REPLICA_CONNECTION_TIMEOUT)));
+        // La aplicación arranca aunque la réplica no esté disponible
+        propiedadesReplica.put("hibernate.hikari.initializationFailTimeout", "-1");
+
+        replica = new HikariCPConnectionProvider();
+        try {
+            replica.configure(propiedadesReplica);
+        } catch (RuntimeException e) {
+            primario.stop();
+            throw e;
+        }
+    }
+
+    // Hibernate acepta la URL y las credenciales con varios nombres y da preferencia a los de Jakarta,
+    // así que se sustituyen todos. Sin valor se dejan los del primario.
+    private static void sustituir(Map<String, Object> propiedades, Object valor, String[] claves) {
+        if (valor == null)
+            return;
+        for (String clave : claves)
+            propiedades.remove(clave);
+        propiedades.put(claves[0], valor.toString());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replica == null || !EN_REPLICA.get())
+            return primario.getConnection();
+
+        if (replicaCaida && System.nanoTime() - reintentarReplicaDesde < 0) {
+            conexionesDesviadas.increment();
+            return primario.getConnection();
+        }
+        try {
+            Connection conexion = replica.getConnection();
+            replicaCaida = false;
+            conexionesReplica.increment();
+            REPLICA_USADA.set(this);
+            return conexion;
+        } catch (SQLException e) {
+            marcarCaida();
+            return primario.getConnection();
+        }
+    }
+
+    private void marcarCaida() {
+        reintentarReplicaDesde = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PAUSA_TRAS_FALLO_MS);
+        replicaCaida = true;
+        conexionesDesviadas.increment();
+    }
+
+    // Las conexiones de ambos pools vuelven a su pool al cerrarlas
+    @Override
+    public void closeConnection(Connection conexion) throws SQLException {
+        primario.closeConnection(conexion);
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    // Se desenvuelve como el pool del primario (HikariDataSource), que es el que usan las migraciones
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isInstance(this) || primario.isUnwrappableAs(unwrapType);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> unwrapType) {
+        return unwrapType.isInstance(this) ? unwrapType.cast(this) : primario.unwrap(unwrapType);
+    }
+
+    public boolean hasReplica() {
+        return replica != null;
+    }
+
+    // Pool de la réplica, null si no hay réplica configurada
+    public HikariDataSource getReplicaDataSource() {
+        return replica == null ? null : replica.unwrap(HikariDataSource.class);
+    }
+
+    // false desde que la réplica falla hasta que vuelve a dar una conexión
+    public boolean isReplicaDisponible() {
+        return !replicaCaida;
+    }
+
+    public long getConexionesReplica() {
+        return conexionesReplica.sum();
+    }
+
+    // Lecturas pedidas a la réplica que se hicieron en el primario porque no respondía
+    public long getConexionesDesviadas() {
+        return conexionesDesviadas.sum();
+    }
+
+    @Override
+    public void stop() {
+        try {
+            if (replica != null)
+                replica.stop();
+        } finally {
+            primario.stop();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package repositorio;
+
+// Estado de la réplica de lectura: su pool, si responde y cuántas conexiones pedidas
+// para la réplica se obtuvieron de ella y cuántas del primario por no estar disponible
+public record ReplicaStatistics(PoolStatistics pool, boolean disponible, long conexionesReplica, long conexionesDesviadas) {
+
+    @Override
+    public String toString() {
+        return "Réplica de lectura " + (disponible ? "disponible" : "no disponible") +
+                ": conexiones=" + conexionesReplica +
+                ", desviadas al primario=" + conexionesDesviadas +
+                "\n" + pool;
+    }
+}
@@ -0,0 +1,28 @@
+package repositorio;
+
+import jakarta.persistence.EntityExistsException;
+
+// Una escritura ha incumplido una clave primaria o una restricción única de la base de datos,
+// p. ej. dos registros simultáneos con el mismo email que pasaron los dos la comprobación previa.
+public class RestriccionUnicaException extends EntityExistsException {
+    private static final long serialVersionUID = 1L;
+
+    // Nombre de la restricción tal como lo informa la base de datos, null si no se conoce
+    private final String restriccion;
+
+    public RestriccionUnicaException(String restriccion, Throwable causa) {
+        super("Restricción única incumplida: " + restriccion, causa);
+        // Con H2, Hibernate devuelve el mensaje entero ("PUBLIC.UK_... ON PUBLIC.USUARIO(...) VALUES ..."),
+        // se deja solo el nombre para no confundirlo con los valores duplicados
+        this.restriccion = restriccion == null ? null : restriccion.split(" ", 2)[0].replace("\"", "");
+    }
+
+    public String getRestriccion() {
+        return restriccion;
+    }
+
+    // La base de datos puede añadir esquema, tabla o sufijos al nombre (H2: PUBLIC.UK_USUARIO_DNI_INDEX_4)
+    public boolean esRestriccion(String nombre) {
+        return restriccion != null && restriccion.toLowerCase().contains(nombre.toLowerCase());
+    }
+}
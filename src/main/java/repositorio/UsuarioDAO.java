@@ -0,0 +1,47 @@
+package repositorio;
+
+import modelo.Usuario;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class UsuarioDAO extends GenericDAO<Usuario> {
+
+    public UsuarioDAO(EntityManagerProvider emProvider) {
+        super(Usuario.class, emProvider);
+    }
+
+    // Aplica la penalización al usuario leído dentro de la transacción, no a una copia en memoria,
+    // y lo guarda; se repite ante conflictos de versión. Devuelve el usuario guardado, null si no existe.
+    public Usuario penalizar(int idUsuario, Consumer<Usuario> penalizacion) {
+        return withTransactionRetry(em -> {
+            Usuario usuario = em.find(Usuario.class, idUsuario);
+            if (usuario != null) {
+                penalizacion.accept(usuario);
+                em.flush(); // Incrementa la versión
+            }
+            return usuario;
+        });
+    }
+
+    // Penaliza hasta la fecha indicada a los usuarios de la colección que no lo estén ya hasta entonces,
+    // con un UPDATE por cada TAMANO_IN usuarios y sin cargarlos. Sube la versión de los modificados,
+    // así una copia en memoria anterior no puede sobrescribir la penalización. Devuelve los modificados.
+    public int penalizarHasta(Collection<Integer> ids, LocalDate hasta) {
+        List<Integer> pendientes = new ArrayList<>(ids);
+        return withTransaction(em -> {
+            int modificados = 0;
+            for (int desde = 0; desde < pendientes.size(); desde += TAMANO_IN) {
+                modificados += em.createQuery("UPDATE Usuario u SET u.penalizacionHasta = :hasta, u.version = u.version + 1 " +
+                                "WHERE u.id IN :ids AND (u.penalizacionHasta IS NULL OR u.penalizacionHasta < :hasta)")
+                        .setParameter("hasta", hasta)
+                        .setParameter("ids", pendientes.subList(desde, Math.min(desde + TAMANO_IN, pendientes.size())))
+                        .executeUpdate();
+            }
+            return modificados;
+        });
+    }
+}
@@ -0,0 +1,419 @@
+package servicio;
+
+import dto.LibroEncontrado;
+import modelo.Libro;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Búsqueda por título y autor mientras se escribe, con un índice invertido en memoria.
+// Los textos se separan en términos sin tildes ni mayúsculas ("García Márquez" -> garcia, marquez)
+// y cada término guarda los libros que lo contienen. Los términos se ordenan en un TreeMap,
+// así los que empiezan por una palabra a medio escribir forman un rango contiguo.
+// Un libro coincide si contiene todas las palabras buscadas, enteras salvo la última, que también
+// puede ser el prefijo de un término porque se está escribiendo.
+//
+// La búsqueda trabaja sobre las listas de apariciones (arrays de enteros ordenados) y solo lee
+// los libros que devuelve: recorrer los términos de miles de libros dispersos en memoria es
+// lo que haría que un catálogo grande pasara del milisegundo. La excepción son los prefijos con
+// más de MAX_EXPANSIONES términos y pocos candidatos, que se comprueban en los términos de cada uno.
+// Las búsquedas se hacen en paralelo; indexar bloquea en escritura el momento de añadir los libros.
+public class BuscadorLibros {
+    // Términos de un prefijo que se cruzan como mucho uno a uno con los candidatos. Con más (prefijos
+    // cortos como "ma") se comprueba en los términos de cada candidato o, si hay muchos, se marcan
+    // a la vez todos los libros con el prefijo (puntosPorLibro).
+    private static final int MAX_EXPANSIONES = 64;
+    // A partir de qué fracción del catálogo se marcan los libros en un array en lugar de ordenar o
+    // cruzar listas de apariciones, y cuántas apariciones por candidato compensan leer sus términos
+    private static final int FRACCION_DENSA = 8;
+    private static final int APARICIONES_POR_CANDIDATO = 16;
+    // Puntos de cada palabra: entera o prefijo, multiplicados si está en el título
+    private static final int PUNTOS_EXACTO = 3;
+    private static final int PUNTOS_PREFIJO = 1;
+    private static final int FACTOR_TITULO = 2;
+    private static final byte EN_TITULO = 1;
+    private static final byte EN_AUTOR = 2;
+    // Longitud máxima de Libro.titulo, para ordenar por longitud dentro de la clave de cada resultado
+    private static final int MAX_LONGITUD_TITULO = 255;
+
+    private final ReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Apariciones> indice = new TreeMap<>();
+    // Libros indexados, cada uno se identifica por su posición
+    private final List<Documento> documentos = new ArrayList<>();
+    // Longitud del título de cada libro, para desempatar sin leer los libros
+    private int[] longitudesTitulo = new int[16];
+    private final Set<String> isbnsIndexados = new HashSet<>();
+
+    // Términos del libro (las mismas instancias que las claves del índice) y en qué campos están
+    private record Documento(String isbn, String titulo, String autor, String[] terminos, byte[] campos) {
+    }
+
+    // Posiciones, en orden creciente, de los libros que contienen un término y en qué campos
+    // lo contiene cada uno (EN_TITULO, EN_AUTOR)
+    private static final class Apariciones {
+        private final String termino;
+        private int[] documentos = new int[1];
+        private byte[] campos = new byte[1];
+        private int tamano;
+
+        private Apariciones(String termino) {
+            this.termino = termino;
+        }
+
+        private void anadir(int documento, byte campo) {
+            if (tamano == documentos.length) {
+                documentos = Arrays.copyOf(documentos, tamano * 2);
+                campos = Arrays.copyOf(campos, tamano * 2);
+            }
+            documentos[tamano] = documento;
+            campos[tamano++] = campo;
+        }
+    }
+
+    // Libros ordenados por posición con los puntos acumulados de las palabras comprobadas
+    private static final class Candidatos {
+        private int[] documentos;
+        private int[] puntos;
+        private int tamano;
+
+        // Los libros con puntos, ya en orden de posición
+        private static Candidatos de(byte[] puntosPorLibro) {
+            Candidatos candidatos = new Candidatos();
+            int n = 0;
+            for (byte puntos : puntosPorLibro) {
+                if (puntos > 0)
+                    n++;
+            }
+            candidatos.documentos = new int[n];
+            candidatos.puntos = new int[n];
+            for (int documento = 0; documento < puntosPorLibro.length; documento++) {
+                if (puntosPorLibro[documento] > 0) {
+                    candidatos.documentos[candidatos.tamano] = documento;
+                    candidatos.puntos[candidatos.tamano++] = puntosPorLibro[documento];
+                }
+            }
+            return candidatos;
+        }
+
+        // Se quedan los que contienen la palabra, sumando su mejor coincidencia
+        private void filtrar(String palabra, List<Apariciones> expansiones) {
+            int[] mejor = new int[tamano];
+            for (Apariciones apariciones : expansiones) {
+                boolean exacto = apariciones.termino.equals(palabra);
+                interseccion(apariciones, (candidato, aparicion) ->
+                        mejor[candidato] = Math.max(mejor[candidato], puntos(exacto, apariciones.campos[aparicion])));
+            }
+            int quedan = 0;
+            for (int i = 0; i < tamano; i++) {
+                if (mejor[i] > 0) {
+                    documentos[quedan] = documentos[i];
+                    puntos[quedan++] = puntos[i] + mejor[i];
+                }
+            }
+            tamano = quedan;
+        }
+
+        // Se quedan los que tienen la palabra según sus puntos en cada libro (puntosPorLibro)
+        private void filtrar(byte[] puntosPorLibro) {
+            int quedan = 0;
+            for (int i = 0; i < tamano; i++) {
+                int mejor = puntosPorLibro[documentos[i]];
+                if (mejor > 0) {
+                    documentos[quedan] = documentos[i];
+                    puntos[quedan++] = puntos[i] + mejor;
+                }
+            }
+            tamano = quedan;
+        }
+
+        // Se quedan los que tienen algún término que empieza por el prefijo, sumando su mejor coincidencia.
+        // Con muchos términos para el prefijo cuesta menos que cruzar las apariciones de todos ellos.
+        private void filtrarPorPrefijo(String prefijo, List<Documento> indexados) {
+            int quedan = 0;
+            for (int i = 0; i < tamano; i++) {
+                Documento documento = indexados.get(documentos[i]);
+                int mejor = 0;
+                for (int t = 0; t < documento.terminos().length; t++) {
+                    String termino = documento.terminos()[t];
+                    if (termino.startsWith(prefijo))
+                        mejor = Math.max(mejor, puntos(termino.equals(prefijo), documento.campos()[t]));
+                }
+                if (mejor > 0) {
+                    documentos[quedan] = documentos[i];
+                    puntos[quedan++] = puntos[i] + mejor;
+                }
+            }
+            tamano = quedan;
+        }
+
+        // Recorre la lista más corta buscando cada elemento en la otra a partir del anterior:
+        // el coste depende sobre todo de la más corta
+        private void interseccion(Apariciones apariciones, Coincidencia coincidencia) {
+            if (tamano <= apariciones.tamano) {
+                int desde = 0;
+                for (int i = 0; i < tamano && desde < apariciones.tamano; i++) {
+                    int posicion = buscarDesde(apariciones.documentos, desde, apariciones.tamano, documentos[i]);
+                    if (posicion >= 0)
+                        coincidencia.en(i, posicion);
+                    desde = posicion >= 0 ? posicion + 1 : -posicion - 1;
+                }
+            } else {
+                int desde = 0;
+                for (int j = 0; j < apariciones.tamano && desde < tamano; j++) {
+                    int posicion = buscarDesde(documentos, desde, tamano, apariciones.documentos[j]);
+                    if (posicion >= 0)
+                        coincidencia.en(posicion, j);
+                    desde = posicion >= 0 ? posicion + 1 : -posicion - 1;
+                }
+            }
+        }
+    }
+
+    // Como Arrays.binarySearch, con saltos que se duplican desde "desde" para acotar antes el rango:
+    // buscar valores crecientes uno tras otro cuesta según la distancia entre ellos, no el tamaño
+    private static int buscarDesde(int[] valores, int desde, int hasta, int valor) {
+        int inicio = desde;
+        int actual = desde;
+        for (int salto = 1; actual < hasta && valores[actual] < valor; salto <<= 1) {
+            inicio = actual + 1;
+            actual += salto;
+        }
+        return Arrays.binarySearch(valores, inicio, Math.min(actual + 1, hasta), valor);
+    }
+
+    // Un candidato (por su índice) está en la posición "aparicion" de una lista de apariciones
+    private interface Coincidencia {
+        void en(int candidato, int aparicion);
+    }
+
+    // Añade los libros al índice. Los libros no cambian de título ni de autor, así que un ISBN ya
+    // indexado (p. ej. al importar ejemplares de un libro existente) se ignora.
+    public void indexar(Collection<Libro> libros) {
+        bloqueo.writeLock().lock();
+        try {
+            for (Libro libro : libros)
+                anadir(libro);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    public void indexar(Libro libro) {
+        indexar(List.of(libro));
+    }
+
+    public int getLibrosIndexados() {
+        bloqueo.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // Hasta maxResultados libros con todas las palabras del texto, de más a menos relevante:
+    // más puntos y, a igualdad, el título más corto (más parecido a lo buscado) y el indexado antes.
+    // La última palabra puede estar a medio escribir.
+    public List<LibroEncontrado> buscar(String texto, int maxResultados) {
+        List<String> palabras = new ArrayList<>(terminos(texto));
+        if (palabras.isEmpty() || maxResultados < 1)
+            return List.of();
+        int ultima = palabras.size() - 1;
+
+        bloqueo.readLock().lock();
+        try {
+            List<List<Apariciones>> expansiones = new ArrayList<>(palabras.size());
+            int[] apariciones = new int[palabras.size()];
+            Integer[] orden = new Integer[palabras.size()];
+            for (int p = 0; p < palabras.size(); p++) {
+                expansiones.add(expandir(palabras.get(p), p == ultima));
+                for (Apariciones expansion : expansiones.get(p))
+                    apariciones[p] += expansion.tamano;
+                if (apariciones[p] == 0)
+                    return List.of();
+                orden[p] = p;
+            }
+
+            // Los candidatos salen de la palabra con menos apariciones y las demás los filtran,
+            // de menos a más apariciones para que los candidatos se reduzcan cuanto antes
+            Arrays.sort(orden, (a, b) -> Integer.compare(apariciones[a], apariciones[b]));
+            int menor = orden[0];
+            Candidatos candidatos = apariciones[menor] > documentos.size() / FRACCION_DENSA
+                    ? Candidatos.de(puntosPorLibro(palabras.get(menor), expansiones.get(menor)))
+                    : candidatos(palabras.get(menor), expansiones.get(menor), apariciones[menor]);
+            for (int i = 1; i < orden.length && candidatos.tamano > 0; i++) {
+                int p = orden[i];
+                if (expansiones.get(p).size() <= MAX_EXPANSIONES)
+                    candidatos.filtrar(palabras.get(p), expansiones.get(p));
+                else if (candidatos.tamano <= apariciones[p] / APARICIONES_POR_CANDIDATO)
+                    candidatos.filtrarPorPrefijo(palabras.get(p), documentos);
+                else
+                    candidatos.filtrar(puntosPorLibro(palabras.get(p), expansiones.get(p)));
+            }
+            return mejores(candidatos, maxResultados);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private void anadir(Libro libro) {
+        if (!isbnsIndexados.add(libro.getIsbn()))
+            return;
+
+        Map<String, Byte> campos = new LinkedHashMap<>();
+        for (String termino : terminos(libro.getTitulo()))
+            campos.merge(termino, EN_TITULO, (a, b) -> (byte) (a | b));
+        for (String termino : terminos(libro.getAutor()))
+            campos.merge(termino, EN_AUTOR, (a, b) -> (byte) (a | b));
+
+        int posicion = documentos.size();
+        String[] terminos = new String[campos.size()];
+        byte[] camposTermino = new byte[campos.size()];
+        int t = 0;
+        for (Map.Entry<String, Byte> campo : campos.entrySet()) {
+            Apariciones apariciones = indice.computeIfAbsent(campo.getKey(), Apariciones::new);
+            apariciones.anadir(posicion, campo.getValue());
+            terminos[t] = apariciones.termino;
+            camposTermino[t++] = campo.getValue();
+        }
+        documentos.add(new Documento(libro.getIsbn(), libro.getTitulo(), libro.getAutor(), terminos, camposTermino));
+        if (posicion == longitudesTitulo.length)
+            longitudesTitulo = Arrays.copyOf(longitudesTitulo, posicion * 2);
+        longitudesTitulo[posicion] = libro.getTitulo().length();
+    }
+
+    // Términos que coinciden con la palabra: el exacto y, si es un prefijo, todos los que empiezan por ella
+    private List<Apariciones> expandir(String palabra, boolean prefijo) {
+        List<Apariciones> expansiones = new ArrayList<>();
+        Apariciones exacto = indice.get(palabra);
+        if (exacto != null)
+            expansiones.add(exacto);
+        if (prefijo)
+            expansiones.addAll(indice.subMap(palabra, false, palabra + Character.MAX_VALUE, false).values());
+        return expansiones;
+    }
+
+    // Mejores puntos de la palabra en cada libro indexado, 0 si no la tiene. Recorre una vez todas las
+    // apariciones: con muchas cuesta menos que ordenarlas o cruzarlas término a término con los candidatos.
+    private byte[] puntosPorLibro(String palabra, List<Apariciones> expansiones) {
+        byte[] puntosPorLibro = new byte[documentos.size()];
+        for (Apariciones expansion : expansiones) {
+            boolean exacto = expansion.termino.equals(palabra);
+            for (int i = 0; i < expansion.tamano; i++) {
+                int puntos = puntos(exacto, expansion.campos[i]);
+                if (puntos > puntosPorLibro[expansion.documentos[i]])
+                    puntosPorLibro[expansion.documentos[i]] = (byte) puntos;
+            }
+        }
+        return puntosPorLibro;
+    }
+
+    // Todos los libros con la palabra, con los puntos de su mejor coincidencia. No se recortan: las
+    // demás palabras se cruzan con la lista completa y solo el resultado final se limita (mejores).
+    private static Candidatos candidatos(String palabra, List<Apariciones> expansiones, int apariciones) {
+        Candidatos candidatos = new Candidatos();
+        // Con un único término la lista ya está ordenada y sin repetidos
+        if (expansiones.size() == 1) {
+            Apariciones expansion = expansiones.get(0);
+            boolean exacto = expansion.termino.equals(palabra);
+            candidatos.documentos = Arrays.copyOf(expansion.documentos, expansion.tamano);
+            candidatos.puntos = new int[expansion.tamano];
+            for (int i = 0; i < expansion.tamano; i++)
+                candidatos.puntos[i] = puntos(exacto, expansion.campos[i]);
+            candidatos.tamano = expansion.tamano;
+            return candidatos;
+        }
+
+        // Posición y puntos en un long, para ordenar por posición sin crear objetos
+        long[] pares = new long[apariciones];
+        int n = 0;
+        for (Apariciones expansion : expansiones) {
+            boolean exacto = expansion.termino.equals(palabra);
+            for (int i = 0; i < expansion.tamano; i++)
+                pares[n++] = (long) expansion.documentos[i] << Integer.SIZE | puntos(exacto, expansion.campos[i]);
+        }
+        Arrays.sort(pares, 0, n);
+
+        // Un libro puede estar en varias expansiones, se queda la de más puntos (la última al ordenar)
+        candidatos.documentos = new int[n];
+        candidatos.puntos = new int[n];
+        for (int i = 0; i < n; i++) {
+            int documento = (int) (pares[i] >>> Integer.SIZE);
+            if (i + 1 < n && (int) (pares[i + 1] >>> Integer.SIZE) == documento)
+                continue;
+            candidatos.documentos[candidatos.tamano] = documento;
+            candidatos.puntos[candidatos.tamano++] = (int) pares[i];
+        }
+        return candidatos;
+    }
+
+    // Los maxResultados candidatos más relevantes. Cada uno se resume en una clave que ordena como
+    // el resultado (puntos, título más corto, posición menor) y se guardan las mayores, ordenadas.
+    private List<LibroEncontrado> mejores(Candidatos candidatos, int maxResultados) {
+        long[] claves = new long[Math.min(maxResultados, candidatos.tamano)];
+        int n = 0;
+        for (int i = 0; i < candidatos.tamano; i++) {
+            int documento = candidatos.documentos[i];
+            long clave = (long) candidatos.puntos[i] << 40
+                    | (long) (MAX_LONGITUD_TITULO - Math.min(longitudesTitulo[documento], MAX_LONGITUD_TITULO)) << 31
+                    | (Integer.MAX_VALUE - documento);
+            if (n < claves.length)
+                n++;
+            else if (clave <= claves[n - 1])
+                continue;
+            int j = n - 1;
+            while (j > 0 && claves[j - 1] < clave) {
+                claves[j] = claves[j - 1];
+                j--;
+            }
+            claves[j] = clave;
+        }
+
+        List<LibroEncontrado> resultados = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Documento documento = documentos.get(Integer.MAX_VALUE - (int) (claves[i] & Integer.MAX_VALUE));
+            resultados.add(new LibroEncontrado(documento.isbn(), documento.titulo(), documento.autor(), (int) (claves[i] >>> 40)));
+        }
+        return resultados;
+    }
+
+    private static int puntos(boolean exacto, byte campos) {
+        int puntos = exacto ? PUNTOS_EXACTO : PUNTOS_PREFIJO;
+        return (campos & EN_TITULO) != 0 ? puntos * FACTOR_TITULO : puntos;
+    }
+
+    // Términos distintos del texto, en minúsculas y sin tildes ni signos
+    static Set<String> terminos(String texto) {
+        Set<String> terminos = new LinkedHashSet<>();
+        if (texto == null)
+            return terminos;
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD); // "á" pasa a "a" + tilde
+        StringBuilder termino = new StringBuilder();
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK)
+                continue;
+            if (Character.isLetterOrDigit(c)) {
+                termino.append(Character.toLowerCase(c));
+            } else if (!termino.isEmpty()) {
+                terminos.add(termino.toString());
+                termino.setLength(0);
+            }
+        }
+        if (!termino.isEmpty())
+            terminos.add(termino.toString());
+        return terminos;
+    }
+}
@@ -0,0 +1,39 @@
+package servicio;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Ejemplares disponibles por libro y en todo el catálogo.
+// Se reconstruye al arrancar y se actualiza en cada cambio de estado de un ejemplar,
+// así las consultas de stock no recorren los ejemplares.
+public class ContadorDisponibilidad {
+    private final Map<String, AtomicInteger> disponiblesPorIsbn = new ConcurrentHashMap<>();
+    private final AtomicInteger disponiblesTotal = new AtomicInteger();
+
+    // Sustituye los contadores por los recuentos obtenidos de la DB
+    public void reconstruir(Map<String, Long> recuentos) {
+        disponiblesPorIsbn.clear();
+        int total = 0;
+        for (Map.Entry<String, Long> recuento : recuentos.entrySet()) {
+            disponiblesPorIsbn.put(recuento.getKey(), new AtomicInteger(recuento.getValue().intValue()));
+            total += recuento.getValue().intValue();
+        }
+        disponiblesTotal.set(total);
+    }
+
+    // Suma (o resta, si delta es negativo) ejemplares disponibles a un libro
+    public void sumar(String isbn13, int delta) {
+        disponiblesPorIsbn.computeIfAbsent(isbn13, isbn -> new AtomicInteger()).addAndGet(delta);
+        disponiblesTotal.addAndGet(delta);
+    }
+
+    public int getDisponibles(String isbn13) {
+        AtomicInteger disponibles = disponiblesPorIsbn.get(isbn13);
+        return disponibles == null ? 0 : disponibles.get();
+    }
+
+    public int getDisponiblesTotal() {
+        return disponiblesTotal.get();
+    }
+}
@@ -1,24 +1,45 @@
 package servicio;
 
+import jakarta.persistence.OptimisticLockException;
 import modelo.Ejemplar;
+import modelo.EstadoEjemplar;
 import modelo.Libro;
-import repositorio.GenericDAO;
+import org.hibernate.Hibernate;
+import repositorio.EjemplarDAO;
+import util.CacheLRU;
+import util.Metricas;
 import util.Validator;
 
-import java.util.List;
-
 public class EjemplarService {
-    private final GenericDAO<Ejemplar> ejemplarDAO;
-    private final List<Ejemplar> ejemplares;
+    public static final int CAPACIDAD_CACHE = 10_000;
+
+    // Llamadas y latencia de las operaciones públicas
+    private static final Metricas.Operacion REGISTRAR = Metricas.operacion("EjemplarService.registrar");
+    private static final Metricas.Operacion READ = Metricas.operacion("EjemplarService.read");
+
+    private final EjemplarDAO ejemplarDAO;
+    // Conjunto de trabajo acotado, los ejemplares se cargan de la DB bajo demanda
+    private final CacheLRU<Integer, Ejemplar> ejemplaresPorId;
     private final LibroService libroService;
+    private final ContadorDisponibilidad contadorDisponibilidad;
 
-    public EjemplarService(GenericDAO<Ejemplar> ejemplarDAO, LibroService libroService) {
+    public EjemplarService(EjemplarDAO ejemplarDAO, LibroService libroService, ContadorDisponibilidad contadorDisponibilidad) {
+        this(ejemplarDAO, libroService, contadorDisponibilidad, CAPACIDAD_CACHE);
+    }
+
+    public EjemplarService(EjemplarDAO ejemplarDAO, LibroService libroService, ContadorDisponibilidad contadorDisponibilidad, int capacidadCache) {
         this.ejemplarDAO = ejemplarDAO;
-        this.ejemplares = ejemplarDAO.readAll();
+        this.ejemplaresPorId = new CacheLRU<>(capacidadCache);
         this.libroService = libroService;
+        this.contadorDisponibilidad = contadorDisponibilidad;
+        contadorDisponibilidad.reconstruir(ejemplarDAO.countDisponiblesPorIsbn()); // Recuento inicial desde la DB
     }
 
-    public void registrar(String isbn13, String estado) {
+    public Ejemplar registrar(String isbn13, String estado) {
+        return REGISTRAR.medir(() -> registrarEjemplar(isbn13, estado));
+    }
+
+    private Ejemplar registrarEjemplar(String isbn13, String estado) {
         // Validación de campos requeridos
         if (Validator.isNotFilled(isbn13))
             throw new IllegalArgumentException("El ISBN13 es obligatorio");
@@ -33,7 +54,8 @@ public class EjemplarService {
             throw new IllegalArgumentException("ISBN no válido");
         if (!Validator.isEstadoValid(estado))
             throw new IllegalArgumentException("Estado del ejemplar no válido");
-        if (estado.equalsIgnoreCase("Prestado"))
+        EstadoEjemplar estadoInicial = EstadoEjemplar.deTexto(estado);
+        if (estadoInicial == EstadoEjemplar.PRESTADO)
             throw new IllegalArgumentException("No se puede registrar un ejemplar como prestado.");
 
         // Obtener registro del libro y validar que el libro exista
@@ -41,28 +63,71 @@ public class EjemplarService {
         if (libroRef == null)
             throw new IllegalArgumentException("No se ha encontrado el libro para el que quiere registrar un ejemplar. Debe registrar el libro primero.");
 
-        Ejemplar ejemplarToCreate = new Ejemplar(libroRef, estado);
+        Ejemplar ejemplarToCreate = new Ejemplar(libroRef, estadoInicial);
         ejemplarDAO.create(ejemplarToCreate); // Crear en DB
-        ejemplares.add(ejemplarToCreate); // Añadir a la lista de memoria
-        libroRef.getEjemplares().add(ejemplarToCreate); // Añadir el ejemplar al libro
+        ejemplaresPorId.put(ejemplarToCreate.getId(), ejemplarToCreate); // Añadir a la caché
+        // La colección de ejemplares del libro en memoria la pueden estar leyendo otros hilos,
+        // en lugar de modificarla se descarta el libro y se volverá a cargar con el nuevo ejemplar
+        if (Hibernate.isInitialized(libroRef.getEjemplares()))
+            libroService.olvidar(isbn13);
+
+        if (Validator.isEjemplarDisponible(ejemplarToCreate))
+            contadorDisponibilidad.sumar(isbn13, 1);
+        return ejemplarToCreate;
+    }
+
+    // Marca un ejemplar como dañado, deja de contar como disponible. El estado se comprueba y cambia
+    // en la DB, así un préstamo simultáneo no puede quedar apuntando a un ejemplar dañado.
+    public void marcarDanado(int idEjemplar) {
+        EjemplarDAO.CambioEstado cambio;
+        try {
+            cambio = ejemplarDAO.cambiarEstado(idEjemplar, EstadoEjemplar.DANADO, ejemplar -> {
+                if (ejemplar == null)
+                    throw new IllegalArgumentException("No hay un ejemplar registrado con este ID");
+                if (ejemplar.getEstado() == EstadoEjemplar.PRESTADO)
+                    throw new IllegalArgumentException("No se puede marcar como dañado un ejemplar prestado");
+            });
+        } catch (OptimisticLockException e) {
+            throw new IllegalArgumentException("Hay demasiadas operaciones simultáneas sobre este ejemplar, vuelva a intentarlo");
+        }
+        sincronizar(cambio.ejemplar(), cambio.estadoAnterior());
     }
 
     // Retornar ejemplar por ID
     public Ejemplar read(int idEjemplar) {
-        return ejemplares.stream()
-                .filter(ejemplar -> ejemplar.getId().equals(idEjemplar))
-                .findFirst()
-                .orElse(null);
+        return READ.medir(() -> {
+            Ejemplar ejemplar = ejemplaresPorId.get(idEjemplar);
+            if (ejemplar == null) {
+                ejemplar = ejemplarDAO.read(idEjemplar); // Cargar de la DB si no está en memoria
+                if (ejemplar != null)
+                    ejemplar = ejemplaresPorId.putIfAbsent(idEjemplar, ejemplar);
+            }
+            return ejemplar;
+        });
     }
 
-    public void update(Ejemplar ejemplarRef) {
-        ejemplarDAO.update(ejemplarRef);
+    // Refleja en memoria un cambio de estado guardado en otra transacción (préstamo o devolución):
+    // actualiza la instancia en caché y el contador de disponibles. Devuelve la instancia en memoria.
+    public Ejemplar sincronizar(Ejemplar actualizado, EstadoEjemplar estadoAnterior) {
+        Ejemplar enMemoria = ejemplaresPorId.putIfAbsent(actualizado.getId(), actualizado);
+        // Las transacciones pueden terminar en cualquier orden, solo se copia una versión más reciente
+        synchronized (enMemoria) {
+            if (actualizado.getVersion() > enMemoria.getVersion()) {
+                enMemoria.setEstado(actualizado.getEstado());
+                enMemoria.setVersion(actualizado.getVersion());
+            }
+        }
+
+        // El contador refleja el cambio hecho por esta transacción
+        boolean estabaDisponible = estadoAnterior == EstadoEjemplar.DISPONIBLE;
+        boolean estaDisponible = Validator.isEjemplarDisponible(actualizado);
+        if (estabaDisponible != estaDisponible)
+            contadorDisponibilidad.sumar(actualizado.getIsbn().getIsbn(), estaDisponible ? 1 : -1);
+        return enMemoria;
     }
 
     // Obtener número de ejemplares disponibles en total
     public int getStockTotalEjemplares() {
-        return (int) ejemplares.stream()
-               .filter(e -> e.getEstado().equalsIgnoreCase("Disponible"))
-               .count();
+        return contadorDisponibilidad.getDisponiblesTotal();
     }
 }
@@ -0,0 +1,138 @@
+package servicio;
+
+import dto.FormatoExportacion;
+import dto.OpcionesExportacion;
+import dto.PrestamoExportado;
+import repositorio.PrestamoDAO;
+import util.TextoJson;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+// Vuelca el historial de préstamos a CSV (separado por ';', como la importación del catálogo)
+// o a JSON Lines (un objeto por línea). Las filas se escriben según llegan de la DB,
+// así la memoria usada no depende del número de préstamos.
+public class ExportadorPrestamos {
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    private static final char SEPARADOR = ';';
+
+    private final PrestamoDAO prestamoDAO;
+
+    public ExportadorPrestamos(PrestamoDAO prestamoDAO) {
+        this.prestamoDAO = prestamoDAO;
+    }
+
+    // Exporta al fichero indicado, comprimido con GZIP si se pide. Devuelve los préstamos exportados.
+    public long exportar(Path destino, OpcionesExportacion opciones) throws IOException {
+        try (OutputStream salida = Files.newOutputStream(destino)) {
+            return exportar(salida, opciones);
+        }
+    }
+
+    // No cierra el flujo recibido
+    public long exportar(OutputStream salida, OpcionesExportacion opciones) throws IOException {
+        GZIPOutputStream gzip = opciones.gzip() ? new GZIPOutputStream(salida, TAMANO_BUFFER) : null;
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(gzip != null ? gzip : salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+
+        if (opciones.formato() == FormatoExportacion.CSV)
+            escritor.write("id;usuario_id;ejemplar_id;fecha_inicio;fecha_devolucion" + (opciones.conTitulo() ? ";titulo\n" : "\n"));
+
+        long[] exportados = {0};
+        try {
+            prestamoDAO.exportar(opciones, prestamo -> {
+                try {
+                    if (opciones.formato() == FormatoExportacion.CSV)
+                        escribirCsv(escritor, prestamo, opciones.conTitulo());
+                    else
+                        escribirJson(escritor, prestamo, opciones.conTitulo());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exportados[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        escritor.flush();
+        if (gzip != null)
+            gzip.finish();
+        return exportados[0];
+    }
+
+    private static void escribirCsv(Writer escritor, PrestamoExportado prestamo, boolean conTitulo) throws IOException {
+        escritor.write(Integer.toString(prestamo.id()));
+        escritor.write(SEPARADOR);
+        escritor.write(Integer.toString(prestamo.usuarioId()));
+        escritor.write(SEPARADOR);
+        escritor.write(Integer.toString(prestamo.ejemplarId()));
+        escritor.write(SEPARADOR);
+        escritor.write(prestamo.fechaInicio().toString());
+        escritor.write(SEPARADOR);
+        if (prestamo.fechaDevolucion() != null)
+            escritor.write(prestamo.fechaDevolucion().toString());
+        if (conTitulo) {
+            escritor.write(SEPARADOR);
+            escribirCampoCsv(escritor, prestamo.titulo());
+        }
+        escritor.write('\n');
+    }
+
+    // Entre comillas (duplicando las internas) si el texto contiene el separador, comillas o saltos de línea
+    private static void escribirCampoCsv(Writer escritor, String texto) throws IOException {
+        boolean entrecomillar = false;
+        for (int i = 0; i < texto.length() && !entrecomillar; i++) {
+            char c = texto.charAt(i);
+            entrecomillar = c == SEPARADOR || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!entrecomillar) {
+            escritor.write(texto);
+            return;
+        }
+        escritor.write('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"')
+                escritor.write('"');
+            escritor.write(c);
+        }
+        escritor.write('"');
+    }
+
+    private static void escribirJson(Writer escritor, PrestamoExportado prestamo, boolean conTitulo) throws IOException {
+        escritor.write("{\"id\":");
+        escritor.write(Integer.toString(prestamo.id()));
+        escritor.write(",\"usuarioId\":");
+        escritor.write(Integer.toString(prestamo.usuarioId()));
+        escritor.write(",\"ejemplarId\":");
+        escritor.write(Integer.toString(prestamo.ejemplarId()));
+        escritor.write(",\"fechaInicio\":");
+        escribirFechaJson(escritor, prestamo.fechaInicio());
+        escritor.write(",\"fechaDevolucion\":");
+        escribirFechaJson(escritor, prestamo.fechaDevolucion());
+        if (conTitulo) {
+            escritor.write(",\"titulo\":");
+            TextoJson.escribir(escritor, prestamo.titulo());
+        }
+        escritor.write("}\n");
+    }
+
+    private static void escribirFechaJson(Writer escritor, LocalDate fecha) throws IOException {
+        if (fecha == null) {
+            escritor.write("null");
+            return;
+        }
+        escritor.write('"');
+        escritor.write(fecha.toString());
+        escritor.write('"');
+    }
+}
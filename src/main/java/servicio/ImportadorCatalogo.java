@@ -0,0 +1,227 @@
+package servicio;
+
+import dto.FilaRechazada;
+import dto.ResultadoImportacion;
+import modelo.Libro;
+import repositorio.LibroDAO;
+import util.ErrorValidacion;
+import util.Validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Carga masiva del catálogo desde un fichero de texto con una fila por libro:
+//   isbn;titulo;autor;ejemplares
+// El fichero se lee por bloques, sin cargarlo entero en memoria. Cada bloque se valida
+// (los ISBN en paralelo), se descartan los ISBN repetidos en el fichero y se guarda en una
+// única transacción con inserciones por lotes. Si el libro ya está en el catálogo no se
+// vuelve a crear, solo se le añaden los ejemplares de la fila.
+public class ImportadorCatalogo {
+    public static final int TAMANO_BLOQUE = 10_000;
+    private static final char SEPARADOR = ';';
+    private static final int MAX_EJEMPLARES_POR_FILA = 1000;
+    private static final int LONGITUD_TITULO = 200;
+    private static final int LONGITUD_AUTOR = 100;
+
+    private final LibroDAO libroDAO;
+    private final LibroService libroService;
+    private final ContadorDisponibilidad contadorDisponibilidad;
+    private final int tamanoBloque;
+
+    public ImportadorCatalogo(LibroDAO libroDAO, LibroService libroService, ContadorDisponibilidad contadorDisponibilidad) {
+        this(libroDAO, libroService, contadorDisponibilidad, TAMANO_BLOQUE);
+    }
+
+    public ImportadorCatalogo(LibroDAO libroDAO, LibroService libroService, ContadorDisponibilidad contadorDisponibilidad, int tamanoBloque) {
+        if (tamanoBloque < 1)
+            throw new IllegalArgumentException("El tamaño de bloque debe ser mayor que 0");
+        this.libroDAO = libroDAO;
+        this.libroService = libroService;
+        this.contadorDisponibilidad = contadorDisponibilidad;
+        this.tamanoBloque = tamanoBloque;
+    }
+
+    public ResultadoImportacion importar(Path fichero, Consumer<FilaRechazada> rechazadas, LongConsumer progreso) throws IOException {
+        try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+            return importar(lector, rechazadas, progreso);
+        }
+    }
+
+    // Las filas rechazadas se notifican según se detectan y el progreso (líneas leídas) al terminar cada bloque
+    public ResultadoImportacion importar(BufferedReader lector, Consumer<FilaRechazada> rechazadas, LongConsumer progreso) throws IOException {
+        Importacion importacion = new Importacion(rechazadas);
+        List<Fila> bloque = new ArrayList<>(tamanoBloque);
+        long numeroLinea = 0;
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            numeroLinea++;
+            // Se ignoran las líneas vacías y la cabecera, si la hay
+            if (linea.isBlank() || (numeroLinea == 1 && linea.regionMatches(true, 0, "isbn", 0, 4)))
+                continue;
+
+            bloque.add(importacion.leer(numeroLinea, linea));
+            if (bloque.size() == tamanoBloque) {
+                importacion.procesar(bloque);
+                bloque.clear();
+                progreso.accept(numeroLinea);
+            }
+        }
+        if (!bloque.isEmpty()) {
+            importacion.procesar(bloque);
+            progreso.accept(numeroLinea);
+        }
+        return importacion.getResultado(numeroLinea);
+    }
+
+    // Fila leída del fichero, null en los campos si no se ha podido separar
+    private record Fila(long linea, String contenido, String isbn, String titulo, String autor, String ejemplares) {
+    }
+
+    // Estado de una importación en curso
+    private class Importacion {
+        private final Consumer<FilaRechazada> rechazadas;
+        // ISBN ya vistos en el fichero, para descartar las filas repetidas
+        private final Set<String> isbnsVistos = new HashSet<>();
+        private int librosCreados, librosExistentes, ejemplaresCreados;
+        private long filasRechazadas;
+
+        private Importacion(Consumer<FilaRechazada> rechazadas) {
+            this.rechazadas = rechazadas;
+        }
+
+        // Separa los cuatro campos sin expresiones regulares
+        private Fila leer(long numeroLinea, String linea) {
+            int fin1 = linea.indexOf(SEPARADOR);
+            int fin2 = fin1 < 0 ? -1 : linea.indexOf(SEPARADOR, fin1 + 1);
+            int fin3 = fin2 < 0 ? -1 : linea.indexOf(SEPARADOR, fin2 + 1);
+            if (fin3 < 0 || linea.indexOf(SEPARADOR, fin3 + 1) >= 0)
+                return new Fila(numeroLinea, linea, null, null, null, null);
+            return new Fila(numeroLinea, linea,
+                    linea.substring(0, fin1).trim(),
+                    linea.substring(fin1 + 1, fin2).trim(),
+                    linea.substring(fin2 + 1, fin3).trim(),
+                    linea.substring(fin3 + 1).trim());
+        }
+
+        private void procesar(List<Fila> bloque) {
+            // Validación de los ISBN en paralelo
+            List<String> isbns = new ArrayList<>(bloque.size());
+            for (Fila fila : bloque)
+                isbns.add(fila.isbn());
+            byte[] codigos = Validator.validateAll(isbns, Validator::checkIsbn13);
+
+            List<Fila> validas = new ArrayList<>(bloque.size());
+            List<Integer> numeroEjemplares = new ArrayList<>(bloque.size());
+            for (int i = 0; i < bloque.size(); i++) {
+                Fila fila = bloque.get(i);
+                if (fila.isbn() == null) {
+                    rechazar(fila, "La fila debe tener 4 campos: isbn;titulo;autor;ejemplares");
+                    continue;
+                }
+                if (Validator.isNotFilled(fila.isbn(), fila.titulo(), fila.autor())) {
+                    rechazar(fila, "Todos los campos son obligatorios");
+                    continue;
+                }
+                if (codigos[i] != ErrorValidacion.OK.getCodigo()) {
+                    rechazar(fila, "ISBN13 no válido (" + ErrorValidacion.deCodigo(codigos[i]) + ")");
+                    continue;
+                }
+                if (fila.titulo().length() > LONGITUD_TITULO || fila.autor().length() > LONGITUD_AUTOR) {
+                    rechazar(fila, "Título o autor demasiado largo");
+                    continue;
+                }
+                int ejemplares = leerEjemplares(fila.ejemplares());
+                if (ejemplares < 0) {
+                    rechazar(fila, "Número de ejemplares no válido");
+                    continue;
+                }
+                // Verificación de duplicidad dentro del fichero
+                if (!isbnsVistos.add(fila.isbn())) {
+                    rechazar(fila, "ISBN repetido en el fichero");
+                    continue;
+                }
+                validas.add(fila);
+                numeroEjemplares.add(ejemplares);
+            }
+            if (validas.isEmpty())
+                return;
+
+            // Verificación de duplicidad contra el catálogo, una consulta por bloque
+            List<String> isbnsValidos = new ArrayList<>(validas.size());
+            for (Fila fila : validas)
+                isbnsValidos.add(fila.isbn());
+            Set<String> existentes = libroDAO.findIsbnsExistentes(isbnsValidos);
+
+            List<Libro> libros = new ArrayList<>(validas.size() - existentes.size());
+            Map<String, Integer> ejemplaresPorIsbn = new LinkedHashMap<>();
+            int ejemplaresBloque = 0;
+            for (int i = 0; i < validas.size(); i++) {
+                Fila fila = validas.get(i);
+                if (!existentes.contains(fila.isbn()))
+                    libros.add(new Libro(fila.isbn(), fila.titulo(), fila.autor()));
+                if (numeroEjemplares.get(i) > 0) {
+                    ejemplaresPorIsbn.put(fila.isbn(), numeroEjemplares.get(i));
+                    ejemplaresBloque += numeroEjemplares.get(i);
+                }
+            }
+
+            try {
+                libroDAO.importar(libros, ejemplaresPorIsbn);
+            } catch (RuntimeException e) {
+                // Se ha deshecho el bloque completo, sus filas se pueden volver a importar
+                for (Fila fila : validas) {
+                    isbnsVistos.remove(fila.isbn());
+                    rechazar(fila, "Error al guardar el bloque: " + e.getMessage());
+                }
+                return;
+            }
+
+            libroService.indexar(libros);
+            librosCreados += libros.size();
+            librosExistentes += existentes.size();
+            ejemplaresCreados += ejemplaresBloque;
+            ejemplaresPorIsbn.forEach((isbn, ejemplares) -> {
+                contadorDisponibilidad.sumar(isbn, ejemplares);
+                // La colección de ejemplares de un libro en caché ya no está completa
+                if (existentes.contains(isbn))
+                    libroService.olvidar(isbn);
+            });
+        }
+
+        // Número de ejemplares de la fila (0 si se deja vacío), -1 si no es válido
+        private int leerEjemplares(String ejemplares) {
+            if (Validator.isNotFilled(ejemplares))
+                return 0;
+            if (ejemplares.length() > 4)
+                return -1;
+            int numero = 0;
+            for (int i = 0; i < ejemplares.length(); i++) {
+                char c = ejemplares.charAt(i);
+                if (c < '0' || c > '9')
+                    return -1;
+                numero = numero * 10 + (c - '0');
+            }
+            return numero <= MAX_EJEMPLARES_POR_FILA ? numero : -1;
+        }
+
+        private void rechazar(Fila fila, String motivo) {
+            filasRechazadas++;
+            rechazadas.accept(new FilaRechazada(fila.linea(), fila.contenido(), motivo));
+        }
+
+        private ResultadoImportacion getResultado(long filasLeidas) {
+            return new ResultadoImportacion(filasLeidas, librosCreados, librosExistentes, ejemplaresCreados, filasRechazadas);
+        }
+    }
+}
@@ -1,22 +1,54 @@
 package servicio;
 
-import modelo.Ejemplar;
+import dto.LibroEncontrado;
+import dto.LibroStock;
+import dto.OrdenLibros;
 import modelo.Libro;
-import repositorio.GenericDAO;
+import repositorio.LibroDAO;
+import repositorio.RestriccionUnicaException;
+import util.CacheLRU;
+import util.Metricas;
 import util.Validator;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class LibroService {
-    private final GenericDAO<Libro> libroDAO;
-    private final List<Libro> libros;
+    public static final int CAPACIDAD_CACHE = 10_000;
+    // Libros por consulta al cargar el buscador al arrancar
+    private static final int BLOQUE_BUSCADOR = 10_000;
 
-    public LibroService(GenericDAO<Libro> libroDAO) {
+    // Llamadas y latencia de las operaciones públicas
+    private static final Metricas.Operacion REGISTRAR = Metricas.operacion("LibroService.registrar");
+    private static final Metricas.Operacion READ = Metricas.operacion("LibroService.read");
+    private static final Metricas.Operacion STOCK_LIBRO = Metricas.operacion("LibroService.getStockLibroByIsbn");
+    private static final Metricas.Operacion LIBROS_CON_STOCK = Metricas.operacion("LibroService.getLibrosConStock");
+    private static final Metricas.Operacion BUSCAR = Metricas.operacion("LibroService.buscar");
+
+    private final LibroDAO libroDAO;
+    // Conjunto de trabajo acotado, los libros se cargan de la DB bajo demanda
+    private final CacheLRU<String, Libro> librosPorIsbn;
+    private final ContadorDisponibilidad contadorDisponibilidad;
+    // Índice de títulos y autores de todo el catálogo, las búsquedas no consultan la DB
+    private final BuscadorLibros buscador = new BuscadorLibros();
+
+    public LibroService(LibroDAO libroDAO, ContadorDisponibilidad contadorDisponibilidad) {
+        this(libroDAO, contadorDisponibilidad, CAPACIDAD_CACHE);
+    }
+
+    public LibroService(LibroDAO libroDAO, ContadorDisponibilidad contadorDisponibilidad, int capacidadCache) {
         this.libroDAO = libroDAO;
-        this.libros = libroDAO.readAll();
+        this.contadorDisponibilidad = contadorDisponibilidad;
+        this.librosPorIsbn = new CacheLRU<>(capacidadCache);
+        libroDAO.recorrerCatalogo(BLOQUE_BUSCADOR, buscador::indexar); // Índice inicial desde la DB
     }
 
     public void registrar(String isbn13, String titulo, String autor) {
+        REGISTRAR.medir(() -> registrarLibro(isbn13, titulo, autor));
+    }
+
+    private void registrarLibro(String isbn13, String titulo, String autor) {
 
         // Validación de campos requeridos
         if (Validator.isNotFilled(isbn13, titulo, autor))
@@ -32,31 +64,83 @@ public class LibroService {
             throw new IllegalArgumentException("ISBN13 no válido");
 
         Libro libroToCreate = new Libro(isbn13, titulo, autor);
-        libroDAO.create(libroToCreate); // Crear en DB
-        libros.add(libroToCreate); // Añadir a la lista de memoria
+        try {
+            libroDAO.create(libroToCreate); // Crear en DB
+        } catch (RestriccionUnicaException e) {
+            throw new IllegalArgumentException("Este libro ya existe"); // Registrado a la vez por otro usuario
+        }
+        librosPorIsbn.put(isbn13, libroToCreate); // Añadir a la caché
+        buscador.indexar(libroToCreate);
     }
 
     // Retorna libro con el ISBN13 introducido
     public Libro read(String isbn13) {
-        return libros.stream()
-                .filter(libro -> libro.getIsbn().equals(isbn13))
-                .findFirst()
-                .orElse(null);
+        return READ.medir(() -> {
+            Libro libro = librosPorIsbn.get(isbn13);
+            if (libro == null) {
+                libro = libroDAO.read(isbn13); // Cargar de la DB si no está en memoria
+                if (libro != null)
+                    libro = librosPorIsbn.putIfAbsent(isbn13, libro);
+            }
+            return libro;
+        });
+    }
+
+    // Libros cuyo título y autor contienen todas las palabras del texto, de más a menos relevante.
+    // Sin distinguir tildes ni mayúsculas, y la última palabra puede estar a medio escribir.
+    public List<LibroEncontrado> buscar(String texto, int maxResultados) {
+        if (maxResultados < 1)
+            throw new IllegalArgumentException("El número de resultados debe ser mayor que 0");
+        return BUSCAR.medir(() -> buscador.buscar(texto, maxResultados));
+    }
+
+    // Añade al buscador libros creados sin pasar por registrar (importación del catálogo)
+    public void indexar(Collection<Libro> libros) {
+        buscador.indexar(libros);
+    }
+
+    // Descarta el libro de la caché, se volverá a cargar de la DB en la próxima lectura
+    public void olvidar(String isbn13) {
+        librosPorIsbn.remove(isbn13);
     }
 
     // Obtener stock de un libro
     public int getStockLibroByIsbn(String isbn13) {
-        Libro libroRef = read(isbn13); // Obtener libro por ISBN13
-        return getStockLibro(libroRef);
+        return STOCK_LIBRO.medir(() -> {
+            Libro libroRef = read(isbn13); // Obtener libro por ISBN13
+            return getStockLibro(libroRef);
+        });
     }
 
     public int getStockLibro(Libro libroRef) {
-        return (int) libroRef.getEjemplares().stream()  // Obtener ejemplares del libro
-                .filter(ejemplar -> ejemplar.getEstado().equalsIgnoreCase("Disponible")) // Filtrar ejemplares disponibles
-                .count();
+        return getStockIsbn(libroRef.getIsbn());
+    }
+
+    // Stock de un ISBN sin leer el libro, p. ej. para los resultados de una búsqueda
+    public int getStockIsbn(String isbn13) {
+        return contadorDisponibilidad.getDisponibles(isbn13); // Contador mantenido por EjemplarService
+    }
+
+    // Página del catálogo con el stock de cada libro, calculado en la DB sin cargar los ejemplares,
+    // que sigue a "ultimo" (null para la primera)
+    public List<LibroStock> getLibrosConStock(LibroStock ultimo, OrdenLibros orden, int tamanoPagina) {
+        return LIBROS_CON_STOCK.medir(() -> libroDAO.listarConStock(ultimo, orden, tamanoPagina));
+    }
+
+    // Recorre el catálogo entero con su stock página a página, cada una continúa donde acabó la anterior
+    public void recorrerLibrosConStock(OrdenLibros orden, int tamanoPagina, Consumer<LibroStock> accion) {
+        List<LibroStock> pagina;
+        LibroStock ultimo = null;
+        do {
+            pagina = getLibrosConStock(ultimo, orden, tamanoPagina);
+            pagina.forEach(accion);
+            if (!pagina.isEmpty())
+                ultimo = pagina.get(pagina.size() - 1);
+        } while (pagina.size() == tamanoPagina);
     }
 
-    public List<Libro> getLibros() {
-        return libros;
+    // Página del catálogo ordenada por ISBN (la primera página es la 0)
+    public List<Libro> getLibros(int pagina, int tamanoPagina) {
+        return libroDAO.readPage(pagina, tamanoPagina);
     }
 }
@@ -1,98 +1,232 @@
 package servicio;
 
-import modelo.Ejemplar;
+import dto.FiltroPrestamos;
+import dto.OrdenPrestamos;
+import dto.PrestamoResumen;
+import dto.ResultadoDevolucion;
+import dto.TipoIdDevolucion;
+import jakarta.persistence.OptimisticLockException;
+import modelo.EstadoEjemplar;
 import modelo.Prestamo;
-import modelo.Usuario;
-import repositorio.GenericDAO;
+import repositorio.PrestamoDAO;
+import util.CacheLRU;
+import util.Metricas;
 import util.Validator;
 
+import java.time.Clock;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class PrestamoService {
-    private final GenericDAO<Prestamo> prestamoDAO;
-    private final List<Prestamo> prestamos;
+    public static final int CAPACIDAD_CACHE = 10_000;
+
+    // Llamadas y latencia de las operaciones públicas
+    private static final Metricas.Operacion REGISTRAR = Metricas.operacion("PrestamoService.registrar");
+    private static final Metricas.Operacion DEVOLVER = Metricas.operacion("PrestamoService.devolver");
+    private static final Metricas.Operacion DEVOLVER_VARIOS = Metricas.operacion("PrestamoService.devolverVarios");
+    private static final Metricas.Operacion READ = Metricas.operacion("PrestamoService.readById");
+    private static final Metricas.Operacion LISTAR = Metricas.operacion("PrestamoService.listarPrestamos");
+
+    private final PrestamoDAO prestamoDAO;
+    // Conjunto de trabajo acotado, el historial de préstamos se consulta en la DB bajo demanda
+    private final CacheLRU<Integer, Prestamo> prestamosPorId;
     private final UsuarioService usuarioService;
     private final EjemplarService ejemplarService;
+    // Fecha de los préstamos, devoluciones y penalizaciones, un reloj simulado en las pruebas de carga
+    private final Clock reloj;
 
-    public PrestamoService(GenericDAO<Prestamo> prestamoDAO, UsuarioService usuarioService, EjemplarService ejemplarService) {
+    public PrestamoService(PrestamoDAO prestamoDAO, UsuarioService usuarioService, EjemplarService ejemplarService) {
+        this(prestamoDAO, usuarioService, ejemplarService, CAPACIDAD_CACHE, Clock.systemDefaultZone());
+    }
+
+    public PrestamoService(PrestamoDAO prestamoDAO, UsuarioService usuarioService, EjemplarService ejemplarService, int capacidadCache) {
+        this(prestamoDAO, usuarioService, ejemplarService, capacidadCache, Clock.systemDefaultZone());
+    }
+
+    public PrestamoService(PrestamoDAO prestamoDAO, UsuarioService usuarioService, EjemplarService ejemplarService, int capacidadCache, Clock reloj) {
         this.prestamoDAO = prestamoDAO;
-        this.prestamos = prestamoDAO.readAll();
+        this.reloj = reloj;
+        this.prestamosPorId = new CacheLRU<>(capacidadCache);
         this.usuarioService = usuarioService;
         this.ejemplarService = ejemplarService;
     }
 
-    public void registrar(int idUsuario, int idEjemplar) {
+    public Prestamo registrar(int idUsuario, int idEjemplar) {
+        return REGISTRAR.medir(() -> registrarPrestamo(idUsuario, idEjemplar));
+    }
+
+    private Prestamo registrarPrestamo(int idUsuario, int idEjemplar) {
         // Validación de campos requeridos
         if (Validator.isNotFilled(idUsuario, idEjemplar))
             throw new IllegalArgumentException("Todos los campos son obligatorios");
 
-        // Validación de existencia de usuario y ejemplar
-        Usuario usuarioRef = usuarioService.read(idUsuario);
-        Ejemplar ejemplarRef = ejemplarService.read(idEjemplar);
-        if (usuarioRef == null)
-            throw new IllegalArgumentException("No hay un usuario registrado con este ID");
-        if (ejemplarRef == null)
-            throw new IllegalArgumentException("No hay un ejemplar registrado con este ID");
+        // Las validaciones se hacen dentro de la transacción, con los datos actuales de la DB,
+        // para que dos puestos no puedan prestar a la vez el mismo ejemplar
+        LocalDate hoy = LocalDate.now(reloj);
+        Prestamo prestamoCreado;
+        try {
+            prestamoCreado = prestamoDAO.registrarPrestamo(idUsuario, idEjemplar, hoy, (usuario, ejemplar, prestamosActivos) -> {
+                // Validación de existencia de usuario y ejemplar
+                if (usuario == null)
+                    throw new IllegalArgumentException("No hay un usuario registrado con este ID");
+                if (ejemplar == null)
+                    throw new IllegalArgumentException("No hay un ejemplar registrado con este ID");
 
-        // Verificación de penalización del usuario
-        if (Validator.isUsuarioPenalizado(usuarioRef))
-            throw new IllegalArgumentException("El usuario está penalizado hasta: " + usuarioRef.getPenalizacionHasta().toString());
+                // Verificación de penalización del usuario
+                if (Validator.isUsuarioPenalizado(usuario, hoy))
+                    throw new IllegalArgumentException("El usuario está penalizado hasta: " + usuario.getPenalizacionHasta().toString());
 
-        // Validación de límite de préstamos activos del usuario
-        if (Validator.hasUsuarioLimitePrestamosActivos(usuarioRef))
-            throw new IllegalArgumentException("El usuario ha superado su límite de préstamos activos");
+                // Validación de límite de préstamos activos del usuario
+                if (Validator.hasUsuarioLimitePrestamosActivos(prestamosActivos))
+                    throw new IllegalArgumentException("El usuario ha superado su límite de préstamos activos");
 
-        // Validación de disponibilidad del ejemplar
-        if (!Validator.isEjemplarDisponible(ejemplarRef))
-            throw new IllegalArgumentException("Este ejemplar no está disponible");
+                // Validación de disponibilidad del ejemplar
+                if (!Validator.isEjemplarDisponible(ejemplar))
+                    throw new IllegalArgumentException("Este ejemplar no está disponible");
+            });
+        } catch (OptimisticLockException e) {
+            throw new IllegalArgumentException("Hay demasiadas operaciones simultáneas sobre este usuario o ejemplar, vuelva a intentarlo");
+        }
 
-        // Registrar prestamo
-        Prestamo prestamoToCreate = new Prestamo(usuarioRef, ejemplarRef, LocalDate.now(), null);
-        prestamoDAO.create(prestamoToCreate); // Crear en DB
-        prestamos.add(prestamoToCreate); // Añadir a la lista de memoria
+        // Reflejar el préstamo en las instancias en memoria y en el stock
+        prestamoCreado.setUsuario(usuarioService.sincronizar(prestamoCreado.getUsuario()));
+        prestamoCreado.setEjemplar(ejemplarService.sincronizar(prestamoCreado.getEjemplar(), EstadoEjemplar.DISPONIBLE));
+        prestamosPorId.put(prestamoCreado.getId(), prestamoCreado); // Añadir a la caché
 
-        // Actualizar estado del ejemplar
-        ejemplarRef.setEstado("Prestado");
-        ejemplarService.update(ejemplarRef); // Actualizar en DB
+        // Retornar préstamo registrado
+        return prestamoCreado;
     }
 
-    public void devolver(int idPrestamo) {
+    // El resultado indica si se ha devuelto fuera de plazo y se ha penalizado al usuario
+    public ResultadoDevolucion devolver(int idPrestamo) {
+        return DEVOLVER.medir(() -> devolverPrestamo(idPrestamo));
+    }
+
+    private ResultadoDevolucion devolverPrestamo(int idPrestamo) {
         if (Validator.isNotFilled(idPrestamo))
             throw new IllegalArgumentException("Todos los campos son obligatorios");
 
-        // Validación de existencia del préstamo
-        Prestamo prestamoToDevolver = readById(idPrestamo);
-        if (prestamoToDevolver == null)
-            throw new IllegalArgumentException("No hay un préstamo registrado con este ID");
-
-        // Validación de que el préstamo no tenga fecha de devolución
-        if (!Validator.isPrestamoDevuelto(prestamoToDevolver))
-            throw new IllegalArgumentException("Este préstamo ya ha sido devuelto");
-
-        // Actualizar estado del ejemplar
-        Ejemplar ejemplarRef = prestamoToDevolver.getEjemplar();
-        ejemplarRef.setEstado("Disponible");
-        ejemplarService.update(ejemplarRef); // Actualizar en DB
-
-        // Actualizar fecha de devolución en el préstamo
-        prestamoToDevolver.setFechaDevolucion(LocalDate.now());
-        update(prestamoToDevolver); // Actualizar en DB
-
-        // Verificar que se haya devuelto en plazo
-        if (!Validator.isPrestamoDevueltoEnPlazo(prestamoToDevolver)) {
-            Usuario usuarioRef = prestamoToDevolver.getUsuario(); // Obtiene el usuario vinculado al préstamo
-            usuarioService.penalizarUsuario(usuarioRef); // Penaliza al usuario
-            throw new RuntimeException("El préstamo no ha sido devuelto en plazo. Se ha penalizado al usuario");
+        // Préstamo, ejemplar y penalización se actualizan en una sola transacción
+        boolean[] fueraDePlazo = {false};
+        Prestamo prestamoDevuelto;
+        try {
+            prestamoDevuelto = prestamoDAO.devolverPrestamo(idPrestamo, LocalDate.now(reloj), prestamo -> {
+                // Validación de existencia del préstamo
+                if (prestamo == null)
+                    throw new IllegalArgumentException("No hay un préstamo registrado con este ID");
+
+                // Validación de que el préstamo no tenga fecha de devolución
+                if (!Validator.isPrestamoDevuelto(prestamo))
+                    throw new IllegalArgumentException("Este préstamo ya ha sido devuelto");
+            }, prestamo -> {
+                // Verificar que se haya devuelto en plazo, si no, se penaliza al usuario
+                fueraDePlazo[0] = !Validator.isPrestamoDevueltoEnPlazo(prestamo);
+                if (fueraDePlazo[0])
+                    UsuarioService.penalizarDevolucionFueraDePlazo(prestamo);
+            });
+        } catch (OptimisticLockException e) {
+            throw new IllegalArgumentException("Hay demasiadas operaciones simultáneas sobre este préstamo, vuelva a intentarlo");
         }
+
+        reflejarDevolucion(prestamoDevuelto);
+        return ResultadoDevolucion.devuelto(idPrestamo, idPrestamo, fueraDePlazo[0]);
+    }
+
+    // Devuelve en una sola transacción todos los préstamos indicados por su ID o por el de su ejemplar
+    // (por ejemplo, el lote de libros de una clase). Cada ID se valida por separado: los que no se pueden
+    // devolver se informan en su resultado sin impedir la devolución del resto.
+    // Los usuarios que devuelven fuera de plazo se penalizan igual que al devolver de uno en uno.
+    public List<ResultadoDevolucion> devolverVarios(List<Integer> ids, TipoIdDevolucion tipo) {
+        return DEVOLVER_VARIOS.medir(() -> devolverPrestamos(ids, tipo));
+    }
+
+    private List<ResultadoDevolucion> devolverPrestamos(List<Integer> ids, TipoIdDevolucion tipo) {
+        if (ids == null || ids.isEmpty() || tipo == null)
+            throw new IllegalArgumentException("Todos los campos son obligatorios");
+
+        // Los IDs repetidos o vacíos se rechazan antes de ir a la DB
+        Map<Integer, ResultadoDevolucion> rechazados = new HashMap<>();
+        Set<Integer> vistos = new HashSet<>();
+        List<Integer> aDevolver = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Integer id = ids.get(i);
+            if (Validator.isNotFilled(id))
+                rechazados.put(i, ResultadoDevolucion.rechazado(id == null ? 0 : id, "ID no válido"));
+            else if (!vistos.add(id))
+                rechazados.put(i, ResultadoDevolucion.rechazado(id, "ID repetido en la lista"));
+            else
+                aDevolver.add(id);
+        }
+
+        List<PrestamoDAO.Devolucion> devoluciones;
+        try {
+            devoluciones = prestamoDAO.devolverVarios(aDevolver, tipo, LocalDate.now(reloj), prestamo -> {
+                // Validación de existencia del préstamo
+                if (prestamo == null)
+                    return tipo == TipoIdDevolucion.EJEMPLAR ? "El ejemplar no tiene ningún préstamo activo" : "No hay un préstamo registrado con este ID";
+
+                // Validación de que el préstamo no tenga fecha de devolución
+                if (!Validator.isPrestamoDevuelto(prestamo))
+                    return "Este préstamo ya ha sido devuelto";
+                return null;
+            }, prestamo -> {
+                // Verificar que se haya devuelto en plazo, si no, se penaliza al usuario
+                if (!Validator.isPrestamoDevueltoEnPlazo(prestamo))
+                    UsuarioService.penalizarDevolucionFueraDePlazo(prestamo);
+            });
+        } catch (OptimisticLockException e) {
+            throw new IllegalArgumentException("Hay demasiadas operaciones simultáneas sobre estos préstamos, vuelva a intentarlo");
+        }
+
+        // Resultados en el orden de la lista recibida
+        List<ResultadoDevolucion> resultados = new ArrayList<>(ids.size());
+        Iterator<PrestamoDAO.Devolucion> iterador = devoluciones.iterator();
+        for (int i = 0; i < ids.size(); i++) {
+            ResultadoDevolucion rechazado = rechazados.get(i);
+            if (rechazado != null) {
+                resultados.add(rechazado);
+                continue;
+            }
+            PrestamoDAO.Devolucion devolucion = iterador.next();
+            if (devolucion.motivo() != null) {
+                resultados.add(ResultadoDevolucion.rechazado(devolucion.id(), devolucion.motivo()));
+                continue;
+            }
+            Prestamo prestamoDevuelto = devolucion.prestamo();
+            reflejarDevolucion(prestamoDevuelto);
+            resultados.add(ResultadoDevolucion.devuelto(devolucion.id(), prestamoDevuelto.getId(),
+                    !Validator.isPrestamoDevueltoEnPlazo(prestamoDevuelto)));
+        }
+        return resultados;
+    }
+
+    // Refleja la devolución en las instancias en memoria y en el stock
+    private void reflejarDevolucion(Prestamo prestamoDevuelto) {
+        prestamoDevuelto.setUsuario(usuarioService.sincronizar(prestamoDevuelto.getUsuario()));
+        prestamoDevuelto.setEjemplar(ejemplarService.sincronizar(prestamoDevuelto.getEjemplar(), EstadoEjemplar.PRESTADO));
+        Prestamo enMemoria = prestamosPorId.putIfAbsent(prestamoDevuelto.getId(), prestamoDevuelto);
+        if (enMemoria != prestamoDevuelto)
+            enMemoria.setFechaDevolucion(prestamoDevuelto.getFechaDevolucion());
     }
 
     // Retorna préstamo con el ID introducido
     public Prestamo readById(int idPrestamo) {
-        return prestamos.stream()
-                .filter(prestamo -> prestamo.getId().equals(idPrestamo))
-                .findFirst()
-                .orElse(null);
+        return READ.medir(() -> {
+            Prestamo prestamo = prestamosPorId.get(idPrestamo);
+            if (prestamo == null) {
+                prestamo = prestamoDAO.read(idPrestamo); // Cargar de la DB si no está en memoria
+                if (prestamo != null)
+                    prestamo = prestamosPorId.putIfAbsent(idPrestamo, prestamo);
+            }
+            return prestamo;
+        });
     }
 
     public void update(Prestamo prestamo) {
@@ -100,7 +234,32 @@ public class PrestamoService {
     }
 
 
-    public List<Prestamo> getPrestamos() {
-        return prestamos;
+    // Página del listado de préstamos que sigue a "ultimo" (null para la primera)
+    public List<PrestamoResumen> listarPrestamos(PrestamoResumen ultimo, OrdenPrestamos orden, FiltroPrestamos filtro, int tamanoPagina) {
+        return LISTAR.medir(() -> prestamoDAO.listarDesde(ultimo, orden, filtro, tamanoPagina));
+    }
+
+    // Número de préstamos activos del usuario con una consulta de recuento,
+    // sin inicializar su colección de préstamos
+    public int getNumeroPrestamosActivos(int idUsuario) {
+        return prestamoDAO.contarActivos(idUsuario);
+    }
+
+    // Últimos préstamos del usuario, sin inicializar su colección de préstamos
+    public List<PrestamoResumen> listarPrestamosUsuario(int idUsuario, int limite) {
+        return prestamoDAO.listarUltimosDeUsuario(idUsuario, limite);
+    }
+
+    // Recorre todos los préstamos que cumplen el filtro página a página,
+    // la memoria usada no depende del tamaño del historial
+    public void recorrerPrestamos(OrdenPrestamos orden, FiltroPrestamos filtro, int tamanoPagina, Consumer<PrestamoResumen> accion) {
+        List<PrestamoResumen> pagina;
+        PrestamoResumen ultimo = null;
+        do {
+            pagina = listarPrestamos(ultimo, orden, filtro, tamanoPagina);
+            pagina.forEach(accion);
+            if (!pagina.isEmpty())
+                ultimo = pagina.get(pagina.size() - 1);
+        } while (pagina.size() == tamanoPagina);
     }
 }
@@ -0,0 +1,130 @@
+package servicio;
+
+import dto.ResultadoRevision;
+import repositorio.PrestamoDAO;
+import repositorio.UsuarioDAO;
+import util.Validator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Revisión periódica de los préstamos no devueltos fuera de plazo. Hasta ahora solo se penalizaba
+// al devolver, así que un préstamo que nunca se devolvía nunca se penalizaba.
+// Los préstamos vencidos se leen en un solo recorrido del índice (fechaDevolucion, fechaInicio, usuario_id)
+// y sus usuarios se penalizan con un UPDATE masivo por tramo, sin cargar las entidades.
+public class RevisionPrestamosVencidos implements AutoCloseable {
+    public static final int TAMANO_TRAMO = 5_000;
+
+    private final PrestamoDAO prestamoDAO;
+    private final UsuarioDAO usuarioDAO;
+    private final UsuarioService usuarioService;
+    private final Clock reloj;
+    private final int tamanoTramo;
+    // Un único hilo demonio, no impide que la aplicación termine
+    private final ScheduledExecutorService planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "revision-prestamos-vencidos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    // Resultado y error de la última revisión programada, para consultarlos desde fuera del hilo
+    private volatile ResultadoRevision ultimaRevision;
+    private volatile RuntimeException ultimoError;
+
+    public RevisionPrestamosVencidos(PrestamoDAO prestamoDAO, UsuarioDAO usuarioDAO, UsuarioService usuarioService) {
+        this(prestamoDAO, usuarioDAO, usuarioService, Clock.systemDefaultZone(), TAMANO_TRAMO);
+    }
+
+    public RevisionPrestamosVencidos(PrestamoDAO prestamoDAO, UsuarioDAO usuarioDAO, UsuarioService usuarioService, Clock reloj, int tamanoTramo) {
+        if (tamanoTramo < 1)
+            throw new IllegalArgumentException("El tamaño de tramo debe ser mayor que 0");
+        this.prestamoDAO = prestamoDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.usuarioService = usuarioService;
+        this.reloj = reloj;
+        this.tamanoTramo = tamanoTramo;
+    }
+
+    // Programa la revisión todos los días a la hora indicada
+    public void programarDiariamente(LocalTime hora) {
+        LocalDateTime ahora = LocalDateTime.now(reloj);
+        LocalDateTime siguiente = ahora.toLocalDate().atTime(hora);
+        if (!siguiente.isAfter(ahora))
+            siguiente = siguiente.plusDays(1);
+
+        planificador.scheduleAtFixedRate(this::revisarProgramada,
+                Duration.between(ahora, siguiente).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    // Si una ejecución lanzara la excepción, el planificador cancelaría las siguientes.
+    // Se guarda con su traza para mostrarla después; un éxito posterior la borra.
+    void revisarProgramada() {
+        try {
+            ultimaRevision = revisar();
+            ultimoError = null;
+        } catch (RuntimeException e) {
+            ultimoError = e;
+        }
+    }
+
+    // Null si todavía no ha terminado bien ninguna revisión programada
+    public ResultadoRevision getUltimaRevision() {
+        return ultimaRevision;
+    }
+
+    // Null si la última revisión programada terminó bien
+    public RuntimeException getUltimoError() {
+        return ultimoError;
+    }
+
+    // Penaliza a los usuarios con préstamos sin devolver fuera de plazo hasta DIAS_PENALIZACION días
+    // después de hoy. Es idempotente: repetirla el mismo día no cambia nada, y cada día que el
+    // préstamo sigue sin devolverse la penalización se prolonga un día más.
+    public ResultadoRevision revisar() {
+        LocalDate hoy = LocalDate.now(reloj);
+        LocalDate iniciadosHasta = hoy.minusDays(Validator.PLAZO_DEVOLUCION_DIAS);
+        LocalDate penalizadosHasta = hoy.plusDays(UsuarioService.DIAS_PENALIZACION);
+
+        // Se marcan antes de penalizar: al devolverlos, la penalización de la devolución no se suma
+        // a la de la revisión (ver UsuarioService.penalizarDevolucionFueraDePlazo)
+        prestamoDAO.marcarPenalizadosEnRevision(iniciadosHasta);
+
+        // Un único recorrido de los préstamos vencidos; sus usuarios se penalizan por tramos
+        // mientras se lee (en otra conexión), sin acumular todos los IDs en memoria
+        long[] prestamosVencidos = {0};
+        int[] usuariosPenalizados = {0};
+        Set<Integer> tramo = new HashSet<>();
+        prestamoDAO.recorrerUsuariosConActivosIniciadosHasta(iniciadosHasta, idUsuario -> {
+            prestamosVencidos[0]++;
+            tramo.add(idUsuario);
+            if (tramo.size() == tamanoTramo) {
+                usuariosPenalizados[0] += penalizar(tramo, penalizadosHasta);
+                tramo.clear();
+            }
+        });
+        if (!tramo.isEmpty())
+            usuariosPenalizados[0] += penalizar(tramo, penalizadosHasta);
+
+        return new ResultadoRevision(hoy, prestamosVencidos[0], usuariosPenalizados[0]);
+    }
+
+    // Un usuario con varios préstamos vencidos puede aparecer en más de un tramo,
+    // la actualización no vuelve a modificarlo
+    private int penalizar(Set<Integer> usuarios, LocalDate penalizadosHasta) {
+        int penalizados = usuarioDAO.penalizarHasta(usuarios, penalizadosHasta);
+        usuarioService.recargar(usuarios); // Actualizar los usuarios en memoria
+        return penalizados;
+    }
+
+    @Override
+    public void close() {
+        planificador.shutdownNow();
+    }
+}
@@ -1,22 +1,67 @@
 package servicio;
 
+import jakarta.persistence.OptimisticLockException;
+import modelo.Prestamo;
+import modelo.TipoUsuario;
 import modelo.Usuario;
-import repositorio.GenericDAO;
+import repositorio.RestriccionUnicaException;
+import repositorio.UsuarioDAO;
+import util.CacheLRU;
+import util.Metricas;
 import util.Validator;
 
+import java.time.Clock;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UsuarioService {
-    private final GenericDAO<Usuario> usuarioDAO;
-    private final List<Usuario> usuarios;
+    public static final int CAPACIDAD_CACHE = 10_000;
+    // Días que se añaden a la penalización de un usuario por cada devolución fuera de plazo
+    public static final int DIAS_PENALIZACION = 15;
+
+    // Llamadas y latencia de las operaciones públicas
+    private static final Metricas.Operacion REGISTRAR = Metricas.operacion("UsuarioService.registrar");
+    private static final Metricas.Operacion INICIAR_SESION = Metricas.operacion("UsuarioService.iniciarSesion");
+    private static final Metricas.Operacion READ = Metricas.operacion("UsuarioService.read");
+
+    private final UsuarioDAO usuarioDAO;
+    // Conjunto de trabajo acotado por ID, los usuarios se cargan de la DB bajo demanda. Los índices
+    // por email (sin distinguir mayúsculas) y DNI solo guardan el ID de los usuarios que están en él
+    // y pierden la entrada al descartarse el usuario, así nunca devuelven una instancia que ya no
+    // recibe los cambios de sincronizar ni de recargar.
+    private final CacheLRU<Integer, Usuario> usuariosPorId;
+    private final Map<String, Integer> idsPorEmail = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idsPorDni = new ConcurrentHashMap<>();
+    // Fecha de hoy para las penalizaciones, un reloj simulado en las pruebas de carga
+    private final Clock reloj;
+
+    public UsuarioService(UsuarioDAO usuarioDAO) {
+        this(usuarioDAO, CAPACIDAD_CACHE, Clock.systemDefaultZone());
+    }
+
+    public UsuarioService(UsuarioDAO usuarioDAO, int capacidadCache) {
+        this(usuarioDAO, capacidadCache, Clock.systemDefaultZone());
+    }
 
-    public UsuarioService(GenericDAO<Usuario> usuarioDAO) {
+    public UsuarioService(UsuarioDAO usuarioDAO, int capacidadCache, Clock reloj) {
         this.usuarioDAO = usuarioDAO;
-        this.usuarios = usuarioDAO.readAll();
+        this.reloj = reloj;
+        this.usuariosPorId = new CacheLRU<>(capacidadCache, (id, usuario) -> {
+            idsPorEmail.remove(normalizarEmail(usuario.getEmail()), id);
+            idsPorDni.remove(usuario.getDni(), id);
+        });
     }
 
     public Usuario registrar(String dni, String nombre, String email, String password, String tipo) {
+        return REGISTRAR.medir(() -> registrarUsuario(dni, nombre, email, password, tipo));
+    }
+
+    private Usuario registrarUsuario(String dni, String nombre, String email, String password, String tipo) {
 
         // Validación de campos requeridos
         if (Validator.isNotFilled(dni, nombre, email, password))
@@ -45,15 +90,28 @@ public class UsuarioService {
         if (!Validator.isTipoValid(tipo))
             throw new IllegalArgumentException("Tipo de usuario no válido");
 
-        Usuario usuarioToCreate = new Usuario(dni, nombre, email, password, tipo);
-        usuarioDAO.create(usuarioToCreate); // Crear en DB
-        usuarios.add(usuarioToCreate); // Añadir a la lista de memoria
+        Usuario usuarioToCreate = new Usuario(dni, nombre, email, password, TipoUsuario.deTexto(tipo));
+        try {
+            usuarioDAO.create(usuarioToCreate); // Crear en DB
+        } catch (RestriccionUnicaException e) {
+            // Otro registro con el mismo email o DNI se ha adelantado tras la comprobación
+            if (e.esRestriccion(Usuario.UK_EMAIL))
+                throw new IllegalArgumentException("Este email ya está en uso");
+            if (e.esRestriccion(Usuario.UK_DNI))
+                throw new IllegalArgumentException("Este DNI ya está en uso");
+            throw e;
+        }
+        indexar(usuarioToCreate); // Añadir a la caché
 
         // Retornar usuario con sesión activa
         return usuarioToCreate;
     }
 
     public Usuario iniciarSesion(String email, String password) {
+        return INICIAR_SESION.medir(() -> comprobarCredenciales(email, password));
+    }
+
+    private Usuario comprobarCredenciales(String email, String password) {
 
         // Validación de campos requeridos
         if (Validator.isNotFilled(email, password))
@@ -67,42 +125,119 @@ public class UsuarioService {
             throw new IllegalArgumentException("La contraseña es incorrecta");
 
         // Devolver usuario con sesión activa
-        return usuarios.stream()
-               .filter(u -> u.getEmail().equalsIgnoreCase(email))
-               .findFirst()
-               .orElse(null);
+        return usuarioToLog;
     }
 
     // Retorna usuario por ID
     public Usuario read(int idUsuario) {
-        return usuarios.stream()
-                .filter(u -> u.getId().equals(idUsuario))
-                .findFirst()
-                .orElse(null);
+        return READ.medir(() -> {
+            Usuario usuario = usuariosPorId.get(idUsuario);
+            if (usuario == null)
+                usuario = indexar(usuarioDAO.read(idUsuario)); // Cargar de la DB si no está en memoria
+            return usuario;
+        });
     }
 
     // Retorna usuario por email
     private Usuario readByEmail(String email) {
-        return usuarios.stream()
-               .filter(u -> u.getEmail().equalsIgnoreCase(email))
-               .findFirst()
-               .orElse(null);
+        Usuario usuario = enMemoria(idsPorEmail.get(normalizarEmail(email)));
+        if (usuario == null)
+            usuario = indexar(usuarioDAO.findBy("email", email));
+        return usuario;
     }
 
     // Retorna usuario por DNI
     private Usuario readByDni(String dni) {
-        return usuarios.stream()
-               .filter(u -> u.getDni().equals(dni))
-               .findFirst()
-               .orElse(null);
+        Usuario usuario = enMemoria(idsPorDni.get(dni));
+        if (usuario == null)
+            usuario = indexar(usuarioDAO.findBy("dni", dni));
+        return usuario;
+    }
+
+    // Añade el usuario a la caché y devuelve la instancia que queda en memoria,
+    // así un mismo usuario leído por ID, email o DNI es siempre el mismo objeto
+    private Usuario indexar(Usuario usuario) {
+        if (usuario == null)
+            return null;
+
+        Usuario enMemoria = usuariosPorId.putIfAbsent(usuario.getId(), usuario);
+        idsPorEmail.put(normalizarEmail(enMemoria.getEmail()), enMemoria.getId());
+        idsPorDni.put(enMemoria.getDni(), enMemoria.getId());
+        return enMemoria;
+    }
+
+    // Usuario en memoria con el ID de un índice, null si no hay ID o se ha descartado entretanto
+    private Usuario enMemoria(Integer idUsuario) {
+        return idUsuario == null ? null : usuariosPorId.get(idUsuario);
     }
 
-    public void penalizarUsuario(Usuario usuario) {
+    // Clave del índice de emails, sin distinguir mayúsculas
+    private static String normalizarEmail(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    // Refleja en memoria un usuario guardado en otra transacción (por ejemplo, al registrar un préstamo)
+    // y devuelve la instancia en memoria, que queda con su versión y penalización actuales
+    public Usuario sincronizar(Usuario actualizado) {
+        Usuario enMemoria = usuariosPorId.get(actualizado.getId());
+        if (enMemoria == null)
+            return indexar(actualizado);
+        // Las transacciones pueden terminar en cualquier orden, solo se copia una versión más reciente
+        synchronized (enMemoria) {
+            if (actualizado.getVersion() > enMemoria.getVersion()) {
+                enMemoria.setVersion(actualizado.getVersion());
+                enMemoria.setPenalizacionHasta(actualizado.getPenalizacionHasta());
+            }
+        }
+        return enMemoria;
+    }
+
+    // Vuelve a leer de la DB los usuarios de la colección que están en memoria,
+    // después de modificarlos con una actualización masiva que no pasa por la caché
+    public void recargar(Collection<Integer> ids) {
+        List<Integer> enMemoria = new ArrayList<>();
+        for (Integer id : ids)
+            if (usuariosPorId.contains(id))
+                enMemoria.add(id);
+        if (!enMemoria.isEmpty())
+            usuarioDAO.readAll(enMemoria).forEach(this::sincronizar);
+    }
+
+    // La penalización se aplica al usuario leído en la transacción y después se refleja en memoria,
+    // como en los préstamos y devoluciones: la instancia en caché la comparten todas las peticiones
+    // y solo se modifica en sincronizar. Devuelve la instancia en memoria.
+    public Usuario penalizarUsuario(int idUsuario) {
+        LocalDate hoy = LocalDate.now(reloj);
+        Usuario penalizado;
+        try {
+            penalizado = usuarioDAO.penalizar(idUsuario, usuario -> aplicarPenalizacion(usuario, hoy));
+        } catch (OptimisticLockException e) {
+            throw new IllegalArgumentException("Hay demasiadas operaciones simultáneas sobre este usuario, vuelva a intentarlo");
+        }
+        if (penalizado == null)
+            throw new IllegalArgumentException("No hay un usuario registrado con este ID");
+        return sincronizar(penalizado);
+    }
+
+    // Penalización por un préstamo devuelto fuera de plazo: DIAS_PENALIZACION días más. Si la revisión
+    // de préstamos vencidos ya ha penalizado por él, el usuario ya está penalizado hasta DIAS_PENALIZACION
+    // días después de la última revisión y no se suman otros tantos: solo se prolonga, si hace falta,
+    // hasta DIAS_PENALIZACION días después de la devolución, como si la revisión se hiciera ese día.
+    static void penalizarDevolucionFueraDePlazo(Prestamo prestamo) {
+        Usuario usuario = prestamo.getUsuario();
+        if (!prestamo.isPenalizadoEnRevision()) {
+            aplicarPenalizacion(usuario, prestamo.getFechaDevolucion());
+            return;
+        }
+        LocalDate hasta = prestamo.getFechaDevolucion().plusDays(DIAS_PENALIZACION);
+        if (usuario.getPenalizacionHasta() == null || usuario.getPenalizacionHasta().isBefore(hasta))
+            usuario.setPenalizacionHasta(hasta);
+    }
+
+    static void aplicarPenalizacion(Usuario usuario, LocalDate hoy) {
         if (usuario.getPenalizacionHasta() == null)
-            usuario.setPenalizacionHasta(LocalDate.now().plusDays(15));  // Inicia la penalización con 15 días
+            usuario.setPenalizacionHasta(hoy.plusDays(DIAS_PENALIZACION));  // Inicia la penalización con 15 días
         else
-            usuario.setPenalizacionHasta(usuario.getPenalizacionHasta().plusDays(15));  // Añade 15 días a la penalización
-
-        usuarioDAO.update(usuario); // Actualizar en DB
+            usuario.setPenalizacionHasta(usuario.getPenalizacionHasta().plusDays(DIAS_PENALIZACION));  // Añade 15 días a la penalización
     }
 }
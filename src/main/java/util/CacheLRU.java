@@ -0,0 +1,61 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// Conjunto de trabajo acotado: al superar la capacidad se descarta
+// la entrada usada hace más tiempo (LRU). Es seguro entre hilos.
+public class CacheLRU<K, V> {
+    private final Map<K, V> entradas;
+
+    public CacheLRU(int capacidad) {
+        this(capacidad, (clave, valor) -> {
+        });
+    }
+
+    // alDescartar recibe cada entrada que sale por falta de capacidad (no las que se quitan con remove),
+    // con el bloqueo de la caché tomado: no debe volver a usar la caché
+    public CacheLRU(int capacidad, BiConsumer<K, V> alDescartar) {
+        if (capacidad < 1)
+            throw new IllegalArgumentException("La capacidad debe ser mayor que 0");
+
+        // accessOrder = true: cada get mueve la entrada al final de la lista
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= capacidad)
+                    return false;
+                alDescartar.accept(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public synchronized V get(K clave) {
+        return entradas.get(clave);
+    }
+
+    // No cambia el orden de uso de la entrada
+    public synchronized boolean contains(K clave) {
+        return entradas.containsKey(clave);
+    }
+
+    public synchronized void put(K clave, V valor) {
+        entradas.put(clave, valor);
+    }
+
+    // Guarda el valor si la clave no estaba y devuelve el que queda en la caché
+    public synchronized V putIfAbsent(K clave, V valor) {
+        V actual = entradas.putIfAbsent(clave, valor);
+        return actual != null ? actual : valor;
+    }
+
+    public synchronized void remove(K clave) {
+        entradas.remove(clave);
+    }
+
+    public synchronized int size() {
+        return entradas.size();
+    }
+}
@@ -0,0 +1,22 @@
+package util;
+
+// Resultado de una validación, con un código compacto (1 byte) para las validaciones masivas
+public enum ErrorValidacion {
+    OK,
+    VACIO,
+    LONGITUD,
+    CARACTER_NO_VALIDO,
+    DIGITO_CONTROL,
+    FORMATO,
+    DOMINIO_NO_PERMITIDO;
+
+    private static final ErrorValidacion[] VALORES = values();
+
+    public byte getCodigo() {
+        return (byte) ordinal();
+    }
+
+    public static ErrorValidacion deCodigo(byte codigo) {
+        return VALORES[codigo];
+    }
+}
@@ -0,0 +1,12 @@
+package util;
+
+// Instantánea de las métricas de una operación, tiempos en microsegundos
+public record EstadisticasOperacion(String nombre, long llamadas, long errores, double mediaMicros,
+                                    long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+
+    @Override
+    public String toString() {
+        return String.format("%s: llamadas=%d, errores=%d, media=%.1f µs, p50=%d µs, p99=%d µs, p99.9=%d µs, máx=%d µs",
+                nombre, llamadas, errores, mediaMicros, p50Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
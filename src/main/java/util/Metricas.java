@@ -0,0 +1,191 @@
+package util;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Llamadas, errores y latencia de las operaciones de la capa de servicio.
+// Cada operación acumula sus tiempos en un histograma de LongAdder (sin bloqueos ni asignaciones
+// al registrar), así se puede dejar activo en producción. Los percentiles son aproximados:
+// cada tramo cubre un 12,5% de su valor, y se informa el límite superior del tramo.
+// Como PoolMetricsTracker, el registro es estático e indexado por nombre, y cada operación
+// se publica en JMX como biblioteca:type=Operacion,name=<nombre>.
+public final class Metricas {
+    // Tramos de 1 µs hasta 8 µs y después 8 tramos por cada potencia de 2, hasta unas 2^40 µs
+    private static final int SUBTRAMOS = 8;
+    private static final int BITS_SUBTRAMO = 3;
+    private static final int MAX_EXPONENTE = 40;
+    private static final int TRAMOS = SUBTRAMOS + (MAX_EXPONENTE - BITS_SUBTRAMO + 1) * SUBTRAMOS;
+
+    private static final Map<String, Operacion> operaciones = new ConcurrentSkipListMap<>();
+
+    private Metricas() {
+    }
+
+    // Operación con el nombre indicado, se crea (y publica en JMX) la primera vez
+    public static Operacion operacion(String nombre) {
+        return operaciones.computeIfAbsent(nombre, Operacion::new);
+    }
+
+    // Estadísticas de todas las operaciones registradas, por nombre
+    public static List<EstadisticasOperacion> getEstadisticas() {
+        List<EstadisticasOperacion> estadisticas = new ArrayList<>(operaciones.size());
+        for (Operacion operacion : operaciones.values())
+            estadisticas.add(operacion.getEstadisticas());
+        return estadisticas;
+    }
+
+    public static final class Operacion implements OperacionMXBean {
+        private final String nombre;
+        private final LongAdder llamadas = new LongAdder();
+        private final LongAdder errores = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+        private final LongAdder[] tramos = new LongAdder[TRAMOS];
+
+        private Operacion(String nombre) {
+            this.nombre = nombre;
+            for (int i = 0; i < tramos.length; i++)
+                tramos[i] = new LongAdder();
+            publicar();
+        }
+
+        // Ejecuta y mide la operación. Una excepción cuenta como error y se relanza.
+        public <T> T medir(Supplier<T> operacion) {
+            long inicio = System.nanoTime();
+            boolean correcta = false;
+            try {
+                T resultado = operacion.get();
+                correcta = true;
+                return resultado;
+            } finally {
+                registrar(System.nanoTime() - inicio, correcta);
+            }
+        }
+
+        public void medir(Runnable operacion) {
+            medir(() -> {
+                operacion.run();
+                return null;
+            });
+        }
+
+        public void registrar(long nanos, boolean correcta) {
+            llamadas.increment();
+            if (!correcta)
+                errores.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            tramos[tramo(nanos / 1000)].increment();
+        }
+
+        public EstadisticasOperacion getEstadisticas() {
+            long[] conteos = new long[tramos.length];
+            long total = 0;
+            for (int i = 0; i < conteos.length; i++) {
+                conteos[i] = tramos[i].sum();
+                total += conteos[i];
+            }
+            long maxMicros = maxNanos.get() / 1000;
+            double mediaMicros = total == 0 ? 0 : totalNanos.sum() / 1000.0 / total;
+            return new EstadisticasOperacion(nombre, total, errores.sum(), mediaMicros,
+                    percentil(conteos, total, 0.50, maxMicros),
+                    percentil(conteos, total, 0.99, maxMicros),
+                    percentil(conteos, total, 0.999, maxMicros),
+                    maxMicros);
+        }
+
+        private void publicar() {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                        new ObjectName("biblioteca:type=Operacion,name=" + ObjectName.quote(nombre)));
+            } catch (InstanceAlreadyExistsException e) {
+                // Ya publicada por otra carga de la clase, las métricas siguen disponibles por consola
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public String getNombre() {
+            return nombre;
+        }
+
+        @Override
+        public long getLlamadas() {
+            return llamadas.sum();
+        }
+
+        @Override
+        public long getErrores() {
+            return errores.sum();
+        }
+
+        @Override
+        public double getMediaMicros() {
+            return getEstadisticas().mediaMicros();
+        }
+
+        @Override
+        public long getP50Micros() {
+            return getEstadisticas().p50Micros();
+        }
+
+        @Override
+        public long getP99Micros() {
+            return getEstadisticas().p99Micros();
+        }
+
+        @Override
+        public long getP999Micros() {
+            return getEstadisticas().p999Micros();
+        }
+
+        @Override
+        public long getMaxMicros() {
+            return maxNanos.get() / 1000;
+        }
+    }
+
+    // Tramo del histograma de un valor en microsegundos
+    static int tramo(long micros) {
+        if (micros < SUBTRAMOS)
+            return (int) Math.max(micros, 0);
+        int exponente = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponente > MAX_EXPONENTE)
+            return TRAMOS - 1;
+        int subtramo = (int) (micros >>> (exponente - BITS_SUBTRAMO)) & (SUBTRAMOS - 1);
+        return SUBTRAMOS + (exponente - BITS_SUBTRAMO) * SUBTRAMOS + subtramo;
+    }
+
+    // Límite superior (excluido) en microsegundos de los valores de un tramo
+    static long limiteSuperior(int tramo) {
+        if (tramo < SUBTRAMOS)
+            return tramo + 1;
+        int desplazamiento = (tramo - SUBTRAMOS) / SUBTRAMOS;
+        int subtramo = (tramo - SUBTRAMOS) % SUBTRAMOS;
+        return (long) (SUBTRAMOS + subtramo + 1) << desplazamiento;
+    }
+
+    // Valor por debajo del cual queda la fracción p de las llamadas, como mucho el máximo observado
+    private static long percentil(long[] conteos, long total, double p, long maxMicros) {
+        if (total == 0)
+            return 0;
+        long objetivo = (long) Math.ceil(p * total);
+        long acumulado = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            acumulado += conteos[i];
+            if (acumulado >= objetivo)
+                return Math.min(limiteSuperior(i), maxMicros);
+        }
+        return maxMicros;
+    }
+}
@@ -0,0 +1,20 @@
+package util;
+
+// Métricas de una operación publicadas en JMX, tiempos en microsegundos
+public interface OperacionMXBean {
+    String getNombre();
+
+    long getLlamadas();
+
+    long getErrores();
+
+    double getMediaMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+}
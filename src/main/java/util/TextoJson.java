@@ -0,0 +1,29 @@
+package util;
+
+import java.io.IOException;
+
+// Cadenas JSON, compartido por la API HTTP y la exportación de préstamos en JSON Lines
+public class TextoJson {
+
+    // Cadena JSON escapando comillas, barras y caracteres de control
+    public static void escribir(Appendable destino, String texto) throws IOException {
+        destino.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"' -> destino.append("\\\"");
+                case '\\' -> destino.append("\\\\");
+                case '\n' -> destino.append("\\n");
+                case '\r' -> destino.append("\\r");
+                case '\t' -> destino.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        destino.append(String.format("\\u%04x", (int) c));
+                    else
+                        destino.append(c);
+                }
+            }
+        }
+        destino.append('"');
+    }
+}
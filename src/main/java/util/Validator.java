@@ -1,60 +1,102 @@
 package util;
 
 import modelo.Ejemplar;
+import modelo.EstadoEjemplar;
 import modelo.Prestamo;
+import modelo.TipoUsuario;
 import modelo.Usuario;
 
 import java.time.LocalDate;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public class Validator {
+    // Letras de control del DNI/NIE, indexadas por el resto de dividir el número entre 23
+    private static final String LETRAS_CONTROL = "TRWAGMYFPDXBNJZSQVHLCKE";
+
+    private static final String[] DOMINIOS_PERMITIDOS = {
+            "gmail.com", "outlook.com", "yahoo.com", "hotmail.com", "icloud.com"
+    };
+
+    private static final int LIMITE_PRESTAMOS_ACTIVOS = 3;
+    // Días que puede durar un préstamo sin que su devolución se considere fuera de plazo
+    public static final int PLAZO_DEVOLUCION_DIAS = 15;
+
+    // A partir de este número de registros validateAll reparte el trabajo entre varios hilos
+    static final int UMBRAL_PARALELO = 10_000;
 
     // Validación campos requeridos
-    public static boolean isNotFilled(Object ... objects) {
-        return Arrays.stream(objects).anyMatch(o -> o == null || o.toString().isBlank());
+    // Las variantes de aridad fija evitan crear el array de varargs en los casos habituales
+    public static boolean isNotFilled(String s) {
+        return s == null || s.isBlank();
     }
 
-    // Validación Documento Identidad
-    public static boolean isDocumentValid (String di) {
-        // Verificar que el DI tiene 9 caracteres
-        if (di.length() != 9)
-            return false;
+    public static boolean isNotFilled(String s1, String s2) {
+        return isNotFilled(s1) || isNotFilled(s2);
+    }
 
-        return isControlDigitCorrect(di);
+    public static boolean isNotFilled(String s1, String s2, String s3) {
+        return isNotFilled(s1) || isNotFilled(s2) || isNotFilled(s3);
     }
 
-    private static boolean isControlDigitCorrect(String di) {
-        List<Character> letras = List.of(
-                'T', 'R', 'W', 'A', 'G', 'M', 'Y', 'F', 'P', 'D', 'X', 'B',
-                'N', 'J', 'Z', 'S', 'Q', 'V', 'H', 'L', 'C', 'K', 'E'
-        );
+    public static boolean isNotFilled(String s1, String s2, String s3, String s4) {
+        return isNotFilled(s1, s2) || isNotFilled(s3, s4);
+    }
 
-        int diDigits;
+    public static boolean isNotFilled(Object ... objects) {
+        for (Object o : objects)
+            if (o == null || o.toString().isBlank())
+                return true;
+        return false;
+    }
 
-        // Verificar si es extranjero o español y almacenar los dígitos
-        char letraInicio = di.charAt(0);
+    // Validación masiva: devuelve el código de ErrorValidacion de cada registro,
+    // en el mismo orden que los valores recibidos
+    // Ejemplo: Validator.validateAll(isbns, Validator::checkIsbn13)
+    public static byte[] validateAll(List<String> valores, Function<String, ErrorValidacion> regla) {
+        byte[] codigos = new byte[valores.size()];
+        IntStream indices = IntStream.range(0, codigos.length);
+        if (codigos.length >= UMBRAL_PARALELO)
+            indices = indices.parallel();
+        indices.forEach(i -> codigos[i] = regla.apply(valores.get(i)).getCodigo());
+        return codigos;
+    }
 
-        // Extranjero
-        if (Character.isLetter(letraInicio)) {
-            diDigits = Integer.parseInt(getNumeroEquivalenteNIF(letraInicio) + di.substring(1,8));
-        }
-        // Español
-        else
-            diDigits = Integer.parseInt(di.substring(0, 8));
+    // Validación Documento Identidad
+    public static boolean isDocumentValid (String di) {
+        return checkDocument(di) == ErrorValidacion.OK;
+    }
 
-        // Calcular el resto de la división del número por 23
-        int resto = diDigits % 23;
+    // DNI (8 dígitos y letra) o NIE (X, Y o Z, 7 dígitos y letra)
+    public static ErrorValidacion checkDocument(String di) {
+        if (isNotFilled(di))
+            return ErrorValidacion.VACIO;
+        // Verificar que el DI tiene 9 caracteres
+        if (di.length() != 9)
+            return ErrorValidacion.LONGITUD;
 
-        // Obtener la letra introducida
-        char letraIntroducida = di.charAt(di.length()-1);
+        // Extranjero: la letra inicial equivale a un dígito
+        char letraInicio = di.charAt(0);
+        int diDigits;
+        if (letraInicio >= '0' && letraInicio <= '9')
+            diDigits = letraInicio - '0';
+        else if (letraInicio == 'X' || letraInicio == 'Y' || letraInicio == 'Z')
+            diDigits = getNumeroEquivalenteNIF(letraInicio);
+        else
+            return ErrorValidacion.CARACTER_NO_VALIDO;
 
-        // Obtener la letra esperada de la lista
-        char letraEsperada = letras.get(resto);
+        for (int i = 1; i < 8; i++) {
+            char c = di.charAt(i);
+            if (c < '0' || c > '9')
+                return ErrorValidacion.CARACTER_NO_VALIDO;
+            diDigits = diDigits * 10 + (c - '0');
+        }
 
         // Comparar la letra introducida con la letra esperada
-        return letraIntroducida == letraEsperada;
+        return di.charAt(8) == LETRAS_CONTROL.charAt(diDigits % 23)
+                ? ErrorValidacion.OK
+                : ErrorValidacion.DIGITO_CONTROL;
     }
 
     public static int getNumeroEquivalenteNIF(char letraInicio) {
@@ -68,28 +110,64 @@ public class Validator {
 
     // Validación Correo Electrónico
     public static boolean isEmailValid(String email) {
-        // Validación básica del correo electrónico
-        String regex = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$";
-        if (!email.matches(regex))
-            return false;
-
-        // Verifica si el dominio es válido
-        Set<String> allowedDomains = Set.of(
-                "gmail.com", "outlook.com", "yahoo.com", "hotmail.com", "icloud.com"
-        );
-        String domain = email.substring(email.indexOf('@') + 1);
-
-        // Retorna true si el dominio está en el Set de dominios permitidos,
-        // false en caso contrario
-        return allowedDomains.contains(domain);
+        return checkEmail(email) == ErrorValidacion.OK;
+    }
+
+    // Equivale a la expresión ^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\.[a-zA-Z]{2,6}$
+    // más la comprobación de que el dominio está entre los permitidos
+    public static ErrorValidacion checkEmail(String email) {
+        if (isNotFilled(email))
+            return ErrorValidacion.VACIO;
+
+        // Parte local: uno o más caracteres permitidos hasta la arroba
+        int arroba = 0;
+        while (arroba < email.length() && isCaracterLocalEmail(email.charAt(arroba)))
+            arroba++;
+        if (arroba == 0 || arroba == email.length() || email.charAt(arroba) != '@')
+            return ErrorValidacion.FORMATO;
+
+        // Dominio: letras, dígitos, puntos o guiones, terminado en un punto y de 2 a 6 letras
+        int ultimoPunto = -1;
+        for (int i = arroba + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (c == '.')
+                ultimoPunto = i;
+            else if (!isLetraAscii(c) && !isDigito(c) && c != '-')
+                return ErrorValidacion.FORMATO;
+        }
+        int longitudTld = email.length() - ultimoPunto - 1;
+        if (ultimoPunto <= arroba + 1 || longitudTld < 2 || longitudTld > 6)
+            return ErrorValidacion.FORMATO;
+        for (int i = ultimoPunto + 1; i < email.length(); i++)
+            if (!isLetraAscii(email.charAt(i)))
+                return ErrorValidacion.FORMATO;
+
+        // Verifica si el dominio está entre los permitidos
+        int longitudDominio = email.length() - arroba - 1;
+        for (String dominio : DOMINIOS_PERMITIDOS)
+            if (dominio.length() == longitudDominio && email.regionMatches(arroba + 1, dominio, 0, longitudDominio))
+                return ErrorValidacion.OK;
+        return ErrorValidacion.DOMINIO_NO_PERMITIDO;
+    }
+
+    private static boolean isCaracterLocalEmail(char c) {
+        return isLetraAscii(c) || isDigito(c)
+                || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isLetraAscii(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigito(char c) {
+        return c >= '0' && c <= '9';
     }
 
     // Validación Tipo de Usuario
     public static boolean isTipoValid(String tipo) {
         // Retorna true si el tipo es "administrador" o "normal",
         // false en caso contrario
-        return tipo.equalsIgnoreCase("administrador")
-                || tipo.equalsIgnoreCase("normal");
+        return TipoUsuario.deTexto(tipo) != null;
     }
 
     // Validación Contraseña
@@ -101,54 +179,65 @@ public class Validator {
 
     // Validación ISBN13
     public static boolean isIsbn13Valid(String isbn13) {
-        // Validar entrada
-        String regex = "^[0-9]{13}$";
-        if (!isbn13.matches(regex))
-            return false;
+        return checkIsbn13(isbn13) == ErrorValidacion.OK;
+    }
+
+    public static ErrorValidacion checkIsbn13(String isbn13) {
+        if (isNotFilled(isbn13))
+            return ErrorValidacion.VACIO;
+        if (isbn13.length() != 13)
+            return ErrorValidacion.LONGITUD;
 
         int sum = 0;
         // Recorrer los 12 primeros dígitos del ISBN13
         for (int i = 0; i < 12; i++) {
-            int digit = Character.getNumericValue(isbn13.charAt(i)); // Obtener dígito en cada iteración
-            sum += digit * (i % 2 == 0? 1 : 3); // Sumar dígito multiplicado por 1 o 3 según la posición
+            char c = isbn13.charAt(i);
+            if (!isDigito(c))
+                return ErrorValidacion.CARACTER_NO_VALIDO;
+            sum += (c - '0') * (i % 2 == 0? 1 : 3); // Sumar dígito multiplicado por 1 o 3 según la posición
         }
 
-        int digitoControlEsperado = (10 - (sum % 10)) % 10; // Calcular dígito de control esperado (0-9)
-        int digitoControlEntrada = Character.getNumericValue(isbn13.charAt(12)); // Obtener dígito de control introducido
+        char control = isbn13.charAt(12);
+        if (!isDigito(control))
+            return ErrorValidacion.CARACTER_NO_VALIDO;
 
-        // Retornar true si el dígito de control es correcto,
-        // false en caso contrario
-        return digitoControlEsperado == digitoControlEntrada;
+        int digitoControlEsperado = (10 - (sum % 10)) % 10; // Calcular dígito de control esperado (0-9)
+        return control - '0' == digitoControlEsperado
+                ? ErrorValidacion.OK
+                : ErrorValidacion.DIGITO_CONTROL;
     }
 
     // Validación Estado
     public static boolean isEstadoValid(String estado) {
         // Retorna true si el estado es "Disponible", "Prestado" o "Dañado",
         // false en caso contrario
-        return estado.equalsIgnoreCase("disponible")
-                || estado.equalsIgnoreCase("prestado")
-                || estado.equalsIgnoreCase("dañado");
+        return EstadoEjemplar.deTexto(estado) != null;
     }
 
     // Validación Ejemplar disponible
     public static boolean isEjemplarDisponible(Ejemplar ejemplarRef) {
         // Retorna true si el ejemplar está disponible,
         // false en caso contrario
-        return ejemplarRef.getEstado().equalsIgnoreCase("disponible");
+        return ejemplarRef.getEstado() == EstadoEjemplar.DISPONIBLE;
     }
 
     // Validaciones del Usuario para el préstamo
     public static boolean isUsuarioPenalizado(Usuario usuarioRef) {
+        return isUsuarioPenalizado(usuarioRef, LocalDate.now());
+    }
+
+    // Con la fecha de hoy del reloj de los servicios, que puede no ser el del sistema
+    public static boolean isUsuarioPenalizado(Usuario usuarioRef, LocalDate hoy) {
         // Retorna true si el usuario está penalizado,
         // false en caso contrario
         return usuarioRef.getPenalizacionHasta()!= null
-                && LocalDate.now().isBefore(usuarioRef.getPenalizacionHasta());
+                && hoy.isBefore(usuarioRef.getPenalizacionHasta());
     }
 
-    public static boolean hasUsuarioLimitePrestamosActivos(Usuario usuarioRef) {
-        // Retorna true si el usuario tiene más de 3 préstamos activos,
+    public static boolean hasUsuarioLimitePrestamosActivos(int numeroPrestamosActivos) {
+        // Retorna true si el usuario tiene 3 o más préstamos activos,
         // false en caso contrario
-        return usuarioRef.getNumeroPrestamosActivos() >= 3;
+        return numeroPrestamosActivos >= LIMITE_PRESTAMOS_ACTIVOS;
     }
 
     // Validaciones del préstamo para la devolución
@@ -159,7 +248,7 @@ public class Validator {
     }
 
     public static boolean isPrestamoDevueltoEnPlazo(Prestamo prestamoToDevolver) {
-        LocalDate fechaDevolucionMaxima = prestamoToDevolver.getFechaInicio().plusDays(15); // Fecha máxima de devolución
+        LocalDate fechaDevolucionMaxima = prestamoToDevolver.getFechaInicio().plusDays(PLAZO_DEVOLUCION_DIAS); // Fecha máxima de devolución
         // Retorna true si la fecha de devolución es antes de la fecha máxima,
         // false en caso contrario
         return prestamoToDevolver.getFechaDevolucion().isBefore(fechaDevolucionMaxima);
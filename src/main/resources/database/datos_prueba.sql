@@ -0,0 +1,25 @@
+-- Datos de prueba, sobre el esquema creado por las migraciones
+USE biblioteca;
+
+-- Usuarios
+INSERT INTO Usuario (dni, nombre, email, password, tipo) VALUES 
+('12345678A', 'Juan Pérez', 'juan.perez@gmail.com', 'password123', 'N'),
+('87654321B', 'Ana García', 'ana.garcia@gmail.com', 'password123', 'N'),
+('admin', 'admin', 'admin@gmail.com', 'admin', 'A');
+
+-- Libros
+INSERT INTO Libro (isbn, titulo, autor) VALUES 
+('9781234567890', 'El Quijote', 'Miguel de Cervantes'),
+('9789876543210', 'Cien Años de Soledad', 'Gabriel García Márquez'),
+('9781234567897', '1984', 'George Orwell');
+
+-- Ejemplares
+INSERT INTO Ejemplar (isbn, estado) VALUES 
+('9781234567890', 'D'), ('9781234567890', 'D'), ('9781234567890', 'P'), -- Ejemplares de "El Quijote"
+('9789876543210', 'D'), ('9789876543210', 'X'), -- Ejemplares de "Cien Años de Soledad"
+('9781234567897', 'D'), ('9781234567897', 'D'); -- Ejemplares de "1984"
+
+-- Préstamos
+INSERT INTO Prestamo (usuario_id, ejemplar_id, fechaInicio, fechaDevolucion) VALUES 
+(1, 3, '2024-10-01', NULL), -- Juan Pérez tiene un ejemplar prestado de "El Quijote"
+(2, 4, '2024-11-05', '2024-11-20'); -- Ana García devolvió un ejemplar de "Cien Años de Soledad"
@@ -0,0 +1,3 @@
+-- Préstamos vencidos por los que la revisión diaria ya ha penalizado a su usuario
+-- (servicio.RevisionPrestamosVencidos): al devolverlos no se vuelve a sumar la penalización
+ALTER TABLE Prestamo ADD COLUMN penalizadoEnRevision BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,36 @@
+-- Esquema de la primera versión (bd_biblioteca.sql original), sin datos
+CREATE TABLE Usuario (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    dni VARCHAR(15) NOT NULL,
+    nombre VARCHAR(100) NOT NULL,
+    email VARCHAR(100) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    tipo ENUM('normal', 'administrador') NOT NULL,
+    penalizacionHasta DATE NULL,
+    -- Registro e inicio de sesión buscan por DNI y email, y no admiten repetidos
+    CONSTRAINT uk_usuario_dni UNIQUE (dni),
+    CONSTRAINT uk_usuario_email UNIQUE (email)
+);
+
+CREATE TABLE Libro (
+    isbn VARCHAR(20) PRIMARY KEY,
+    titulo VARCHAR(200) NOT NULL,
+    autor VARCHAR(100) NOT NULL
+);
+
+CREATE TABLE Ejemplar (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    isbn VARCHAR(20) NOT NULL,
+    estado ENUM('Disponible', 'Prestado', 'Dañado') DEFAULT 'Disponible',
+    FOREIGN KEY (isbn) REFERENCES Libro(isbn) ON DELETE CASCADE
+);
+
+CREATE TABLE Prestamo (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    usuario_id INT NOT NULL,
+    ejemplar_id INT NOT NULL,
+    fechaInicio DATE NOT NULL,
+    fechaDevolucion DATE NULL,
+    FOREIGN KEY (usuario_id) REFERENCES Usuario(id) ON DELETE CASCADE,
+    FOREIGN KEY (ejemplar_id) REFERENCES Ejemplar(id) ON DELETE CASCADE
+);
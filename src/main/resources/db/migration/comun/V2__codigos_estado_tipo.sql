@@ -0,0 +1,21 @@
+-- Ejemplar.estado y Usuario.tipo pasan de ENUM de texto a códigos de un carácter
+-- (ver modelo.EstadoEjemplar y modelo.TipoUsuario) y se indexa Ejemplar(isbn, estado)
+
+ALTER TABLE Ejemplar ADD COLUMN estado_codigo CHAR(1) NOT NULL DEFAULT 'D';
+UPDATE Ejemplar SET estado_codigo = CASE estado
+    WHEN 'Disponible' THEN 'D'
+    WHEN 'Prestado' THEN 'P'
+    WHEN 'Dañado' THEN 'X'
+    ELSE 'D'
+END;
+ALTER TABLE Ejemplar DROP COLUMN estado;
+ALTER TABLE Ejemplar CHANGE COLUMN estado_codigo estado CHAR(1) NOT NULL DEFAULT 'D';
+CREATE INDEX idx_ejemplar_isbn_estado ON Ejemplar (isbn, estado);
+
+ALTER TABLE Usuario ADD COLUMN tipo_codigo CHAR(1) NOT NULL DEFAULT 'N';
+UPDATE Usuario SET tipo_codigo = CASE tipo
+    WHEN 'administrador' THEN 'A'
+    ELSE 'N'
+END;
+ALTER TABLE Usuario DROP COLUMN tipo;
+ALTER TABLE Usuario CHANGE COLUMN tipo_codigo tipo CHAR(1) NOT NULL;
@@ -0,0 +1,4 @@
+-- Ejemplar y Usuario pasan a tener control de concurrencia optimista (@Version)
+
+ALTER TABLE Ejemplar ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE Usuario ADD COLUMN version INT NOT NULL DEFAULT 0;
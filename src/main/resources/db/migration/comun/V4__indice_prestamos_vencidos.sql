@@ -0,0 +1,3 @@
+-- Índice para la revisión de préstamos sin devolver fuera de plazo (servicio.RevisionPrestamosVencidos)
+
+CREATE INDEX idx_prestamo_devolucion_inicio ON Prestamo (fechaDevolucion, fechaInicio, usuario_id);
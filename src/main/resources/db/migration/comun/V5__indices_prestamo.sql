@@ -0,0 +1,4 @@
+-- Préstamos activos de un usuario (límite de préstamos y menú del usuario) y préstamo activo de un ejemplar
+-- (devolución masiva por ejemplar). En MariaDB sustituyen a los índices creados para las claves ajenas.
+CREATE INDEX idx_prestamo_usuario_devolucion ON Prestamo (usuario_id, fechaDevolucion);
+CREATE INDEX idx_prestamo_ejemplar ON Prestamo (ejemplar_id);
@@ -0,0 +1,4 @@
+-- Listado de libros con stock por título y por autor: cada página (keyset) continúa por el índice
+-- desde el último libro de la anterior, en lugar de ordenar el catálogo entero en cada página
+CREATE INDEX idx_libro_titulo ON Libro (titulo, isbn);
+CREATE INDEX idx_libro_autor ON Libro (autor, isbn);
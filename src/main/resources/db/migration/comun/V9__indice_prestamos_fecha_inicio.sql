@@ -0,0 +1,3 @@
+-- Listado de préstamos por fecha de inicio (keyset sobre fechaInicio, id): cada página continúa
+-- por el índice desde el último préstamo de la anterior, con cualquier filtro
+CREATE INDEX idx_prestamo_inicio ON Prestamo (fechaInicio, id);
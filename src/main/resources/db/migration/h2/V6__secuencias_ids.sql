@@ -0,0 +1,5 @@
+-- Secuencias para la estrategia de IDs por bloques (META-INF/orm-ids-secuencia.xml)
+-- H2 no tiene SETVAL; las bases de datos embebidas se crean vacías, así que empiezan en 1.
+CREATE SEQUENCE IF NOT EXISTS usuario_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS ejemplar_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS prestamo_seq START WITH 1 INCREMENT BY 50;
@@ -0,0 +1,6 @@
+-- Secuencias para la estrategia de IDs por bloques (META-INF/orm-ids-secuencia.xml)
+-- Requiere MariaDB 10.3 o superior. afterMigrate.sql las sitúa después del mayor ID existente
+-- en cada arranque, para que convivan con los registros creados por AUTO_INCREMENT.
+CREATE SEQUENCE IF NOT EXISTS usuario_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS ejemplar_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS prestamo_seq START WITH 1 INCREMENT BY 50;
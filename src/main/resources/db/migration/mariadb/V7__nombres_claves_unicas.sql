@@ -0,0 +1,8 @@
+-- Las bases de datos creadas con el antiguo bd_biblioteca.sql (ver EntityManagerProvider.versionEsquemaExistente)
+-- tienen las claves únicas de Usuario con el nombre de la columna. Se renombran a las de V1 para que
+-- GenericDAO pueda decir qué restricción se ha incumplido. En las creadas desde V1 no cambia nada.
+ALTER TABLE Usuario
+    DROP INDEX IF EXISTS dni,
+    DROP INDEX IF EXISTS email,
+    ADD CONSTRAINT uk_usuario_dni UNIQUE IF NOT EXISTS (dni),
+    ADD CONSTRAINT uk_usuario_email UNIQUE IF NOT EXISTS (email);
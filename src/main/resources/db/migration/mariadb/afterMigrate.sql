@@ -0,0 +1,11 @@
+-- Se ejecuta tras las migraciones en cada arranque (callback de Flyway), haya o no migraciones pendientes.
+-- Con IDs IDENTITY los registros se crean por AUTO_INCREMENT y las secuencias de V6 se quedan atrás;
+-- si después se activa EntityManagerProvider.SEQUENCE_ID_PROPERTIES, darían IDs ya usados.
+-- Cada secuencia se sitúa en el mayor ID de su tabla; SETVAL ignora los valores menores que el actual,
+-- así que no retrocede si las secuencias ya iban por delante. SETVAL solo admite constantes.
+SET @maximo = (SELECT COALESCE(MAX(id), 0) FROM Usuario);
+EXECUTE IMMEDIATE CONCAT('SELECT SETVAL(usuario_seq, ', @maximo, ')');
+SET @maximo = (SELECT COALESCE(MAX(id), 0) FROM Ejemplar);
+EXECUTE IMMEDIATE CONCAT('SELECT SETVAL(ejemplar_seq, ', @maximo, ')');
+SET @maximo = (SELECT COALESCE(MAX(id), 0) FROM Prestamo);
+EXECUTE IMMEDIATE CONCAT('SELECT SETVAL(prestamo_seq, ', @maximo, ')');
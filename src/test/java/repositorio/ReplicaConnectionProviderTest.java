@@ -0,0 +1,81 @@
+package repositorio;
+
+import dto.FiltroPrestamos;
+import dto.OrdenLibros;
+import dto.OrdenPrestamos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import servicio.BibliotecaEmbebida;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Reparto de lecturas entre el primario y la réplica con dos bases de datos H2 en memoria.
+// La réplica no recibe las escrituras, así que lo que se lee indica de qué base de datos viene:
+// los listados salen de la réplica, lo que debe ver lo recién escrito del primario, y con la réplica
+// detenida los listados vuelven al primario sin volver a intentarlo con la réplica en cada lectura.
+class ReplicaConnectionProviderTest {
+    private static final int TAMANO_CATALOGO = 100;
+    private static final int LECTURAS_SIN_REPLICA = 3;
+
+    private BibliotecaEmbebida b;
+
+    // Un libro y un préstamo nuevos, escritos en el primario
+    @BeforeEach
+    void crearBiblioteca() {
+        b = BibliotecaEmbebida.conReplica(TAMANO_CATALOGO);
+        b.libroService.registrar(BibliotecaEmbebida.isbn13(TAMANO_CATALOGO), "Libro nuevo", "Autor nuevo");
+        b.prestamoService.registrar(1, 1);
+    }
+
+    @AfterEach
+    void cerrarBiblioteca() {
+        b.close();
+    }
+
+    @Test
+    void loRecienEscritoSeLeeDelPrimario() {
+        assertEquals(1, b.prestamoService.getNumeroPrestamosActivos(1),
+                "El recuento de préstamos activos del usuario no ve el préstamo recién registrado");
+    }
+
+    // La réplica aún no tiene las escrituras
+    @Test
+    void losListadosSeLeenDeLaReplica() {
+        assertEquals(TAMANO_CATALOGO, librosListados(), "El listado de libros con stock no se ha leído de la réplica");
+        assertTrue(b.prestamoService.listarPrestamos(null, OrdenPrestamos.ID, FiltroPrestamos.TODOS, 10).isEmpty(),
+                "El listado de préstamos no se ha leído de la réplica");
+        assertEquals(TAMANO_CATALOGO, b.libroDAO.readPage(0, TAMANO_CATALOGO + 1).size(),
+                "La página de libros no se ha leído de la réplica");
+
+        ReplicaStatistics estadisticas = b.emProvider.getReplicaStatistics();
+        assertTrue(estadisticas.disponible() && estadisticas.conexionesReplica() > 0 && estadisticas.conexionesDesviadas() == 0,
+                "Estadísticas de la réplica inesperadas: " + estadisticas);
+    }
+
+    // Tras la primera lectura sin réplica, que espera el timeout, las demás van directamente al primario:
+    // no se vuelve a pedir conexión a la réplica y cada lectura desvía exactamente una conexión
+    @Test
+    void conLaReplicaDetenidaLosListadosSeLeenDelPrimario() {
+        b.detenerReplica();
+        assertEquals(TAMANO_CATALOGO + 1, librosListados(), "Con la réplica detenida el listado no se ha leído del primario");
+        ReplicaStatistics trasDesvio = b.emProvider.getReplicaStatistics();
+        assertFalse(trasDesvio.disponible(), "La réplica detenida sigue marcada como disponible");
+
+        for (int lectura = 1; lectura <= LECTURAS_SIN_REPLICA; lectura++) {
+            assertEquals(1, b.prestamoService.listarPrestamos(null, OrdenPrestamos.ID, FiltroPrestamos.TODOS, 10).size(),
+                    "Con la réplica detenida el listado de préstamos no se ha leído del primario");
+            ReplicaStatistics estadisticas = b.emProvider.getReplicaStatistics();
+            assertEquals(trasDesvio.conexionesReplica(), estadisticas.conexionesReplica(),
+                    "Se ha pedido una conexión a la réplica ya marcada como caída: " + estadisticas);
+            assertEquals(trasDesvio.conexionesDesviadas() + lectura, estadisticas.conexionesDesviadas(),
+                    "Cada lectura debe desviar una conexión al primario: " + estadisticas);
+        }
+    }
+
+    private int librosListados() {
+        return b.libroService.getLibrosConStock(null, OrdenLibros.ISBN, TAMANO_CATALOGO + 1).size();
+    }
+}
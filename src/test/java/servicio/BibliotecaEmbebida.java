@@ -0,0 +1,262 @@
+package servicio;
+
+import jakarta.persistence.EntityManager;
+import modelo.Ejemplar;
+import modelo.EstadoEjemplar;
+import modelo.Libro;
+import modelo.Prestamo;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import repositorio.EjemplarDAO;
+import repositorio.EntityManagerProvider;
+import repositorio.LibroDAO;
+import repositorio.PrestamoDAO;
+import repositorio.ReplicaConnectionProvider;
+import repositorio.UsuarioDAO;
+import util.Validator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Biblioteca completa (DAOs y servicios) sobre una base de datos H2 en memoria, con un catálogo sintético
+// de libros, ejemplares, usuarios y, opcionalmente, historial de préstamos. La usan los tests y los benchmarks.
+public class BibliotecaEmbebida implements AutoCloseable {
+    private static final AtomicInteger contadorBD = new AtomicInteger();
+    private static final int LOTE_CARGA = 10_000;
+    private static final String LETRAS_DNI = "TRWAGMYFPDXBNJZSQVHLCKE";
+    // Un préstamo del historial devuelto con el máximo retraso penaliza hasta este número de días después de su inicio
+    private static final int DIAS_PENALIZACION_MAXIMA = Validator.PLAZO_DEVOLUCION_DIAS + 5 + UsuarioService.DIAS_PENALIZACION;
+
+    public final EntityManagerProvider emProvider;
+    public final UsuarioDAO usuarioDAO;
+    public final LibroDAO libroDAO;
+    public final EjemplarDAO ejemplarDAO;
+    public final PrestamoDAO prestamoDAO;
+
+    // El mismo que usan los servicios, para los que se crean aparte (p. ej. ImportadorCatalogo)
+    public final ContadorDisponibilidad contadorDisponibilidad;
+    public final UsuarioService usuarioService;
+    public final LibroService libroService;
+    public final EjemplarService ejemplarService;
+    public final PrestamoService prestamoService;
+
+    private final boolean borrarAlCerrar;
+    // Base de datos de la réplica de lectura, null si no hay
+    private final String urlReplica;
+
+    // Tamaño del catálogo sintético. Los IDs empiezan en 1 (secuencias pooled-lo): los ejemplares
+    // del libro i son i * ejemplaresPorLibro + 1 .. (i + 1) * ejemplaresPorLibro, y el usuario i es el i + 1.
+    // Cada usuario tiene prestamosPorAnio préstamos ya devueltos en cada uno de los últimos aniosHistorial años.
+    public record Catalogo(int libros, int ejemplaresPorLibro, int usuarios, int aniosHistorial, int prestamosPorAnio) {
+        public Catalogo {
+            if (libros < 1 || ejemplaresPorLibro < 1 || usuarios < 1 || aniosHistorial < 0 || prestamosPorAnio < 0)
+                throw new IllegalArgumentException("Tamaño de catálogo no válido");
+        }
+
+        public int ejemplares() {
+            return libros * ejemplaresPorLibro;
+        }
+    }
+
+    private BibliotecaEmbebida(Map<String, Object> propiedades, boolean borrarAlCerrar, Clock reloj) {
+        this.borrarAlCerrar = borrarAlCerrar;
+        this.urlReplica = (String) propiedades.get(ReplicaConnectionProvider.REPLICA_URL);
+        emProvider = new EntityManagerProvider("biblioteca", propiedades);
+        usuarioDAO = new UsuarioDAO(emProvider);
+        libroDAO = new LibroDAO(emProvider);
+        ejemplarDAO = new EjemplarDAO(emProvider);
+        prestamoDAO = new PrestamoDAO(emProvider);
+
+        contadorDisponibilidad = new ContadorDisponibilidad();
+        usuarioService = new UsuarioService(usuarioDAO, UsuarioService.CAPACIDAD_CACHE, reloj);
+        libroService = new LibroService(libroDAO, contadorDisponibilidad);
+        ejemplarService = new EjemplarService(ejemplarDAO, libroService, contadorDisponibilidad);
+        prestamoService = new PrestamoService(prestamoDAO, usuarioService, ejemplarService, PrestamoService.CAPACIDAD_CACHE, reloj);
+    }
+
+    // Base de datos vacía, con el esquema creado por las migraciones de db/migration
+    public static BibliotecaEmbebida vacia() {
+        return vacia(true);
+    }
+
+    // Con idsSecuencia a false, los IDs IDENTITY de persistence.xml en lugar de las secuencias pooled-lo
+    public static BibliotecaEmbebida vacia(boolean idsSecuencia) {
+        Map<String, Object> propiedades = propiedadesH2("biblioteca" + contadorBD.incrementAndGet());
+        if (!idsSecuencia)
+            propiedades.keySet().removeAll(EntityManagerProvider.SEQUENCE_ID_PROPERTIES.keySet());
+        return new BibliotecaEmbebida(propiedades, true, Clock.systemDefaultZone());
+    }
+
+    // Catálogo de "tamano" libros con un ejemplar disponible cada uno y "tamano" usuarios
+    public static BibliotecaEmbebida conCatalogo(int tamano) {
+        return sintetica(new Catalogo(tamano, 1, tamano, 0, 0), Clock.systemDefaultZone());
+    }
+
+    // Catálogo sintético con los servicios sobre el reloj indicado; el historial termina en la fecha de hoy del reloj.
+    // Los datos se insertan antes de crear los servicios, que así arrancan con el recuento correcto.
+    public static BibliotecaEmbebida sintetica(Catalogo catalogo, Clock reloj) {
+        Map<String, Object> propiedades = propiedadesH2("biblioteca" + contadorBD.incrementAndGet());
+        try (BibliotecaEmbebida carga = new BibliotecaEmbebida(propiedades, false, reloj)) {
+            carga.poblar(catalogo, LocalDate.now(reloj));
+        }
+        return new BibliotecaEmbebida(propiedades, true, reloj);
+    }
+
+    // Catálogo de "tamano" libros y usuarios en dos bases de datos en memoria que empiezan con los mismos datos:
+    // la principal y una réplica de lectura. La réplica no recibe las escrituras posteriores, como una
+    // réplica con retraso, así que lo leído de cada una muestra a qué base de datos ha ido cada lectura.
+    public static BibliotecaEmbebida conReplica(int tamano) {
+        Catalogo catalogo = new Catalogo(tamano, 1, tamano, 0, 0);
+        Clock reloj = Clock.systemDefaultZone();
+        String nombreReplica = "biblioteca" + contadorBD.incrementAndGet();
+        try (BibliotecaEmbebida carga = new BibliotecaEmbebida(propiedadesH2(nombreReplica), false, reloj)) {
+            carga.poblar(catalogo, LocalDate.now(reloj));
+        }
+        Map<String, Object> propiedades = propiedadesH2("biblioteca" + contadorBD.incrementAndGet());
+        try (BibliotecaEmbebida carga = new BibliotecaEmbebida(propiedades, false, reloj)) {
+            carga.poblar(catalogo, LocalDate.now(reloj));
+        }
+        // IFEXISTS: con la réplica detenida no se crea otra vacía al conectar, la conexión falla
+        propiedades.put(ReplicaConnectionProvider.REPLICA_URL, urlH2(nombreReplica) + ";IFEXISTS=TRUE");
+        propiedades.put(ReplicaConnectionProvider.REPLICA_CONNECTION_TIMEOUT, "250");
+        return new BibliotecaEmbebida(propiedades, true, reloj);
+    }
+
+    // Apaga la base de datos de la réplica; las lecturas de réplica pasan a hacerse en el primario
+    public void detenerReplica() {
+        if (urlReplica == null)
+            throw new IllegalStateException("La biblioteca no tiene réplica");
+        try (Connection conexion = DriverManager.getConnection(urlReplica, "sa", "");
+             Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("SHUTDOWN");
+        } catch (SQLException e) {
+            // Ya estaba detenida
+        }
+    }
+
+    private static String urlH2(String nombreBD) {
+        return "jdbc:h2:mem:" + nombreBD + ";DB_CLOSE_DELAY=-1;MODE=MariaDB;IGNORECASE=TRUE";
+    }
+
+    static Map<String, Object> propiedadesH2(String nombreBD) {
+        Map<String, Object> propiedades = new HashMap<>(EntityManagerProvider.SEQUENCE_ID_PROPERTIES);
+        // DB_CLOSE_DELAY=-1 mantiene la base de datos entre EntityManagerFactory hasta que se borra el esquema
+        propiedades.put("hibernate.connection.url", urlH2(nombreBD));
+        propiedades.put("hibernate.connection.driver_class", "org.h2.Driver");
+        propiedades.put("hibernate.connection.username", "sa");
+        propiedades.put("hibernate.connection.password", "");
+        propiedades.put("hibernate.show_sql", "false");
+        propiedades.put("hibernate.hikari.poolName", nombreBD);
+        return propiedades;
+    }
+
+    private void poblar(Catalogo catalogo, LocalDate hoy) {
+        // Solo se conservan todas las entidades si hace falta referenciarlas desde el historial
+        boolean conHistorial = catalogo.aniosHistorial() > 0 && catalogo.prestamosPorAnio() > 0;
+        List<Ejemplar> todosEjemplares = new ArrayList<>(conHistorial ? catalogo.ejemplares() : 0);
+        List<Usuario> todosUsuarios = new ArrayList<>(conHistorial ? catalogo.usuarios() : 0);
+
+        List<Libro> libros = new ArrayList<>(LOTE_CARGA);
+        List<Ejemplar> ejemplares = new ArrayList<>(LOTE_CARGA);
+        List<Usuario> usuarios = new ArrayList<>(LOTE_CARGA);
+        int total = Math.max(catalogo.libros(), catalogo.usuarios());
+        for (int i = 0; i < total; i++) {
+            if (i < catalogo.libros()) {
+                Libro libro = new Libro(isbn13(i), "Título " + i, "Autor " + (i % 1000));
+                libros.add(libro);
+                for (int j = 0; j < catalogo.ejemplaresPorLibro(); j++)
+                    ejemplares.add(new Ejemplar(libro, EstadoEjemplar.DISPONIBLE));
+            }
+            if (i < catalogo.usuarios())
+                usuarios.add(new Usuario(dni(i), "Usuario " + i, email(i), password(i), TipoUsuario.NORMAL));
+
+            if (libros.size() == LOTE_CARGA || usuarios.size() == LOTE_CARGA || i == total - 1) {
+                libroDAO.createAll(libros);
+                ejemplarDAO.createAll(ejemplares);
+                usuarioDAO.createAll(usuarios);
+                if (conHistorial) {
+                    todosEjemplares.addAll(ejemplares);
+                    todosUsuarios.addAll(usuarios);
+                }
+                libros.clear();
+                ejemplares.clear();
+                usuarios.clear();
+            }
+        }
+
+        if (conHistorial)
+            poblarHistorial(catalogo, hoy, todosUsuarios, todosEjemplares);
+    }
+
+    // Préstamos devueltos repartidos por los últimos años, con semilla fija para que las ejecuciones
+    // sean comparables. Algunos se devolvieron fuera de plazo, pero sus penalizaciones ya han vencido.
+    private void poblarHistorial(Catalogo catalogo, LocalDate hoy, List<Usuario> usuarios, List<Ejemplar> ejemplares) {
+        int diasHistorial = catalogo.aniosHistorial() * 365;
+        Random aleatorio = new Random(42);
+        List<Prestamo> prestamos = new ArrayList<>(LOTE_CARGA);
+        for (Usuario usuario : usuarios) {
+            for (int k = 0; k < catalogo.aniosHistorial() * catalogo.prestamosPorAnio(); k++) {
+                // Lo bastante antiguos para que ninguna penalización siga activa hoy
+                LocalDate inicio = hoy.minusDays(DIAS_PENALIZACION_MAXIMA + aleatorio.nextInt(diasHistorial));
+                LocalDate devolucion = inicio.plusDays(1 + aleatorio.nextInt(Validator.PLAZO_DEVOLUCION_DIAS + 5));
+                prestamos.add(new Prestamo(usuario, ejemplares.get(aleatorio.nextInt(ejemplares.size())), inicio, devolucion));
+                if (prestamos.size() == LOTE_CARGA) {
+                    prestamoDAO.createAll(prestamos);
+                    prestamos.clear();
+                }
+            }
+        }
+        if (!prestamos.isEmpty())
+            prestamoDAO.createAll(prestamos);
+    }
+
+    // ISBN13 válido (prefijo 978) a partir de un número de secuencia
+    public static String isbn13(long n) {
+        String sinControl = String.format("978%09d", n);
+        int suma = 0;
+        for (int i = 0; i < 12; i++)
+            suma += (sinControl.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        return sinControl + (10 - (suma % 10)) % 10;
+    }
+
+    // DNI válido a partir de un número de secuencia
+    public static String dni(long n) {
+        return String.format("%08d", n) + LETRAS_DNI.charAt((int) (n % 23));
+    }
+
+    public static String email(long n) {
+        return "usuario" + n + "@gmail.com";
+    }
+
+    public static String password(long n) {
+        return "clave" + n;
+    }
+
+    // Cierra la factoría y, salvo en la instancia de carga, libera las bases de datos en memoria
+    @Override
+    public void close() {
+        if (borrarAlCerrar) {
+            EntityManager em = emProvider.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                em.createNativeQuery("DROP ALL OBJECTS").executeUpdate();
+                em.getTransaction().commit();
+            } finally {
+                em.close();
+            }
+        }
+        emProvider.close();
+        if (urlReplica != null)
+            detenerReplica();
+    }
+}
@@ -0,0 +1,115 @@
+package servicio;
+
+import dto.LibroEncontrado;
+import modelo.Libro;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuscadorLibrosTest {
+    private static final String CIEN_ANOS = BibliotecaEmbebida.isbn13(1);
+
+    @Test
+    void losTerminosSeNormalizanSinTildesNiMayusculas() {
+        assertEquals(List.of("el", "nino", "que", "queria", "volar", "2"),
+                new ArrayList<>(BuscadorLibros.terminos("¿El NIÑO que quería volar? (2)")));
+        assertEquals(List.of("garcia", "marquez"), new ArrayList<>(BuscadorLibros.terminos("García  Márquez, García")));
+        assertTrue(BuscadorLibros.terminos(null).isEmpty());
+    }
+
+    @Test
+    void seEncuentraSinTildesNiMayusculas() {
+        BuscadorLibros buscador = catalogo();
+        assertEquals(List.of(CIEN_ANOS), isbns(buscador.buscar("CIEN AÑOS", 10)));
+        assertEquals(List.of(CIEN_ANOS), isbns(buscador.buscar("cien anos", 10)));
+        assertEquals(List.of(CIEN_ANOS), isbns(buscador.buscar("garcia MARQUEZ soledad", 10)));
+    }
+
+    // Solo la última palabra puede estar a medio escribir, las demás deben estar enteras
+    @Test
+    void laUltimaPalabraPuedeSerUnPrefijo() {
+        BuscadorLibros buscador = catalogo();
+        assertEquals(List.of(CIEN_ANOS), isbns(buscador.buscar("garcía márq", 10)));
+        assertEquals(List.of(CIEN_ANOS), isbns(buscador.buscar("soledad cie", 10)));
+        assertTrue(buscador.buscar("garc marquez", 10).isEmpty());
+        assertTrue(buscador.buscar("garcia marquez soledades", 10).isEmpty());
+    }
+
+    // Un prefijo con muchos más términos que los que se cruzan uno a uno (ma000..ma199 van antes que
+    // marquez) encuentra igualmente todos los libros, con pocos candidatos y con muchos
+    @Test
+    void unPrefijoConMuchosTerminosNoPierdeLibros() {
+        BuscadorLibros buscador = catalogo();
+        List<Libro> libros = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            libros.add(new Libro(BibliotecaEmbebida.isbn13(100 + i), String.format("Libro ma%03d", i), "Autor"));
+        buscador.indexar(libros);
+
+        assertEquals(List.of(CIEN_ANOS), isbns(buscador.buscar("garcia ma", 10)));
+        assertEquals(200, buscador.buscar("libro ma", 1000).size());
+        assertEquals(201, buscador.buscar("ma", 1000).size());
+    }
+
+    // Más puntos primero: entera antes que prefijo y en el título antes que en el autor.
+    // A igualdad, el título más corto y después el indexado antes.
+    @Test
+    void losResultadosSeOrdenanPorRelevancia() {
+        BuscadorLibros buscador = new BuscadorLibros();
+        buscador.indexar(List.of(
+                new Libro(BibliotecaEmbebida.isbn13(1), "Marea alta", "Ana Ruiz"),
+                new Libro(BibliotecaEmbebida.isbn13(2), "El mar y la tierra", "Luis Gómez"),
+                new Libro(BibliotecaEmbebida.isbn13(3), "Otro libro", "Mar Pérez"),
+                new Libro(BibliotecaEmbebida.isbn13(4), "Mar adentro", "Eva Sanz"),
+                new Libro(BibliotecaEmbebida.isbn13(5), "Mar", "Eva Sanz"),
+                new Libro(BibliotecaEmbebida.isbn13(6), "Marea baja", "Ana Ruiz")));
+
+        List<LibroEncontrado> resultados = buscador.buscar("mar", 10);
+        assertEquals(List.of(BibliotecaEmbebida.isbn13(5), BibliotecaEmbebida.isbn13(4), BibliotecaEmbebida.isbn13(2),
+                BibliotecaEmbebida.isbn13(3), BibliotecaEmbebida.isbn13(1), BibliotecaEmbebida.isbn13(6)), isbns(resultados));
+        assertEquals(List.of(6, 6, 6, 3, 2, 2), resultados.stream().map(LibroEncontrado::puntuacion).toList());
+
+        // Los mejores aunque se pidan menos de los que coinciden
+        assertEquals(List.of(BibliotecaEmbebida.isbn13(5), BibliotecaEmbebida.isbn13(4)), isbns(buscador.buscar("mar", 2)));
+    }
+
+    @Test
+    void losLibrosIndexadosDespuesSeEncuentran() {
+        BuscadorLibros buscador = catalogo();
+        assertTrue(buscador.buscar("rayuela", 10).isEmpty());
+
+        String rayuela = BibliotecaEmbebida.isbn13(50);
+        buscador.indexar(new Libro(rayuela, "Rayuela", "Julio Cortázar"));
+        assertEquals(List.of(rayuela), isbns(buscador.buscar("rayuela cortazar", 10)));
+        assertEquals(3, buscador.getLibrosIndexados());
+
+        // Un ISBN ya indexado se ignora, aunque llegue con otro título
+        buscador.indexar(new Libro(rayuela, "Rayuela (edición de bolsillo)", "Julio Cortázar"));
+        assertEquals(3, buscador.getLibrosIndexados());
+        assertEquals(List.of(rayuela), isbns(buscador.buscar("rayuela", 10)));
+        assertTrue(buscador.buscar("bolsillo", 10).isEmpty());
+    }
+
+    @Test
+    void sinPalabrasNiResultadosNoSeBusca() {
+        BuscadorLibros buscador = catalogo();
+        assertTrue(buscador.buscar("", 10).isEmpty());
+        assertTrue(buscador.buscar(" ¿? ", 10).isEmpty());
+        assertTrue(buscador.buscar("soledad", 0).isEmpty());
+    }
+
+    private static BuscadorLibros catalogo() {
+        BuscadorLibros buscador = new BuscadorLibros();
+        buscador.indexar(List.of(
+                new Libro(CIEN_ANOS, "Cien años de soledad", "Gabriel García Márquez"),
+                new Libro(BibliotecaEmbebida.isbn13(2), "La casa de los espíritus", "Isabel Allende")));
+        return buscador;
+    }
+
+    private static List<String> isbns(List<LibroEncontrado> resultados) {
+        return resultados.stream().map(LibroEncontrado::isbn).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package servicio;
+
+import dto.FilaRechazada;
+import dto.LibroEncontrado;
+import dto.LibroStock;
+import dto.OrdenLibros;
+import dto.ResultadoImportacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Importación desde un fichero en memoria sobre un catálogo de CATALOGO libros con un ejemplar cada uno.
+// Con bloques de TAMANO_BLOQUE filas, los repetidos y los rechazos caen en bloques distintos.
+class ImportadorCatalogoTest {
+    private static final int CATALOGO = 5;
+    private static final int TAMANO_BLOQUE = 4;
+    private static final String NUEVO = BibliotecaEmbebida.isbn13(100);
+    private static final String NUEVO_SIN_EJEMPLARES = BibliotecaEmbebida.isbn13(101);
+    private static final String EXISTENTE = BibliotecaEmbebida.isbn13(0);
+
+    private BibliotecaEmbebida b;
+    private ImportadorCatalogo importador;
+    private final List<FilaRechazada> rechazadas = new ArrayList<>();
+    private final List<Long> progreso = new ArrayList<>();
+
+    @BeforeEach
+    void crearBiblioteca() {
+        b = BibliotecaEmbebida.conCatalogo(CATALOGO);
+        importador = new ImportadorCatalogo(b.libroDAO, b.libroService, b.contadorDisponibilidad, TAMANO_BLOQUE);
+    }
+
+    @AfterEach
+    void cerrarBiblioteca() {
+        b.close();
+    }
+
+    @Test
+    void importaLasFilasValidasYRechazaLasDemas() throws IOException {
+        String isbnControlIncorrecto = BibliotecaEmbebida.isbn13(103).substring(0, 12)
+                + (char) ('0' + (BibliotecaEmbebida.isbn13(103).charAt(12) - '0' + 1) % 10);
+        List<String> lineas = List.of(
+                "ISBN;Título;Autor;Ejemplares",
+                NUEVO + ";Nuevo libro;Autora Nueva;2",
+                "",
+                NUEVO_SIN_EJEMPLARES + "; Sin ejemplares ; Autor Solo ;",
+                "solo;tres;campos",
+                BibliotecaEmbebida.isbn13(102) + ";Título;Autor;1;sobra",
+                BibliotecaEmbebida.isbn13(103) + "; ;Autor;1",
+                isbnControlIncorrecto + ";Título;Autor;1",
+                "978000000000;Título;Autor;1",
+                BibliotecaEmbebida.isbn13(104) + ";" + "t".repeat(201) + ";Autor;1",
+                BibliotecaEmbebida.isbn13(105) + ";Título;Autor;dos",
+                BibliotecaEmbebida.isbn13(106) + ";Título;Autor;1001",
+                NUEVO + ";Repetido;Otro autor;5",
+                EXISTENTE + ";Otro título;Otro autor;3");
+
+        ResultadoImportacion resultado = importar(lineas);
+
+        assertEquals(new ResultadoImportacion(lineas.size(), 2, 1, 5, 9), resultado);
+        assertEquals(List.of(
+                rechazada(lineas, 5, "La fila debe tener 4 campos: isbn;titulo;autor;ejemplares"),
+                rechazada(lineas, 6, "La fila debe tener 4 campos: isbn;titulo;autor;ejemplares"),
+                rechazada(lineas, 7, "Todos los campos son obligatorios"),
+                rechazada(lineas, 8, "ISBN13 no válido (DIGITO_CONTROL)"),
+                rechazada(lineas, 9, "ISBN13 no válido (LONGITUD)"),
+                rechazada(lineas, 10, "Título o autor demasiado largo"),
+                rechazada(lineas, 11, "Número de ejemplares no válido"),
+                rechazada(lineas, 12, "Número de ejemplares no válido"),
+                rechazada(lineas, 13, "ISBN repetido en el fichero")), rechazadas);
+        // Tras cada bloque de 4 filas: la cabecera y la línea vacía no cuentan
+        assertEquals(List.of(6L, 10L, 14L), progreso);
+
+        // En la DB y en los contadores de disponibilidad, que se han actualizado sin recalcularse
+        Map<String, LibroStock> catalogo = catalogo();
+        assertEquals(CATALOGO + 2, catalogo.size());
+        assertEquals(new LibroStock(NUEVO, "Nuevo libro", "Autora Nueva", 2, 2), catalogo.get(NUEVO));
+        assertEquals(new LibroStock(NUEVO_SIN_EJEMPLARES, "Sin ejemplares", "Autor Solo", 0, 0), catalogo.get(NUEVO_SIN_EJEMPLARES));
+        // El libro existente conserva su título y solo suma los ejemplares
+        assertEquals(new LibroStock(EXISTENTE, "Título 0", "Autor 0", 4, 4), catalogo.get(EXISTENTE));
+        for (LibroStock libro : catalogo.values())
+            assertEquals(libro.disponibles(), b.libroService.getStockIsbn(libro.isbn()), "Stock de " + libro.isbn());
+        assertEquals(CATALOGO + 5, b.contadorDisponibilidad.getDisponiblesTotal());
+
+        // En el índice de búsqueda, solo los libros creados
+        assertEquals(List.of(NUEVO), isbns(b.libroService.buscar("nuevo libro", 10)));
+        assertEquals(List.of(NUEVO_SIN_EJEMPLARES), isbns(b.libroService.buscar("autor solo", 10)));
+        assertTrue(b.libroService.buscar("repetido", 10).isEmpty());
+        assertTrue(b.libroService.buscar("otro titulo", 10).isEmpty());
+        assertNull(b.libroService.read(BibliotecaEmbebida.isbn13(105)));
+    }
+
+    // Sin cabecera la primera línea es una fila más; sin filas no se guarda nada
+    @Test
+    void sinCabeceraLaPrimeraFilaSeImporta() throws IOException {
+        assertEquals(new ResultadoImportacion(1, 1, 0, 1, 0), importar(List.of(NUEVO + ";Nuevo libro;Autora Nueva;1")));
+        assertEquals(1, b.libroService.getStockIsbn(NUEVO));
+
+        progreso.clear();
+        assertEquals(new ResultadoImportacion(2, 0, 0, 0, 0), importar(List.of("isbn;titulo;autor;ejemplares", " ")));
+        assertTrue(progreso.isEmpty());
+        assertTrue(rechazadas.isEmpty());
+    }
+
+    // Un ISBN ya importado en otra importación es un libro existente, no un repetido en el fichero
+    @Test
+    void reimportarSoloAnadeEjemplares() throws IOException {
+        importar(List.of(NUEVO + ";Nuevo libro;Autora Nueva;1"));
+        assertEquals(new ResultadoImportacion(1, 0, 1, 2, 0), importar(List.of(NUEVO + ";Nuevo libro;Autora Nueva;2")));
+        assertEquals(new LibroStock(NUEVO, "Nuevo libro", "Autora Nueva", 3, 3), catalogo().get(NUEVO));
+        assertEquals(3, b.libroService.getStockIsbn(NUEVO));
+        assertEquals(List.of(NUEVO), isbns(b.libroService.buscar("nuevo libro", 10)));
+    }
+
+    private ResultadoImportacion importar(List<String> lineas) throws IOException {
+        try (BufferedReader lector = new BufferedReader(new StringReader(String.join("\n", lineas)))) {
+            return importador.importar(lector, rechazadas::add, progreso::add);
+        }
+    }
+
+    // Fila rechazada de la línea indicada (la primera es la 1)
+    private static FilaRechazada rechazada(List<String> lineas, int linea, String motivo) {
+        return new FilaRechazada(linea, lineas.get(linea - 1), motivo);
+    }
+
+    // Catálogo completo con el stock calculado en la DB, por ISBN
+    private Map<String, LibroStock> catalogo() {
+        return b.libroDAO.listarConStock(null, OrdenLibros.ISBN, Integer.MAX_VALUE).stream()
+                .collect(Collectors.toMap(LibroStock::isbn, Function.identity()));
+    }
+
+    private static List<String> isbns(List<LibroEncontrado> resultados) {
+        return resultados.stream().map(LibroEncontrado::isbn).toList();
+    }
+}
@@ -0,0 +1,123 @@
+package servicio;
+
+import dto.ResultadoDevolucion;
+import dto.TipoIdDevolucion;
+import modelo.EstadoEjemplar;
+import modelo.Prestamo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.Validator;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Devolución masiva con una lista que mezcla IDs válidos, repetidos, vacíos, desconocidos y de
+// ejemplares sin préstamo activo. El usuario i y el ejemplar i son del índice i - 1.
+// Los préstamos 1 y 2 empiezan el primer día y se devuelven fuera de plazo; el 3 empieza el día
+// de la devolución; el 4 ya está devuelto; el ejemplar 5 nunca se ha prestado.
+class PrestamoServiceTest {
+    private static final LocalDate PRIMER_DIA = LocalDate.of(2026, 1, 1);
+    private static final String SIN_PRESTAMO_ACTIVO = "El ejemplar no tiene ningún préstamo activo";
+
+    private RelojAjustable reloj;
+    private BibliotecaEmbebida b;
+    private int prestamo1, prestamo2, prestamo3, prestamo4;
+
+    @BeforeEach
+    void crearBiblioteca() {
+        reloj = new RelojAjustable(PRIMER_DIA);
+        b = BibliotecaEmbebida.sintetica(new BibliotecaEmbebida.Catalogo(10, 1, 10, 0, 0), reloj);
+        prestamo1 = b.prestamoService.registrar(1, 1).getId();
+        prestamo2 = b.prestamoService.registrar(2, 2).getId();
+        prestamo4 = b.prestamoService.registrar(4, 4).getId();
+        b.prestamoService.devolver(prestamo4);
+        reloj.avanzarDias(Validator.PLAZO_DEVOLUCION_DIAS);
+        prestamo3 = b.prestamoService.registrar(3, 3).getId();
+    }
+
+    @AfterEach
+    void cerrarBiblioteca() {
+        b.close();
+    }
+
+    @Test
+    void devolverVariosPorEjemplar() {
+        List<ResultadoDevolucion> resultados = b.prestamoService.devolverVarios(
+                Arrays.asList(1, null, 1, 999, 5, 4, 3, 2), TipoIdDevolucion.EJEMPLAR);
+
+        assertEquals(List.of(
+                ResultadoDevolucion.devuelto(1, prestamo1, true),
+                ResultadoDevolucion.rechazado(0, "ID no válido"),
+                ResultadoDevolucion.rechazado(1, "ID repetido en la lista"),
+                ResultadoDevolucion.rechazado(999, SIN_PRESTAMO_ACTIVO),
+                ResultadoDevolucion.rechazado(5, SIN_PRESTAMO_ACTIVO),
+                ResultadoDevolucion.rechazado(4, SIN_PRESTAMO_ACTIVO),
+                ResultadoDevolucion.devuelto(3, prestamo3, false),
+                ResultadoDevolucion.devuelto(2, prestamo2, true)), resultados);
+
+        comprobarDevuelto(prestamo1, 1, true);
+        comprobarDevuelto(prestamo2, 2, true);
+        comprobarDevuelto(prestamo3, 3, false);
+        // Los rechazados quedan como estaban
+        assertEquals(PRIMER_DIA, b.prestamoDAO.read(prestamo4).getFechaDevolucion());
+        assertEquals(EstadoEjemplar.DISPONIBLE, b.ejemplarDAO.read(5).getEstado());
+        assertNull(b.usuarioDAO.read(4).getPenalizacionHasta());
+        assertNull(b.usuarioDAO.read(5).getPenalizacionHasta());
+
+        // Repetir la misma lista ya no devuelve nada
+        assertEquals(0, b.prestamoService.devolverVarios(List.of(1, 2, 3), TipoIdDevolucion.EJEMPLAR).stream()
+                .filter(ResultadoDevolucion::devuelto).count());
+    }
+
+    @Test
+    void devolverVariosPorPrestamo() {
+        List<ResultadoDevolucion> resultados = b.prestamoService.devolverVarios(
+                Arrays.asList(prestamo3, prestamo4, null, 12_345, prestamo3, prestamo1), TipoIdDevolucion.PRESTAMO);
+
+        assertEquals(List.of(
+                ResultadoDevolucion.devuelto(prestamo3, prestamo3, false),
+                ResultadoDevolucion.rechazado(prestamo4, "Este préstamo ya ha sido devuelto"),
+                ResultadoDevolucion.rechazado(0, "ID no válido"),
+                ResultadoDevolucion.rechazado(12_345, "No hay un préstamo registrado con este ID"),
+                ResultadoDevolucion.rechazado(prestamo3, "ID repetido en la lista"),
+                ResultadoDevolucion.devuelto(prestamo1, prestamo1, true)), resultados);
+
+        comprobarDevuelto(prestamo1, 1, true);
+        comprobarDevuelto(prestamo3, 3, false);
+        // El préstamo 2 no estaba en la lista
+        assertNull(b.prestamoDAO.read(prestamo2).getFechaDevolucion());
+        assertEquals(EstadoEjemplar.PRESTADO, b.ejemplarDAO.read(2).getEstado());
+        assertNull(b.usuarioDAO.read(2).getPenalizacionHasta());
+    }
+
+    @Test
+    void sinIdsOTipoNoSeDevuelveNada() {
+        assertThrows(IllegalArgumentException.class, () -> b.prestamoService.devolverVarios(List.of(), TipoIdDevolucion.EJEMPLAR));
+        assertThrows(IllegalArgumentException.class, () -> b.prestamoService.devolverVarios(List.of(1), null));
+        assertNull(b.prestamoDAO.read(prestamo1).getFechaDevolucion());
+    }
+
+    // Préstamo devuelto hoy, su ejemplar disponible (en la DB, en memoria y en el stock), sin préstamos
+    // activos del usuario y, si se devolvió fuera de plazo, el usuario penalizado DIAS_PENALIZACION días
+    private void comprobarDevuelto(int idPrestamo, int idUsuario, boolean penalizado) {
+        LocalDate hoy = LocalDate.now(reloj);
+        Prestamo prestamo = b.prestamoDAO.read(idPrestamo);
+        assertEquals(hoy, prestamo.getFechaDevolucion(), "Préstamo " + idPrestamo);
+
+        int idEjemplar = prestamo.getEjemplar().getId();
+        assertEquals(EstadoEjemplar.DISPONIBLE, b.ejemplarDAO.read(idEjemplar).getEstado(), "Ejemplar " + idEjemplar);
+        assertEquals(EstadoEjemplar.DISPONIBLE, b.ejemplarService.read(idEjemplar).getEstado(), "Ejemplar " + idEjemplar + " en memoria");
+        assertEquals(1, b.libroService.getStockLibroByIsbn(BibliotecaEmbebida.isbn13(idEjemplar - 1)), "Stock del ejemplar " + idEjemplar);
+        assertEquals(0, b.prestamoService.getNumeroPrestamosActivos(idUsuario), "Usuario " + idUsuario);
+
+        LocalDate penalizacion = penalizado ? hoy.plusDays(UsuarioService.DIAS_PENALIZACION) : null;
+        assertEquals(penalizacion, b.usuarioDAO.read(idUsuario).getPenalizacionHasta(), "Usuario " + idUsuario);
+        assertEquals(penalizacion, b.usuarioService.read(idUsuario).getPenalizacionHasta(), "Usuario " + idUsuario + " en memoria");
+    }
+}
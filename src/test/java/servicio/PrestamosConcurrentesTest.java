@@ -0,0 +1,128 @@
+package servicio;
+
+import modelo.EstadoEjemplar;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Operaciones simultáneas sobre el mismo ejemplar o usuario desde varios hilos, como varios puestos
+// o clientes HTTP a la vez: ningún ejemplar se presta dos veces ni un usuario supera su límite.
+// Cada test usa sus propios usuarios y ejemplares (el usuario i y el ejemplar i son del índice i - 1).
+class PrestamosConcurrentesTest {
+    private static final int HILOS = 8;
+    private static final int LIMITE_PRESTAMOS_ACTIVOS = 3;
+
+    private static BibliotecaEmbebida b;
+    private static ExecutorService hilos;
+
+    @BeforeAll
+    static void crearBiblioteca() {
+        b = BibliotecaEmbebida.conCatalogo(500);
+        hilos = Executors.newFixedThreadPool(HILOS);
+    }
+
+    @AfterAll
+    static void cerrarBiblioteca() {
+        hilos.shutdownNow();
+        b.close();
+    }
+
+    @Test
+    void elMismoEjemplarSoloSePrestaUnaVez() throws Exception {
+        int idEjemplar = 1;
+        List<Runnable> prestamos = new ArrayList<>();
+        for (int idUsuario = 1; idUsuario <= HILOS; idUsuario++) {
+            int usuario = idUsuario;
+            prestamos.add(() -> b.prestamoService.registrar(usuario, idEjemplar));
+        }
+
+        assertEquals(1, aLaVez(prestamos));
+        int activos = 0;
+        for (int idUsuario = 1; idUsuario <= HILOS; idUsuario++)
+            activos += b.prestamoService.getNumeroPrestamosActivos(idUsuario);
+        assertEquals(1, activos);
+        assertEquals(EstadoEjemplar.PRESTADO, b.ejemplarDAO.read(idEjemplar).getEstado());
+    }
+
+    @Test
+    void unUsuarioNoSuperaSuLimiteDePrestamos() throws Exception {
+        int idUsuario = 10;
+        List<Runnable> prestamos = new ArrayList<>();
+        for (int idEjemplar = 10; idEjemplar < 10 + HILOS; idEjemplar++) {
+            int ejemplar = idEjemplar;
+            prestamos.add(() -> b.prestamoService.registrar(idUsuario, ejemplar));
+        }
+
+        assertEquals(LIMITE_PRESTAMOS_ACTIVOS, aLaVez(prestamos));
+        assertEquals(LIMITE_PRESTAMOS_ACTIVOS, b.prestamoService.getNumeroPrestamosActivos(idUsuario));
+    }
+
+    @Test
+    void unPrestamoSoloSeDevuelveUnaVez() throws Exception {
+        int idPrestamo = b.prestamoService.registrar(20, 20).getId();
+        List<Runnable> devoluciones = new ArrayList<>();
+        for (int i = 0; i < HILOS; i++)
+            devoluciones.add(() -> b.prestamoService.devolver(idPrestamo));
+
+        assertEquals(1, aLaVez(devoluciones));
+        assertEquals(0, b.prestamoService.getNumeroPrestamosActivos(20));
+        assertEquals(EstadoEjemplar.DISPONIBLE, b.ejemplarDAO.read(20).getEstado());
+    }
+
+    // Se presta o se marca como dañado, nunca las dos cosas; la copia en memoria y el stock
+    // coinciden con la DB sea cual sea el orden
+    @Test
+    void noSePrestaUnEjemplarDanadoNiSeDanaUnoPrestado() throws Exception {
+        for (int id = 100; id < 500; id++) {
+            int idEjemplar = id;
+            b.ejemplarService.read(idEjemplar); // El ejemplar ya está en memoria, como tras consultarlo
+            int exitos = aLaVez(List.of(
+                    () -> b.prestamoService.registrar(idEjemplar, idEjemplar),
+                    () -> b.ejemplarService.marcarDanado(idEjemplar)));
+
+            assertEquals(1, exitos, "Ejemplar " + idEjemplar);
+            EstadoEjemplar enDB = b.ejemplarDAO.read(idEjemplar).getEstado();
+            assertNotEquals(EstadoEjemplar.DISPONIBLE, enDB);
+            assertEquals(enDB == EstadoEjemplar.PRESTADO ? 1 : 0, b.prestamoService.getNumeroPrestamosActivos(idEjemplar));
+            assertEquals(enDB, b.ejemplarService.read(idEjemplar).getEstado());
+            assertEquals(0, b.libroService.getStockLibroByIsbn(BibliotecaEmbebida.isbn13(idEjemplar - 1)));
+        }
+    }
+
+    // Lanza las operaciones a la vez y devuelve cuántas terminan bien; las demás deben rechazarse
+    // con IllegalArgumentException, cualquier otro error hace fallar el test
+    private static int aLaVez(List<Runnable> operaciones) throws InterruptedException, ExecutionException {
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (Runnable operacion : operaciones) {
+            resultados.add(hilos.submit(() -> {
+                salida.await();
+                try {
+                    operacion.run();
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }));
+        }
+        salida.countDown();
+
+        int exitos = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get())
+                exitos++;
+        }
+        return exitos;
+    }
+}
@@ -0,0 +1,89 @@
+package servicio;
+
+import dto.OrdenLibros;
+import dto.TipoIdDevolucion;
+import modelo.Ejemplar;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import repositorio.ContadorConsultas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Comprueba que las operaciones de servicio no superan su presupuesto de sentencias SQL,
+// para detectar consultas N+1 antes de que lleguen a producción. Los presupuestos no dependen
+// del tamaño de los datos: una operación que consulta por cada elemento los supera enseguida.
+// Si se supera, el fallo muestra las sentencias y sus lugares.
+// Cada test usa sus propios usuarios y ejemplares, así que no dependen del orden de ejecución.
+class PresupuestoConsultasTest {
+    private static final int TAMANO_CATALOGO = 1000;
+    private static final int TAMANO_LOTE = 50;
+
+    private static BibliotecaEmbebida b;
+
+    @BeforeAll
+    static void crearBiblioteca() {
+        b = BibliotecaEmbebida.conCatalogo(TAMANO_CATALOGO);
+    }
+
+    @AfterAll
+    static void cerrarBiblioteca() {
+        b.close();
+    }
+
+    // Una consulta por email, la segunda vez desde memoria
+    @Test
+    void iniciarSesion() {
+        ContadorConsultas.conPresupuesto("UsuarioService.iniciarSesion", 1,
+                () -> b.usuarioService.iniciarSesion(BibliotecaEmbebida.email(1), BibliotecaEmbebida.password(1)));
+        ContadorConsultas.conPresupuesto("UsuarioService.iniciarSesion (en memoria)", 0,
+                () -> b.usuarioService.iniciarSesion(BibliotecaEmbebida.email(1), BibliotecaEmbebida.password(1)));
+    }
+
+    @Test
+    void consultasDeLibros() {
+        ContadorConsultas.conPresupuesto("LibroService.read", 1, () -> b.libroService.read(BibliotecaEmbebida.isbn13(1)));
+        ContadorConsultas.conPresupuesto("LibroService.getStockLibroByIsbn", 1,
+                () -> b.libroService.getStockLibroByIsbn(BibliotecaEmbebida.isbn13(2)));
+        ContadorConsultas.conPresupuesto("LibroService.getLibrosConStock", 1,
+                () -> b.libroService.getLibrosConStock(null, OrdenLibros.TITULO, 100));
+    }
+
+    // Usuario, ejemplar, recuento de activos, secuencia, insert y dos updates de versión
+    @Test
+    void registrarPrestamo() {
+        ContadorConsultas.conPresupuesto("PrestamoService.registrar", 7, () -> b.prestamoService.registrar(1, 1));
+        ContadorConsultas.conPresupuesto("PrestamoService.getNumeroPrestamosActivos", 1,
+                () -> b.prestamoService.getNumeroPrestamosActivos(1));
+        ContadorConsultas.conPresupuesto("PrestamoService.listarPrestamosUsuario", 1,
+                () -> b.prestamoService.listarPrestamosUsuario(1, 20));
+        ContadorConsultas.conPresupuesto("Usuario.toString", 0, () -> b.usuarioService.read(1).toString());
+    }
+
+    @Test
+    void devolverPrestamo() {
+        int idPrestamo = b.prestamoService.registrar(TAMANO_LOTE + 2, TAMANO_LOTE + 2).getId();
+        ContadorConsultas.conPresupuesto("PrestamoService.devolver", 3, () -> b.prestamoService.devolver(idPrestamo));
+    }
+
+    // Una consulta y un lote de updates por tabla, sea cual sea el tamaño del lote
+    @Test
+    void devolverVarios() {
+        List<Integer> ejemplares = new ArrayList<>(TAMANO_LOTE);
+        for (int id = 2; id < 2 + TAMANO_LOTE; id++) {
+            b.prestamoService.registrar(id, id);
+            ejemplares.add(id);
+        }
+        ContadorConsultas.conPresupuesto("PrestamoService.devolverVarios", 3,
+                () -> b.prestamoService.devolverVarios(ejemplares, TipoIdDevolucion.EJEMPLAR));
+    }
+
+    @Test
+    void registrarEjemplar() {
+        ContadorConsultas.conPresupuesto("EjemplarService.registrar", 3,
+                () -> b.ejemplarService.registrar(BibliotecaEmbebida.isbn13(3), "disponible"));
+        Ejemplar ejemplar = b.ejemplarService.read(3);
+        ContadorConsultas.conPresupuesto("Ejemplar.toString", 0, ejemplar::toString);
+    }
+}
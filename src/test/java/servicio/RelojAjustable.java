@@ -0,0 +1,35 @@
+package servicio;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+// Reloj en UTC que empieza a medianoche del día indicado y solo avanza cuando el test lo pide
+class RelojAjustable extends Clock {
+    private volatile Instant ahora;
+
+    RelojAjustable(LocalDate primerDia) {
+        this.ahora = primerDia.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    void avanzarDias(int dias) {
+        ahora = ahora.plusSeconds(dias * 86_400L);
+    }
+
+    @Override
+    public Instant instant() {
+        return ahora;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zona) {
+        throw new UnsupportedOperationException();
+    }
+}
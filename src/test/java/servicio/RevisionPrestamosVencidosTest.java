@@ -0,0 +1,126 @@
+package servicio;
+
+import dto.ResultadoDevolucion;
+import dto.ResultadoRevision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.Validator;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Revisión de préstamos vencidos con un reloj que solo avanza cuando el test lo pide.
+// El usuario 1 toma prestado el ejemplar 1 el primer día; DIAS_VENCIDO días después ya está fuera de plazo.
+class RevisionPrestamosVencidosTest {
+    private static final LocalDate PRIMER_DIA = LocalDate.of(2026, 1, 1);
+    private static final int DIAS_VENCIDO = Validator.PLAZO_DEVOLUCION_DIAS;
+
+    private RelojAjustable reloj;
+    private BibliotecaEmbebida b;
+    private RevisionPrestamosVencidos revision;
+    private int idPrestamo;
+
+    @BeforeEach
+    void crearBiblioteca() {
+        reloj = new RelojAjustable(PRIMER_DIA);
+        b = BibliotecaEmbebida.sintetica(new BibliotecaEmbebida.Catalogo(10, 1, 10, 0, 0), reloj);
+        revision = new RevisionPrestamosVencidos(b.prestamoDAO, b.usuarioDAO, b.usuarioService, reloj, RevisionPrestamosVencidos.TAMANO_TRAMO);
+        idPrestamo = b.prestamoService.registrar(1, 1).getId();
+    }
+
+    @AfterEach
+    void cerrarBiblioteca() {
+        revision.close();
+        b.close();
+    }
+
+    @Test
+    void unPrestamoEnPlazoNoSePenaliza() {
+        reloj.avanzarDias(DIAS_VENCIDO - 1);
+        assertEquals(new ResultadoRevision(hoy(), 0, 0), revision.revisar());
+        assertNull(penalizacion());
+    }
+
+    @Test
+    void repetirLaRevisionElMismoDiaNoCambiaNada() {
+        reloj.avanzarDias(DIAS_VENCIDO);
+        assertEquals(new ResultadoRevision(hoy(), 1, 1), revision.revisar());
+        assertEquals(hoy().plusDays(UsuarioService.DIAS_PENALIZACION), penalizacion());
+
+        assertEquals(new ResultadoRevision(hoy(), 1, 0), revision.revisar());
+        assertEquals(hoy().plusDays(UsuarioService.DIAS_PENALIZACION), penalizacion());
+    }
+
+    @Test
+    void cadaDiaMasSinDevolverProlongaLaPenalizacionUnDia() {
+        reloj.avanzarDias(DIAS_VENCIDO);
+        revision.revisar();
+        LocalDate primeraPenalizacion = penalizacion();
+
+        for (int dia = 1; dia <= 3; dia++) {
+            reloj.avanzarDias(1);
+            assertEquals(new ResultadoRevision(hoy(), 1, 1), revision.revisar());
+            assertEquals(primeraPenalizacion.plusDays(dia), penalizacion());
+        }
+    }
+
+    // La devolución penaliza, pero solo prolonga la penalización de la revisión hasta
+    // DIAS_PENALIZACION días después de la devolución, como si la revisión se hiciera ese día
+    @Test
+    void devolverUnPrestamoYaPenalizadoNoSumaOtraPenalizacion() {
+        reloj.avanzarDias(DIAS_VENCIDO);
+        revision.revisar();
+        reloj.avanzarDias(2);
+
+        ResultadoDevolucion devolucion = b.prestamoService.devolver(idPrestamo);
+        assertTrue(devolucion.devuelto() && devolucion.penalizado());
+        assertEquals(hoy().plusDays(UsuarioService.DIAS_PENALIZACION), penalizacion());
+
+        // Ya devuelto, las revisiones siguientes no lo cuentan
+        reloj.avanzarDias(1);
+        assertEquals(new ResultadoRevision(hoy(), 0, 0), revision.revisar());
+    }
+
+    // Sin revisión, la devolución fuera de plazo inicia la penalización igual
+    @Test
+    void devolverUnPrestamoNoRevisadoPenalizaDesdeLaDevolucion() {
+        reloj.avanzarDias(DIAS_VENCIDO + 2);
+        assertTrue(b.prestamoService.devolver(idPrestamo).penalizado());
+        assertEquals(hoy().plusDays(UsuarioService.DIAS_PENALIZACION), penalizacion());
+    }
+
+    // La revisión programada guarda su resultado o su excepción con la traza, sin lanzarla
+    @Test
+    void laRevisionProgramadaGuardaElResultadoOElError() {
+        assertNull(revision.getUltimaRevision());
+        reloj.avanzarDias(DIAS_VENCIDO);
+        revision.revisarProgramada();
+        assertEquals(new ResultadoRevision(hoy(), 1, 1), revision.getUltimaRevision());
+        assertNull(revision.getUltimoError());
+
+        // Sin servicio de usuarios falla al recargar los penalizados
+        try (RevisionPrestamosVencidos fallida = new RevisionPrestamosVencidos(b.prestamoDAO, b.usuarioDAO, null, reloj,
+                RevisionPrestamosVencidos.TAMANO_TRAMO)) {
+            fallida.revisarProgramada();
+            assertNull(fallida.getUltimaRevision());
+            assertInstanceOf(NullPointerException.class, fallida.getUltimoError());
+            assertTrue(fallida.getUltimoError().getStackTrace().length > 0);
+        }
+    }
+
+    private LocalDate hoy() {
+        return LocalDate.now(reloj);
+    }
+
+    // Penalización del usuario 1 en la DB, y la misma en memoria
+    private LocalDate penalizacion() {
+        LocalDate enDB = b.usuarioDAO.read(1).getPenalizacionHasta();
+        assertEquals(enDB, b.usuarioService.read(1).getPenalizacionHasta(), "La penalización en memoria no coincide con la DB");
+        return enDB;
+    }
+}
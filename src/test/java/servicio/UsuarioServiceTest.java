@@ -0,0 +1,74 @@
+package servicio;
+
+import modelo.Usuario;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// Caché de usuarios con muy poca capacidad, para que los usuarios se descarten enseguida.
+// El usuario i tiene el ID i + 1.
+class UsuarioServiceTest {
+    private static final int CAPACIDAD = 2;
+
+    private static BibliotecaEmbebida b;
+
+    @BeforeAll
+    static void crearBiblioteca() {
+        b = BibliotecaEmbebida.conCatalogo(20);
+    }
+
+    @AfterAll
+    static void cerrarBiblioteca() {
+        b.close();
+    }
+
+    // Leído por ID, email o DNI es el mismo objeto, también después de descartarse y volver a cargarse
+    @Test
+    void unUsuarioEsSiempreElMismoObjeto() {
+        UsuarioService usuarios = new UsuarioService(b.usuarioDAO, CAPACIDAD);
+        Usuario usuario = usuarios.read(1);
+        assertSame(usuario, usuarios.iniciarSesion(BibliotecaEmbebida.email(0), BibliotecaEmbebida.password(0)));
+
+        usuarios.read(2);
+        usuarios.iniciarSesion(BibliotecaEmbebida.email(0), BibliotecaEmbebida.password(0));
+        usuarios.read(3);
+        Usuario recargado = usuarios.iniciarSesion(BibliotecaEmbebida.email(0), BibliotecaEmbebida.password(0));
+        assertSame(recargado, usuarios.read(1));
+    }
+
+    // Un usuario descartado de la caché no se puede seguir obteniendo por email con una
+    // penalización antigua: la revisión de préstamos vencidos solo recarga los que están en memoria
+    @Test
+    void elInicioDeSesionVeLaPenalizacionDeUnUsuarioDescartado() {
+        UsuarioService usuarios = new UsuarioService(b.usuarioDAO, CAPACIDAD);
+        usuarios.iniciarSesion(BibliotecaEmbebida.email(4), BibliotecaEmbebida.password(4));
+        usuarios.read(6);
+        // Iniciar sesión solo usa el email, así el usuario 5 es el más reciente por email pero no por ID
+        usuarios.iniciarSesion(BibliotecaEmbebida.email(4), BibliotecaEmbebida.password(4));
+        usuarios.read(7);
+
+        LocalDate hasta = LocalDate.now().plusDays(UsuarioService.DIAS_PENALIZACION);
+        b.usuarioDAO.penalizarHasta(List.of(5), hasta);
+        usuarios.recargar(List.of(5));
+
+        assertEquals(hasta, usuarios.iniciarSesion(BibliotecaEmbebida.email(4), BibliotecaEmbebida.password(4)).getPenalizacionHasta());
+    }
+
+    // Una penalización sobre el usuario en memoria se ve al iniciar sesión
+    @Test
+    void elInicioDeSesionVeLaPenalizacionDeUnUsuarioEnMemoria() {
+        UsuarioService usuarios = new UsuarioService(b.usuarioDAO, CAPACIDAD);
+        Usuario usuario = usuarios.iniciarSesion(BibliotecaEmbebida.email(9), BibliotecaEmbebida.password(9));
+        Usuario penalizado = usuarios.penalizarUsuario(10);
+
+        assertSame(usuario, penalizado);
+        assertEquals(penalizado.getPenalizacionHasta(),
+                usuarios.iniciarSesion(BibliotecaEmbebida.email(9), BibliotecaEmbebida.password(9)).getPenalizacionHasta());
+    }
+}
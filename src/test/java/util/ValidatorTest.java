@@ -0,0 +1,179 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Las validaciones sin expresiones regulares aceptan exactamente lo mismo que las de antes,
+// copiadas abajo tal como eran (las que lanzaban excepción con entradas raras cuentan como no válidas).
+// Además de los casos límite se comparan muchas cadenas aleatorias con una semilla fija.
+class ValidatorTest {
+    private static final int ALEATORIAS = 200_000;
+    private static final String REGEX_EMAIL = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$";
+    private static final List<String> DOMINIOS_PERMITIDOS = List.of(
+            "gmail.com", "outlook.com", "yahoo.com", "hotmail.com", "icloud.com");
+
+    @Test
+    void elEmailEquivaleALaExpresionRegular() {
+        for (String email : List.of("", " ", "a@gmail.com", "A.b_c%d+e-f@gmail.com", "a@hotmail.com",
+                "@gmail.com", "a@", "a@gmail", "a@.com", "a@..com", "a.@gmail.com", "a@@gmail.com",
+                "a@gmail.c", "a@gmail.abcdef", "a@gmail.abcdefg", "a@GMAIL.COM", "a@Gmail.com", "a@gmail.co1",
+                "a@gmail.com.", "a@gmail.com\n", "a b@gmail.com", "á@gmail.com", "a@gmäil.com", "a@sub.gmail.com",
+                "a@mi-dominio.es", "a@127.0.0.1", "a@gmail.com "))
+            comprobarEmail(email);
+
+        Random aleatorio = new Random(8);
+        String caracteres = "aZ09._%+-@ ñ";
+        for (int i = 0; i < ALEATORIAS; i++) {
+            // La mitad con un dominio permitido alterado, para llegar también a la comprobación del dominio
+            String local = aleatoria(aleatorio, caracteres, 6);
+            if (i % 2 == 0)
+                comprobarEmail(local + aleatoria(aleatorio, caracteres, 14));
+            else
+                comprobarEmail(local + "@" + alterar(aleatorio, DOMINIOS_PERMITIDOS.get(aleatorio.nextInt(DOMINIOS_PERMITIDOS.size())), caracteres + "Cc"));
+        }
+    }
+
+    @Test
+    void elDocumentoEquivaleALaValidacionAnterior() {
+        for (String di : List.of("", " ", "12345678Z", "12345678z", "1234567Z", "1234567890", "123456789",
+                "X1234567L", "x1234567L", "Y1234567X", "Z1234567R", "A1234567L", "X123456L", "X12345678L",
+                "1234 678Z", "00000000T", "99999999R", "X0000000T", "Z9999999A", "12345678Ñ"))
+            assertEquals(documentoAnterior(di), Validator.isDocumentValid(di), di);
+
+        Random aleatorio = new Random(8);
+        String caracteres = "0123456789XYZxyzTRWAGMFPDLCKEa ";
+        for (int i = 0; i < ALEATORIAS; i++) {
+            // Casi todas de 9 caracteres y la mitad con la letra de control correcta
+            String di = aleatoria(aleatorio, caracteres, i % 10 == 0 ? 11 : 9);
+            if (di.length() == 9 && i % 2 == 0)
+                di = conLetraCorrecta(di);
+            assertEquals(documentoAnterior(di), Validator.isDocumentValid(di), di);
+        }
+    }
+
+    // Diferencia conocida: Integer.parseInt aceptaba un signo delante del número del DNI
+    @Test
+    void elDocumentoYaNoAceptaSigno() {
+        assertTrue(documentoAnterior("+0000000T"));
+        assertFalse(Validator.isDocumentValid("+0000000T"));
+        assertEquals(ErrorValidacion.CARACTER_NO_VALIDO, Validator.checkDocument("+0000000T"));
+    }
+
+    @Test
+    void elIsbnEquivaleALaValidacionAnterior() {
+        for (String isbn : List.of("", " ", "9780000000002", "9780000000003", "978000000000", "97800000000021",
+                "978000000000X", "97800000O0002", "978-000000002", " 978000000002", "9788420471839", "0000000000000"))
+            assertEquals(isbnAnterior(isbn), Validator.isIsbn13Valid(isbn), isbn);
+
+        Random aleatorio = new Random(8);
+        for (int i = 0; i < ALEATORIAS; i++) {
+            String isbn = aleatoria(aleatorio, "0123456789", 13);
+            if (i % 3 == 0)
+                isbn = alterar(aleatorio, isbn, "0123456789X- ");
+            assertEquals(isbnAnterior(isbn), Validator.isIsbn13Valid(isbn), isbn);
+        }
+    }
+
+    // Cada código queda en la posición de su valor, con y sin reparto entre hilos
+    @Test
+    void validateAllConservaElOrden() {
+        for (int tamano : List.of(Validator.UMBRAL_PARALELO - 1, Validator.UMBRAL_PARALELO, 5 * Validator.UMBRAL_PARALELO)) {
+            List<String> isbns = new ArrayList<>(tamano);
+            Random aleatorio = new Random(tamano);
+            for (int i = 0; i < tamano; i++)
+                isbns.add(aleatoria(aleatorio, "0123456789", 12 + aleatorio.nextInt(2)) + (i % 7 == 0 ? "X" : ""));
+
+            byte[] esperados = new byte[tamano];
+            for (int i = 0; i < tamano; i++)
+                esperados[i] = Validator.checkIsbn13(isbns.get(i)).getCodigo();
+            assertArrayEquals(esperados, Validator.validateAll(isbns, Validator::checkIsbn13), "Tamaño " + tamano);
+        }
+    }
+
+    private static void comprobarEmail(String email) {
+        ErrorValidacion resultado = Validator.checkEmail(email);
+        boolean formatoCorrecto = resultado == ErrorValidacion.OK || resultado == ErrorValidacion.DOMINIO_NO_PERMITIDO;
+        assertEquals(email.matches(REGEX_EMAIL), formatoCorrecto, "Formato de " + email);
+        assertEquals(emailAnterior(email), resultado == ErrorValidacion.OK, email);
+    }
+
+    private static String aleatoria(Random aleatorio, String caracteres, int maxLongitud) {
+        int longitud = aleatorio.nextInt(maxLongitud + 1);
+        StringBuilder s = new StringBuilder(longitud);
+        for (int i = 0; i < longitud; i++)
+            s.append(caracteres.charAt(aleatorio.nextInt(caracteres.length())));
+        return s.toString();
+    }
+
+    // Cambia, quita o añade un carácter
+    private static String alterar(Random aleatorio, String s, String caracteres) {
+        int posicion = aleatorio.nextInt(s.length() + 1);
+        char c = caracteres.charAt(aleatorio.nextInt(caracteres.length()));
+        return switch (aleatorio.nextInt(3)) {
+            case 0 -> s.substring(0, posicion) + c + s.substring(posicion);
+            case 1 -> posicion == s.length() ? s : s.substring(0, posicion) + s.substring(posicion + 1);
+            default -> posicion == s.length() ? s : s.substring(0, posicion) + c + s.substring(posicion + 1);
+        };
+    }
+
+    private static String conLetraCorrecta(String di) {
+        for (char letra : "TRWAGMYFPDXBNJZSQVHLCKE".toCharArray()) {
+            String candidato = di.substring(0, 8) + letra;
+            if (documentoAnterior(candidato))
+                return candidato;
+        }
+        return di;
+    }
+
+    // Validaciones anteriores
+
+    private static boolean emailAnterior(String email) {
+        if (!email.matches(REGEX_EMAIL))
+            return false;
+        return DOMINIOS_PERMITIDOS.contains(email.substring(email.indexOf('@') + 1));
+    }
+
+    private static boolean documentoAnterior(String di) {
+        return sinExcepcion(di, d -> d.length() == 9 && letraControlAnterior(d));
+    }
+
+    private static boolean letraControlAnterior(String di) {
+        List<Character> letras = List.of(
+                'T', 'R', 'W', 'A', 'G', 'M', 'Y', 'F', 'P', 'D', 'X', 'B',
+                'N', 'J', 'Z', 'S', 'Q', 'V', 'H', 'L', 'C', 'K', 'E'
+        );
+        int diDigits;
+        char letraInicio = di.charAt(0);
+        if (Character.isLetter(letraInicio))
+            diDigits = Integer.parseInt(Validator.getNumeroEquivalenteNIF(letraInicio) + di.substring(1, 8));
+        else
+            diDigits = Integer.parseInt(di.substring(0, 8));
+        return di.charAt(di.length() - 1) == letras.get(diDigits % 23);
+    }
+
+    private static boolean isbnAnterior(String isbn13) {
+        if (!isbn13.matches("^[0-9]{13}$"))
+            return false;
+        int sum = 0;
+        for (int i = 0; i < 12; i++)
+            sum += Character.getNumericValue(isbn13.charAt(i)) * (i % 2 == 0 ? 1 : 3);
+        return (10 - (sum % 10)) % 10 == Character.getNumericValue(isbn13.charAt(12));
+    }
+
+    private static boolean sinExcepcion(String valor, Function<String, Boolean> validacion) {
+        try {
+            return validacion.apply(valor);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}